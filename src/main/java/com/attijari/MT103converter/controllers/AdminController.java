@@ -0,0 +1,44 @@
+package com.attijari.MT103converter.controllers;
+
+import com.attijari.MT103converter.services.ConversionStatsService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opérations d'exploitation réservées au rôle ADMIN (/admin/**, protection CSRF active)
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private static final Logger logger = LogManager.getLogger(AdminController.class);
+
+    @Autowired(required = false)
+    private ConversionStatsService statsService;
+
+    /**
+     * Reconstruit les compteurs du dashboard (DAILY_STATS) depuis l'historique
+     */
+    @PostMapping("/rebuild-stats")
+    public Map<String, Object> rebuildStats() {
+        Map<String, Object> response = new HashMap<>();
+        if (statsService == null) {
+            response.put("error", "ConversionStatsService is null");
+            return response;
+        }
+        try {
+            response.put("documents", statsService.rebuild());
+        } catch (Exception e) {
+            logger.error("Erreur lors de la reconstruction des statistiques", e);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,15 @@
+package com.attijari.MT103converter.controllers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Écriture impossible sur la réponse d'un lot (client déconnecté) : le lot est abandonné,
+ * sans tenter d'écrire une ligne d'erreur sur le même flux
+ */
+class ClientDisconnectedException extends UncheckedIOException {
+
+    ClientDisconnectedException(IOException cause) {
+        super("Client déconnecté: " + cause.getMessage(), cause);
+    }
+}
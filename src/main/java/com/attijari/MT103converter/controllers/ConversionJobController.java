@@ -0,0 +1,122 @@
+package com.attijari.MT103converter.controllers;
+
+import com.attijari.MT103converter.models.ConversionJob;
+import com.attijari.MT103converter.services.ConversionJobService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversions asynchrones : soumission (202 + identifiant du job), suivi et résultats.
+ * File des jobs pleine : 429 avec l'en-tête Retry-After.
+ */
+@RestController
+@RequestMapping("/jobs")
+public class ConversionJobController {
+
+    private static final Logger logger = LogManager.getLogger(ConversionJobController.class);
+    private final ConversionJobService jobService;
+
+    public ConversionJobController(ConversionJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    private String getCurrentUsername() {
+        try {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()) {
+                if (authentication.getPrincipal() instanceof OidcUser oidcUser) {
+                    return oidcUser.getPreferredUsername();
+                }
+                return authentication.getName();
+            }
+        } catch (Exception e) {
+            logger.warn("Impossible de récupérer l'utilisateur connecté: {}", e.getMessage());
+        }
+        return "anonymous";
+    }
+
+    @PostMapping(value = "/convert", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JobStatusResponse> submitMt103(@RequestBody String mt103Content) {
+        if (mt103Content == null || mt103Content.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return accepted(jobService.submitMt103(mt103Content, getCurrentUsername()));
+    }
+
+    @PostMapping(value = "/convert-reverse", consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_PLAIN_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JobStatusResponse> submitPacs008(@RequestBody String pacsXml) {
+        if (pacsXml == null || pacsXml.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return accepted(jobService.submitPacs008(pacsXml, getCurrentUsername()));
+    }
+
+    /**
+     * État du job et progression
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JobStatusResponse> getStatus(@PathVariable String id) {
+        ConversionJob job = jobService.getJob(id, getCurrentUsername());
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(JobStatusResponse.of(job));
+    }
+
+    /**
+     * Résultats du job terminé ; 202 avec l'état tant qu'il est en attente ou en cours
+     */
+    @GetMapping(value = "/{id}/result", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getResult(@PathVariable String id) {
+        ConversionJob job = jobService.getJob(id, getCurrentUsername());
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.isFinished()) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(jobService.getRetryAfterSeconds()))
+                    .body(JobStatusResponse.of(job));
+        }
+        return ResponseEntity.ok(new JobResultResponse(job.getId(), job.getStatus(), job.getErrorMessage(), job.getResults()));
+    }
+
+    @ExceptionHandler(ConversionJobService.JobQueueFullException.class)
+    public ResponseEntity<Map<String, String>> queueFull(ConversionJobService.JobQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
+
+    private ResponseEntity<JobStatusResponse> accepted(ConversionJob job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + job.getId()))
+                .body(JobStatusResponse.of(job));
+    }
+
+    public record JobStatusResponse(String jobId, ConversionJob.Type type, ConversionJob.Status status,
+                                    Instant submittedAt, Instant startedAt, Instant finishedAt,
+                                    int processedCount, int failureCount, String errorMessage, String resultUrl) {
+        static JobStatusResponse of(ConversionJob job) {
+            return new JobStatusResponse(job.getId(), job.getType(), job.getStatus(),
+                    job.getSubmittedAt(), job.getStartedAt(), job.getFinishedAt(),
+                    job.getProcessedCount(), job.getFailureCount(), job.getErrorMessage(),
+                    "/jobs/" + job.getId() + "/result");
+        }
+    }
+
+    public record JobResultResponse(String jobId, ConversionJob.Status status, String errorMessage,
+                                    List<ConversionJob.Item> results) {}
+}
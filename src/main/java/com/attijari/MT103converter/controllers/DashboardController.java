@@ -1,8 +1,13 @@
 package com.attijari.MT103converter.controllers;
 
+import com.attijari.MT103converter.models.ConversionSummary;
+import com.attijari.MT103converter.models.DailyConversionStats;
 import com.attijari.MT103converter.repositories.MT103MsgRepository;
 import com.attijari.MT103converter.repositories.Pacs008ToMT103ConversionRepository;
+import com.attijari.MT103converter.services.ConversionStatsService;
+import com.attijari.MT103converter.services.ConversionSummaryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
@@ -11,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -28,6 +34,17 @@ public class DashboardController {
     @Autowired(required = false)
     private Pacs008ToMT103ConversionRepository reverseRepository;
 
+    @Autowired(required = false)
+    private ConversionSummaryService summaryService;
+
+    private static final Limit RECENT_LIMIT = Limit.of(5);
+
+    // compteurs journaliers (DAILY_STATS) : statistiques, graphiques et tendances
+    @Autowired(required = false)
+    private ConversionStatsService statsService;
+
+    private static final DailyConversionStats NO_CONVERSION = new DailyConversionStats();
+
     /**
      * API pour récupérer les statistiques du dashboard par utilisateur
      */
@@ -36,15 +53,18 @@ public class DashboardController {
         String currentUser = getCurrentUsername();
         logger.info("Récupération des statistiques dashboard pour l'utilisateur: {}", currentUser);
 
+        // une seule lecture : 14 derniers jours + total depuis le début
+        Map<String, DailyConversionStats> daily = loadStats(currentUser, 14);
+
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalConversions", getTotalConversions(currentUser));
-        stats.put("successRate", getSuccessRate(currentUser));
-        stats.put("todayConversions", getTodayConversions(currentUser));
+        stats.put("totalConversions", getTotalConversions(daily));
+        stats.put("successRate", getSuccessRate(daily));
+        stats.put("todayConversions", getTodayConversions(daily));
         stats.put("lastUpdate", getCurrentDateTime());
         stats.put("currentUser", currentUser);
         
         // Ajouter les trends réels
-        Map<String, Object> trends = calculateRealTrends(currentUser);
+        Map<String, Object> trends = calculateRealTrends(currentUser, daily);
         stats.putAll(trends);
 
         logger.info("Statistiques générées: {}", stats);
@@ -72,39 +92,11 @@ public class DashboardController {
         Map<String, Object> pieData = new HashMap<>();
 
         try {
-            long totalSuccess = 0;
-            long totalErrors = 0;
-            long totalConversions = 0;
-
-            // Compter les conversions MT103→PACS008
-            if (mt103Repository != null) {
-                List<com.attijari.MT103converter.models.MT103Msg> messages =
-                    mt103Repository.findTop50ByUsernameOrderByCreatedAtDesc(currentUser);
-
-                long mt103Success = messages.stream()
-                    .filter(msg -> msg.getPacs008Xml() != null && msg.getPacs008Xml().trim().length() > 50)
-                    .count();
-
-                long mt103Total = messages.size();
-                totalSuccess += mt103Success;
-                totalErrors += (mt103Total - mt103Success);
-                totalConversions += mt103Total;
-            }
-
-            // Compter les conversions PACS008→MT103
-            if (reverseRepository != null) {
-                List<com.attijari.MT103converter.models.Pacs008ToMT103Conversion> reverseMessages =
-                    reverseRepository.findTop50ByUsernameOrderByCreatedAtDesc(currentUser);
-
-                long pacsSuccess = reverseMessages.stream()
-                    .filter(com.attijari.MT103converter.models.Pacs008ToMT103Conversion::isSuccess)
-                    .count();
-
-                long pacsTotal = reverseMessages.size();
-                totalSuccess += pacsSuccess;
-                totalErrors += (pacsTotal - pacsSuccess);
-                totalConversions += pacsTotal;
-            }
+            // Conversions MT103→PACS008 et PACS008→MT103 depuis le début
+            DailyConversionStats all = day(loadStats(currentUser, 0), DailyConversionStats.ALL_DAYS);
+            long totalSuccess = all.success();
+            long totalErrors = all.errors();
+            long totalConversions = all.total();
 
             pieData.put("success", totalSuccess);
             pieData.put("errors", totalErrors);
@@ -135,17 +127,18 @@ public class DashboardController {
         List<Map<String, Object>> activities = new ArrayList<>();
 
         try {
-            // Récupérer les conversions MT103 → PACS008
+            // Récupérer les conversions MT103 → PACS008 (résumés seulement)
             if (mt103Repository != null) {
                 List<com.attijari.MT103converter.models.MT103Msg> mt103Messages =
-                    mt103Repository.findTop5ByUsernameOrderByCreatedAtDesc(currentUser);
+                    mt103Repository.findSummariesByUsername(currentUser, RECENT_LIMIT);
 
                 for (com.attijari.MT103converter.models.MT103Msg message : mt103Messages) {
+                    ConversionSummary summary = summaryService != null
+                            ? summaryService.summaryOf(message) : ConversionSummary.forward(message);
                     Map<String, Object> activity = new HashMap<>();
 
                     // Déterminer si c'est un succès ou une erreur
-                    boolean isSuccess = message.getPacs008Xml() != null &&
-                                      message.getPacs008Xml().trim().length() > 50;
+                    boolean isSuccess = summary.isSuccess();
 
                     activity.put("type", isSuccess ? "success" : "error");
                     activity.put("title", isSuccess ? "Conversion réussie" : "Échec de conversion");
@@ -153,29 +146,7 @@ public class DashboardController {
                     // Créer la description
                     StringBuilder description = new StringBuilder();
                     description.append("MT103 → PACS008");
-
-                    // Ajouter le montant si disponible
-                    try {
-                        String field32A = message.getField("32A");
-                        if (field32A != null && field32A.length() > 9) {
-                            String currency = field32A.substring(6, 9);
-                            String amountStr = field32A.substring(9).replace(",", ".");
-                            description.append(" | Montant: ").append(amountStr).append(" ").append(currency);
-                        }
-                    } catch (Exception e) {
-                        // Ignorer les erreurs d'extraction du montant
-                    }
-
-                    // Ajouter la référence de transaction si disponible
-                    try {
-                        String transactionRef = message.getField("20");
-                        if (transactionRef != null && !transactionRef.trim().isEmpty()) {
-                            String trimmedRef = transactionRef.trim();
-                            description.append(" | Réf: ").append(trimmedRef.substring(0, Math.min(10, trimmedRef.length())));
-                        }
-                    } catch (Exception e) {
-                        // Ignorer les erreurs d'extraction de référence
-                    }
+                    appendSummary(description, summary);
 
                     activity.put("description", description.toString());
                     activity.put("createdAt", message.getCreatedAt()); // Pour le tri
@@ -185,10 +156,10 @@ public class DashboardController {
                 }
             }
 
-            // Récupérer les conversions PACS008 → MT103
+            // Récupérer les conversions PACS008 → MT103 (résumés seulement)
             if (reverseRepository != null) {
                 List<com.attijari.MT103converter.models.Pacs008ToMT103Conversion> pacsMessages =
-                    reverseRepository.findTop5ByUsernameOrderByCreatedAtDesc(currentUser);
+                    reverseRepository.findSummariesByUsername(currentUser, RECENT_LIMIT);
 
                 for (com.attijari.MT103converter.models.Pacs008ToMT103Conversion conversion : pacsMessages) {
                     Map<String, Object> activity = new HashMap<>();
@@ -200,27 +171,8 @@ public class DashboardController {
                     // Créer la description pour PACS008 → MT103
                     StringBuilder description = new StringBuilder();
                     description.append("PACS008 → MT103");
-
-                    // Ajouter des détails si disponibles
-                    if (conversion.getMt103Result() != null && !conversion.getMt103Result().trim().isEmpty()) {
-                        try {
-                            // Essayer d'extraire des informations du MT103 généré
-                            String mt103Output = conversion.getMt103Result();
-                            if (mt103Output.contains(":32A:")) {
-                                int start = mt103Output.indexOf(":32A:") + 5;
-                                int end = mt103Output.indexOf("\n", start);
-                                if (end > start && end < start + 50) {
-                                    String field32A = mt103Output.substring(start, end).trim();
-                                    if (field32A.length() > 9) {
-                                        String currency = field32A.substring(6, 9);
-                                        String amountStr = field32A.substring(9).replace(",", ".");
-                                        description.append(" | Montant: ").append(amountStr).append(" ").append(currency);
-                                    }
-                                }
-                            }
-                        } catch (Exception e) {
-                            // Ignorer les erreurs d'extraction
-                        }
+                    if (summaryService != null) {
+                        appendSummary(description, summaryService.summaryOf(conversion));
                     }
 
                     // Ajouter le message d'erreur si échec
@@ -244,7 +196,8 @@ public class DashboardController {
             activities.sort((a, b) -> {
                 LocalDateTime dateA = (LocalDateTime) a.get("createdAt");
                 LocalDateTime dateB = (LocalDateTime) b.get("createdAt");
-                return dateB.compareTo(dateA); // Ordre décroissant (plus récent d'abord)
+                // Ordre décroissant (plus récent d'abord), anciens documents sans date en dernier
+                return Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()).compare(dateB, dateA);
             });
 
             // Garder seulement les 5 plus récentes et supprimer le champ createdAt
@@ -325,74 +278,54 @@ public class DashboardController {
 
     // === Méthodes utilitaires pour les statistiques FILTRÉES PAR UTILISATEUR ===
 
-    private long getTotalConversions(String username) {
-        try {
-            long mt103Count = mt103Repository != null ? mt103Repository.countByUsername(username) : 0;
-            long pacsCount = reverseRepository != null ? reverseRepository.countByUsername(username) : 0;
-            return mt103Count + pacsCount;
-        } catch (Exception e) {
-            logger.warn("Impossible de récupérer le nombre total de conversions pour {}: {}", username, e.getMessage());
-            return 0;
+    /**
+     * Compteurs de l'utilisateur pour les N derniers jours (clé yyyy-MM-dd) et depuis le début (clé ALL)
+     */
+    private Map<String, DailyConversionStats> loadStats(String username, int days) {
+        if (statsService == null) {
+            return Collections.emptyMap();
+        }
+        List<LocalDate> lastDays = new ArrayList<>(days);
+        LocalDate today = LocalDate.now();
+        for (int i = days - 1; i >= 0; i--) {
+            lastDays.add(today.minusDays(i));
         }
+        return statsService.load(username, lastDays);
     }
 
-    private double getSuccessRate(String username) {
-        try {
-            if (mt103Repository == null) return 0.0;
-
-            // Compter les conversions MT103→PACS008
-            List<com.attijari.MT103converter.models.MT103Msg> messages = mt103Repository.findTop50ByUsernameOrderByCreatedAtDesc(username);
-            long totalMT103 = messages.size();
-            long successfulMT103 = messages.stream()
-                .filter(msg -> msg.getPacs008Xml() != null && msg.getPacs008Xml().trim().length() > 50)
-                .count();
-
-            // Compter les conversions PACS008→MT103 (utiliser success au lieu de isSuccess)
-            long totalPacs = 0;
-            long successfulPacs = 0;
-            if (reverseRepository != null) {
-                List<com.attijari.MT103converter.models.Pacs008ToMT103Conversion> reverseMessages =
-                    reverseRepository.findTop50ByUsernameOrderByCreatedAtDesc(username);
-                totalPacs = reverseMessages.size();
-                successfulPacs = reverseMessages.stream()
-                    .filter(msg -> msg.isSuccess())
-                    .count();
-            }
+    private static DailyConversionStats day(Map<String, DailyConversionStats> daily, String day) {
+        return daily.getOrDefault(day, NO_CONVERSION);
+    }
 
-            long totalConversions = totalMT103 + totalPacs;
-            if (totalConversions == 0) return 0.0;
+    private static DailyConversionStats daysAgo(Map<String, DailyConversionStats> daily, int days) {
+        return day(daily, LocalDate.now().minusDays(days).toString());
+    }
 
-            long totalSuccessful = successfulMT103 + successfulPacs;
-            return (double) totalSuccessful / totalConversions * 100.0;
-        } catch (Exception e) {
-            logger.warn("Impossible de calculer le taux de succès pour {}: {}", username, e.getMessage());
-            return 0.0;
+    /**
+     * Conversions et succès cumulés de "from" à "to" jours en arrière (inclus)
+     */
+    private static long[] sumDays(Map<String, DailyConversionStats> daily, int from, int to) {
+        long[] totals = new long[2];
+        for (int i = from; i <= to; i++) {
+            DailyConversionStats stats = daysAgo(daily, i);
+            totals[0] += stats.total();
+            totals[1] += stats.success();
         }
+        return totals;
     }
 
-    private long getTodayConversions(String username) {
-        try {
-            LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endOfDay = startOfDay.plusDays(1);
-
-            long mt103Count = 0;
-            long pacsCount = 0;
-
-            // Compter les conversions MT103→PACS008 d'aujourd'hui
-            if (mt103Repository != null) {
-                mt103Count = mt103Repository.countByUsernameAndCreatedAtBetween(username, startOfDay, endOfDay);
-            }
+    private long getTotalConversions(Map<String, DailyConversionStats> daily) {
+        return day(daily, DailyConversionStats.ALL_DAYS).total();
+    }
 
-            // Compter les conversions PACS008→MT103 d'aujourd'hui
-            if (reverseRepository != null) {
-                pacsCount = reverseRepository.countByUsernameAndCreatedAtBetween(username, startOfDay, endOfDay);
-            }
+    private double getSuccessRate(Map<String, DailyConversionStats> daily) {
+        DailyConversionStats all = day(daily, DailyConversionStats.ALL_DAYS);
+        if (all.total() == 0) return 0.0;
+        return (double) all.success() / all.total() * 100.0;
+    }
 
-            return mt103Count + pacsCount;
-        } catch (Exception e) {
-            logger.warn("Impossible de récupérer les conversions du jour pour {}: {}", username, e.getMessage());
-            return 0;
-        }
+    private long getTodayConversions(Map<String, DailyConversionStats> daily) {
+        return daysAgo(daily, 0).total();
     }
 
     private String getCurrentDateTime() {
@@ -403,67 +336,27 @@ public class DashboardController {
         List<Map<String, Object>> timeline = new ArrayList<>();
 
         try {
-            if (mt103Repository == null) {
-                logger.warn("Repository MT103 est null, utilisation des données factices");
+            if (statsService == null) {
+                logger.warn("Statistiques indisponibles, utilisation des données factices");
                 return generateMockTimelineData(); // Fallback si pas de DB
             }
 
-            // Générer les statistiques pour les 7 derniers jours
+            // Statistiques des 7 derniers jours, MT103→PACS008 + PACS008→MT103, en une lecture
+            Map<String, DailyConversionStats> daily = loadStats(username, 7);
             for (int i = 6; i >= 0; i--) {
-                LocalDateTime date = LocalDateTime.now().minusDays(i);
-                LocalDateTime startOfDay = date.withHour(0).withMinute(0).withSecond(0).withNano(0);
-                LocalDateTime endOfDay = startOfDay.plusDays(1);
+                LocalDate date = LocalDate.now().minusDays(i);
+                DailyConversionStats stats = day(daily, date.toString());
 
                 Map<String, Object> dayData = new HashMap<>();
-
-                // === Conversions MT103→PACS008 ===
-                long mt103TotalConversions = mt103Repository.countByUsernameAndCreatedAtBetween(username, startOfDay, endOfDay);
-
-                List<com.attijari.MT103converter.models.MT103Msg> mt103DayMessages =
-                    mt103Repository.findByUsernameAndCreatedAtBetweenOrderByCreatedAtDesc(username, startOfDay, endOfDay);
-                long mt103SuccessfulConversions = mt103DayMessages.stream()
-                    .filter(msg -> msg.getPacs008Xml() != null && msg.getPacs008Xml().trim().length() > 50)
-                    .count();
-                long mt103ErrorConversions = mt103TotalConversions - mt103SuccessfulConversions;
-
-                // === Conversions PACS008→MT103 ===
-                long pacsTotalConversions = 0;
-                long pacsSuccessfulConversions = 0;
-                long pacsErrorConversions = 0;
-
-                if (reverseRepository != null) {
-                    pacsTotalConversions = reverseRepository.countByUsernameAndCreatedAtBetween(username, startOfDay, endOfDay);
-
-                    List<com.attijari.MT103converter.models.Pacs008ToMT103Conversion> pacsDayMessages =
-                        reverseRepository.findByUsernameAndCreatedAtBetweenOrderByCreatedAtDesc(username, startOfDay, endOfDay);
-                    pacsSuccessfulConversions = pacsDayMessages.stream()
-                        .filter(conversion -> conversion.isSuccess())
-                        .count();
-                    pacsErrorConversions = pacsTotalConversions - pacsSuccessfulConversions;
-                }
-
-                // === TOTAUX COMBINÉS ===
-                long totalConversions = mt103TotalConversions + pacsTotalConversions;
-                long totalSuccessfulConversions = mt103SuccessfulConversions + pacsSuccessfulConversions;
-                long totalErrorConversions = mt103ErrorConversions + pacsErrorConversions;
-
-                // LOGS DE DEBUG pour voir les vraies données
-                logger.info("Date: {} - MT103→PACS008: {}/{} succès, PACS008→MT103: {}/{} succès, TOTAL: {}/{} succès",
-                    date.format(DateTimeFormatter.ofPattern("dd/MM")),
-                    mt103SuccessfulConversions, mt103TotalConversions,
-                    pacsSuccessfulConversions, pacsTotalConversions,
-                    totalSuccessfulConversions, totalConversions);
-
                 dayData.put("date", date.format(DateTimeFormatter.ofPattern("dd/MM")));
-                dayData.put("conversions", totalConversions);
-                dayData.put("success", totalSuccessfulConversions);
-                dayData.put("errors", totalErrorConversions);
+                dayData.put("conversions", stats.total());
+                dayData.put("success", stats.success());
+                dayData.put("errors", stats.errors());
 
                 timeline.add(dayData);
             }
 
-            // Log final pour debug
-            logger.info("Timeline générée avec {} jours de données (MT103→PACS008 + PACS008→MT103)", timeline.size());
+            logger.debug("Timeline générée avec {} jours de données pour {}", timeline.size(), username);
 
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération des données temporelles: {}", e.getMessage());
@@ -498,20 +391,20 @@ public class DashboardController {
     /**
      * Calcule les tendances réelles basées sur les données historiques
      */
-    private Map<String, Object> calculateRealTrends(String username) {
+    private Map<String, Object> calculateRealTrends(String username, Map<String, DailyConversionStats> daily) {
         Map<String, Object> trends = new HashMap<>();
 
         try {
             // Calculer la tendance totale (comparaison cette semaine vs semaine dernière)
-            Map<String, Object> totalTrend = calculateTotalTrend(username);
+            Map<String, Object> totalTrend = calculateTotalTrend(username, daily);
             trends.putAll(totalTrend);
 
             // Calculer la tendance du taux de succès
-            Map<String, Object> successTrend = calculateSuccessTrend(username);
+            Map<String, Object> successTrend = calculateSuccessTrend(username, daily);
             trends.putAll(successTrend);
 
             // Calculer la tendance des conversions d'aujourd'hui vs hier
-            Map<String, Object> todayTrend = calculateTodayTrend(username);
+            Map<String, Object> todayTrend = calculateTodayTrend(username, daily);
             trends.putAll(todayTrend);
 
             logger.info("Tendances réelles calculées pour {}: {}", username, trends);
@@ -536,48 +429,23 @@ public class DashboardController {
     /**
      * Calcule la tendance totale (cette semaine vs semaine dernière)
      */
-    private Map<String, Object> calculateTotalTrend(String username) {
+    private Map<String, Object> calculateTotalTrend(String username, Map<String, DailyConversionStats> daily) {
         Map<String, Object> result = new HashMap<>();
 
-        try {
-            if (mt103Repository == null) {
-                return getDefaultTrend("totalTrend");
-            }
-
-            LocalDateTime now = LocalDateTime.now();
-
-            // Cette semaine (7 derniers jours)
-            LocalDateTime startThisWeek = now.minusDays(6).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endThisWeek = now.withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-            // Semaine dernière (jours 7 à 13)
-            LocalDateTime startLastWeek = now.minusDays(13).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endLastWeek = now.minusDays(7).withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-            long thisWeekCount = mt103Repository.countByUsernameAndCreatedAtBetween(username, startThisWeek, endThisWeek);
-            long lastWeekCount = mt103Repository.countByUsernameAndCreatedAtBetween(username, startLastWeek, endLastWeek);
+        // Cette semaine (7 derniers jours) et semaine dernière (jours 7 à 13)
+        long thisWeekCount = sumDays(daily, 0, 6)[0];
+        long lastWeekCount = sumDays(daily, 7, 13)[0];
 
-            // Inclure les conversions inverses si disponibles
-            if (reverseRepository != null) {
-                thisWeekCount += reverseRepository.countByUsernameAndCreatedAtBetween(username, startThisWeek, endThisWeek);
-                lastWeekCount += reverseRepository.countByUsernameAndCreatedAtBetween(username, startLastWeek, endLastWeek);
-            }
-
-            double variation = calculatePercentageVariation(thisWeekCount, lastWeekCount);
-            String trendText = formatTrendText(variation);
-            String trendClass = getTrendClass(variation);
+        double variation = calculatePercentageVariation(thisWeekCount, lastWeekCount);
+        String trendText = formatTrendText(variation);
+        String trendClass = getTrendClass(variation);
 
-            result.put("totalTrend", trendText);
-            result.put("totalTrendValue", variation);
-            result.put("totalTrendClass", trendClass);
+        result.put("totalTrend", trendText);
+        result.put("totalTrendValue", variation);
+        result.put("totalTrendClass", trendClass);
 
-            logger.debug("Tendance totale calculée pour {}: cette semaine={}, semaine dernière={}, variation={}%",
-                username, thisWeekCount, lastWeekCount, variation);
-
-        } catch (Exception e) {
-            logger.error("Erreur calcul tendance totale: {}", e.getMessage());
-            return getDefaultTrend("totalTrend");
-        }
+        logger.debug("Tendance totale calculée pour {}: cette semaine={}, semaine dernière={}, variation={}%",
+            username, thisWeekCount, lastWeekCount, variation);
 
         return result;
     }
@@ -585,55 +453,25 @@ public class DashboardController {
     /**
      * Calcule la tendance du taux de succès
      */
-    private Map<String, Object> calculateSuccessTrend(String username) {
+    private Map<String, Object> calculateSuccessTrend(String username, Map<String, DailyConversionStats> daily) {
         Map<String, Object> result = new HashMap<>();
 
-        try {
-            if (mt103Repository == null) {
-                return getDefaultTrend("successTrend");
-            }
-
-            LocalDateTime now = LocalDateTime.now();
-
-            // Cette semaine
-            LocalDateTime startThisWeek = now.minusDays(6).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endThisWeek = now.withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-            // Semaine dernière
-            LocalDateTime startLastWeek = now.minusDays(13).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endLastWeek = now.minusDays(7).withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-            // Calculer le taux de succès cette semaine
-            List<com.attijari.MT103converter.models.MT103Msg> thisWeekMessages =
-                mt103Repository.findByUsernameAndCreatedAtBetweenOrderByCreatedAtDesc(username, startThisWeek, endThisWeek);
-            long thisWeekSuccess = thisWeekMessages.stream()
-                .filter(msg -> msg.getPacs008Xml() != null && msg.getPacs008Xml().trim().length() > 50)
-                .count();
-            double thisWeekRate = thisWeekMessages.isEmpty() ? 0.0 : (double) thisWeekSuccess / thisWeekMessages.size() * 100.0;
+        // Taux de succès cette semaine et semaine dernière
+        long[] thisWeek = sumDays(daily, 0, 6);
+        double thisWeekRate = thisWeek[0] == 0 ? 0.0 : (double) thisWeek[1] / thisWeek[0] * 100.0;
+        long[] lastWeek = sumDays(daily, 7, 13);
+        double lastWeekRate = lastWeek[0] == 0 ? 0.0 : (double) lastWeek[1] / lastWeek[0] * 100.0;
 
-            // Calculer le taux de succès semaine dernière
-            List<com.attijari.MT103converter.models.MT103Msg> lastWeekMessages =
-                mt103Repository.findByUsernameAndCreatedAtBetweenOrderByCreatedAtDesc(username, startLastWeek, endLastWeek);
-            long lastWeekSuccess = lastWeekMessages.stream()
-                .filter(msg -> msg.getPacs008Xml() != null && msg.getPacs008Xml().trim().length() > 50)
-                .count();
-            double lastWeekRate = lastWeekMessages.isEmpty() ? 0.0 : (double) lastWeekSuccess / lastWeekMessages.size() * 100.0;
+        double variation = thisWeekRate - lastWeekRate;
+        String trendText = formatSuccessRateTrend(variation);
+        String trendClass = getTrendClass(variation);
 
-            double variation = thisWeekRate - lastWeekRate;
-            String trendText = formatSuccessRateTrend(variation);
-            String trendClass = getTrendClass(variation);
+        result.put("successTrend", trendText);
+        result.put("successTrendValue", variation);
+        result.put("successTrendClass", trendClass);
 
-            result.put("successTrend", trendText);
-            result.put("successTrendValue", variation);
-            result.put("successTrendClass", trendClass);
-
-            logger.debug("Tendance taux succès calculée pour {}: cette semaine={}%, semaine dernière={}%, variation={}%",
-                username, thisWeekRate, lastWeekRate, variation);
-
-        } catch (Exception e) {
-            logger.error("Erreur calcul tendance succès: {}", e.getMessage());
-            return getDefaultTrend("successTrend");
-        }
+        logger.debug("Tendance taux succès calculée pour {}: cette semaine={}%, semaine dernière={}%, variation={}%",
+            username, thisWeekRate, lastWeekRate, variation);
 
         return result;
     }
@@ -641,48 +479,22 @@ public class DashboardController {
     /**
      * Calcule la tendance aujourd'hui vs hier
      */
-    private Map<String, Object> calculateTodayTrend(String username) {
+    private Map<String, Object> calculateTodayTrend(String username, Map<String, DailyConversionStats> daily) {
         Map<String, Object> result = new HashMap<>();
 
-        try {
-            if (mt103Repository == null) {
-                return getDefaultTrend("todayTrend");
-            }
-
-            LocalDateTime now = LocalDateTime.now();
-
-            // Aujourd'hui
-            LocalDateTime startToday = now.withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endToday = now.withHour(23).withMinute(59).withSecond(59).withNano(999999999);
-
-            // Hier
-            LocalDateTime startYesterday = now.minusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-            LocalDateTime endYesterday = now.minusDays(1).withHour(23).withMinute(59).withSecond(59).withNano(999999999);
+        long todayCount = daysAgo(daily, 0).total();
+        long yesterdayCount = daysAgo(daily, 1).total();
 
-            long todayCount = mt103Repository.countByUsernameAndCreatedAtBetween(username, startToday, endToday);
-            long yesterdayCount = mt103Repository.countByUsernameAndCreatedAtBetween(username, startYesterday, endYesterday);
-
-            // Inclure les conversions inverses si disponibles
-            if (reverseRepository != null) {
-                todayCount += reverseRepository.countByUsernameAndCreatedAtBetween(username, startToday, endToday);
-                yesterdayCount += reverseRepository.countByUsernameAndCreatedAtBetween(username, startYesterday, endYesterday);
-            }
+        double variation = calculatePercentageVariation(todayCount, yesterdayCount);
+        String trendText = formatTodayTrend(variation, todayCount, yesterdayCount);
+        String trendClass = getTrendClass(variation);
 
-            double variation = calculatePercentageVariation(todayCount, yesterdayCount);
-            String trendText = formatTodayTrend(variation, todayCount, yesterdayCount);
-            String trendClass = getTrendClass(variation);
+        result.put("todayTrend", trendText);
+        result.put("todayTrendValue", variation);
+        result.put("todayTrendClass", trendClass);
 
-            result.put("todayTrend", trendText);
-            result.put("todayTrendValue", variation);
-            result.put("todayTrendClass", trendClass);
-
-            logger.debug("Tendance aujourd'hui calculée pour {}: aujourd'hui={}, hier={}, variation={}%",
-                username, todayCount, yesterdayCount, variation);
-
-        } catch (Exception e) {
-            logger.error("Erreur calcul tendance aujourd'hui: {}", e.getMessage());
-            return getDefaultTrend("todayTrend");
-        }
+        logger.debug("Tendance aujourd'hui calculée pour {}: aujourd'hui={}, hier={}, variation={}%",
+            username, todayCount, yesterdayCount, variation);
 
         return result;
     }
@@ -746,10 +558,27 @@ public class DashboardController {
         return result;
     }
 
+    /**
+     * Montant et référence du résumé, s'ils sont connus
+     */
+    private void appendSummary(StringBuilder description, ConversionSummary summary) {
+        if (summary.getAmount() != null && summary.getCurrency() != null) {
+            description.append(" | Montant: ").append(summary.getAmount().replace(",", "."))
+                    .append(" ").append(summary.getCurrency());
+        }
+        if (summary.getTransactionRef() != null) {
+            String ref = summary.getTransactionRef();
+            description.append(" | Réf: ").append(ref, 0, Math.min(10, ref.length()));
+        }
+    }
+
     /**
      * Méthode utilitaire pour formater le temps relatif
      */
     private String formatTimeAgo(LocalDateTime createdAt) {
+        if (createdAt == null) {
+            return "";
+        }
         LocalDateTime now = LocalDateTime.now();
         long minutesAgo = java.time.Duration.between(createdAt, now).toMinutes();
 
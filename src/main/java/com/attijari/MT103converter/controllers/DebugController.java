@@ -2,6 +2,7 @@ package com.attijari.MT103converter.controllers;
 
 import com.attijari.MT103converter.models.MT103Msg;
 import com.attijari.MT103converter.repositories.MT103MsgRepository;
+import com.attijari.MT103converter.services.HistoryWriter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,22 @@ public class DebugController {
     @Autowired(required = false)
     private MT103MsgRepository repository;
 
+    @Autowired(required = false)
+    private HistoryWriter historyWriter;
+
+    /**
+     * File d'écriture différée de l'historique : profondeur, documents écrits, latence des paquets
+     */
+    @GetMapping("/history-writer")
+    public Map<String, Object> historyWriterMetrics() {
+        if (historyWriter == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "HistoryWriter is null");
+            return response;
+        }
+        return historyWriter.getMetrics();
+    }
+
     @GetMapping("/check-database")
     public Map<String, Object> checkDatabase() {
         Map<String, Object> response = new HashMap<>();
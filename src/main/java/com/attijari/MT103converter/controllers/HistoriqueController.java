@@ -2,26 +2,37 @@ package com.attijari.MT103converter.controllers;
 
 import com.attijari.MT103converter.repositories.MT103MsgRepository;
 import com.attijari.MT103converter.repositories.Pacs008ToMT103ConversionRepository;
+import com.attijari.MT103converter.models.ConversionSummary;
+import com.attijari.MT103converter.models.DailyConversionStats;
+import com.attijari.MT103converter.models.HistoryPurgeJob;
 import com.attijari.MT103converter.models.MT103Msg;
 import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.attijari.MT103converter.services.ConversionStatsService;
+import com.attijari.MT103converter.services.ConversionSummaryService;
+import com.attijari.MT103converter.services.HistoryExportService;
+import com.attijari.MT103converter.services.HistoryPageService;
+import com.attijari.MT103converter.services.HistoryPurgeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ContentDisposition;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * API Controller pour les données de l'historique par utilisateur (deux sens)
@@ -37,103 +48,115 @@ public class HistoriqueController {
     @Autowired(required = false)
     private Pacs008ToMT103ConversionRepository reverseRepository;
 
+    @Autowired(required = false)
+    private ConversionSummaryService summaryService;
+
+    @Autowired(required = false)
+    private HistoryPageService historyPageService;
+
+    @Autowired(required = false)
+    private ConversionStatsService statsService;
+
+    @Autowired(required = false)
+    private HistoryPurgeService historyPurgeService;
+
+    @Autowired(required = false)
+    private HistoryExportService historyExportService;
+
     /**
-     * API pour récupérer l'historique des conversions de l'utilisateur connecté (2 sens)
+     * API pour récupérer l'historique des conversions de l'utilisateur connecté (2 sens), du plus récent
+     * au plus ancien ; page suivante : cursor = nextCursor de la réponse (null sur la dernière page).
+     * filter : recherche sur tout l'historique, chaque mot étant le début d'un mot de la référence
+     * de transaction, du donneur d'ordre ou du bénéficiaire (sans distinction de casse ni d'accents)
      */
     @GetMapping("/api/historique/list")
-    public Map<String, Object> getHistoriqueList(
-            @RequestParam(defaultValue = "0") int page,
+    public ResponseEntity<Map<String, Object>> getHistoriqueList(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "") String filter) {
 
         String currentUser = getCurrentUsername();
-        logger.debug("Récupération de l'historique (2 sens) pour {} page:{} size:{} filter:{}", currentUser, page, size, filter);
+        logger.debug("Récupération de l'historique (2 sens) pour {} cursor:{} size:{} filter:{}", currentUser, cursor, size, filter);
         Map<String, Object> response = new HashMap<>();
 
         try {
-            List<Map<String, Object>> all = new ArrayList<>();
-            // Sens MT103 -> PACS008
-            if (mt103Repository != null) {
-                for (MT103Msg msg : mt103Repository.findTop50ByUsernameOrderByCreatedAtDesc(currentUser)) {
-                    Map<String, Object> item = buildMt103ToPacsItem(msg);
-                    if (passesFilter(item, filter)) all.add(item);
-                }
-            }
-            // Sens PACS008 -> MT103
-            if (reverseRepository != null) {
-                for (Pacs008ToMT103Conversion conv : reverseRepository.findTop50ByUsernameOrderByCreatedAtDesc(currentUser)) {
-                    Map<String, Object> item = buildPacsToMt103Item(conv);
-                    if (passesFilter(item, filter)) all.add(item);
+            List<Map<String, Object>> pageContent = new ArrayList<>();
+            String nextCursor = null;
+            if (historyPageService != null) {
+                HistoryPageService.Page page = historyPageService.page(currentUser, cursor, size,
+                        ConversionSummary.searchTerms(filter));
+                for (Object entry : page.entries()) {
+                    Map<String, Object> item = buildItem(entry);
+                    // Nettoyer clé interne dateObj
+                    item.remove("dateObj");
+                    pageContent.add(item);
                 }
+                nextCursor = page.nextCursor();
             }
-            // Tri par date desc
-            all.sort((a,b) -> ((LocalDateTime)a.get("dateObj")).compareTo((LocalDateTime)b.get("dateObj")) * -1);
-
-            long totalElements = all.size();
-            int totalPages = (int)Math.ceil((double)totalElements / size);
-            int start = page * size;
-            int end = Math.min(start + size, all.size());
-            List<Map<String, Object>> pageContent = start < all.size() ? all.subList(start, end) : Collections.emptyList();
-            // Nettoyer clé interne dateObj
-            for (Map<String,Object> m : pageContent) { m.remove("dateObj"); }
 
             response.put("conversions", pageContent);
-            response.put("totalPages", totalPages);
-            response.put("currentPage", page);
-            response.put("totalElements", totalElements);
+            response.put("nextCursor", nextCursor);
+            response.put("hasMore", nextCursor != null);
+            response.put("totalElements", getTotalElements(currentUser));
             response.put("currentUser", currentUser);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Pagination de l'historique refusée pour {}: {}", currentUser, e.getMessage());
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("Erreur historique mixte: {}", e.getMessage());
             response.put("conversions", new ArrayList<>());
-            response.put("totalPages", 0);
-            response.put("currentPage", 0);
+            response.put("nextCursor", null);
+            response.put("hasMore", false);
             response.put("totalElements", 0);
             response.put("error", "Erreur lors du chargement de l'historique");
         }
-        return response;
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> buildItem(Object entry) {
+        return entry instanceof MT103Msg msg ? buildMt103ToPacsItem(msg) : buildPacsToMt103Item((Pacs008ToMT103Conversion) entry);
     }
 
-    private boolean passesFilter(Map<String,Object> item, String filter) {
-        if (filter == null || filter.isBlank()) return true;
-        String f = filter.toLowerCase();
-        return (item.getOrDefault("transactionId","" ).toString().toLowerCase().contains(f))
-                || (item.getOrDefault("sender","" ).toString().toLowerCase().contains(f))
-                || (item.getOrDefault("beneficiary","" ).toString().toLowerCase().contains(f))
-                || (item.getOrDefault("type","" ).toString().toLowerCase().contains(f));
+    /**
+     * Nombre total de conversions de l'utilisateur, lu dans ses compteurs (DAILY_STATS)
+     */
+    private long getTotalElements(String username) {
+        if (statsService == null) {
+            return 0;
+        }
+        DailyConversionStats all = statsService.load(username, List.of()).get(DailyConversionStats.ALL_DAYS);
+        return all == null ? 0 : all.total();
+    }
+
+    // anciens documents sans createdAt : pas de date affichée
+    private static String formatDate(LocalDateTime createdAt) {
+        return createdAt == null ? "" : createdAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"));
     }
 
     private Map<String,Object> buildMt103ToPacsItem(MT103Msg msg) {
+        ConversionSummary summary = summaryService != null ? summaryService.summaryOf(msg) : ConversionSummary.forward(msg);
         Map<String,Object> item = new HashMap<>();
         item.put("id", msg.getId());
         item.put("type", "MT103→PACS008");
-        item.put("transactionId", safeGetField(msg, "20"));
-        item.put("amount", extractAmount(safeGetField(msg, "32A")));
-        item.put("currency", extractCurrency(safeGetField(msg, "32A")));
-        item.put("sender", extractFirstLine(safeGetField(msg, "50K")));
-        item.put("beneficiary", extractFirstLine(safeGetField(msg, "59")));
-        boolean isSuccess = msg.getPacs008Xml() != null && msg.getPacs008Xml().trim().length() > 50;
-        item.put("status", isSuccess ? "Succès" : "Erreur");
-        item.put("date", msg.getCreatedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+        putSummary(item, summary);
+        item.put("date", formatDate(msg.getCreatedAt()));
         item.put("dateObj", msg.getCreatedAt());
         item.put("username", msg.getUsername());
         item.put("fileNameIn", "MT103_" + shortId(msg.getId()) + ".txt");
-        item.put("fileNameOut", isSuccess ? "PACS008_" + shortId(msg.getId()) + ".xml" : null);
+        item.put("fileNameOut", summary.isSuccess() ? "PACS008_" + shortId(msg.getId()) + ".xml" : null);
         item.put("direction", "forward");
         return item;
     }
 
     private Map<String,Object> buildPacsToMt103Item(Pacs008ToMT103Conversion conv) {
+        ConversionSummary summary = summaryService != null ? summaryService.summaryOf(conv) : ConversionSummary.reverseFailure();
         Map<String,Object> item = new HashMap<>();
         item.put("id", conv.getId());
         item.put("type", "PACS008→MT103");
-        // Extraire montant/devise depuis XML
-        String[] amt = extractAmountCurrencyFromPacs(conv.getRawPacs008Xml());
-        item.put("amount", amt[1]);
-        item.put("currency", amt[0]);
-        item.put("sender", "-");
-        item.put("beneficiary", "-");
+        putSummary(item, summary);
         item.put("status", conv.isSuccess() ? "Succès" : "Erreur");
-        item.put("date", conv.getCreatedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+        item.put("date", formatDate(conv.getCreatedAt()));
         item.put("dateObj", conv.getCreatedAt());
         item.put("username", conv.getUsername());
         item.put("fileNameIn", "PACS008_" + shortId(conv.getId()) + ".xml");
@@ -142,18 +165,17 @@ public class HistoriqueController {
         return item;
     }
 
-    private String[] extractAmountCurrencyFromPacs(String xml) {
-        if (xml == null) return new String[]{"",""};
-        try {
-            Pattern p = Pattern.compile("<IntrBkSttlmAmt\\s+Ccy=\"([A-Z]{3})\">([0-9.]+)</IntrBkSttlmAmt>");
-            Matcher m = p.matcher(xml);
-            if (m.find()) {
-                return new String[]{m.group(1), m.group(2)};
-            }
-        } catch (Exception ignored) {}
-        return new String[]{"",""};
+    private void putSummary(Map<String,Object> item, ConversionSummary summary) {
+        item.put("transactionId", orNA(summary.getTransactionRef()));
+        item.put("amount", orNA(summary.getAmount()));
+        item.put("currency", orNA(summary.getCurrency()));
+        item.put("sender", orNA(summary.getSender()));
+        item.put("beneficiary", orNA(summary.getBeneficiary()));
+        item.put("status", summary.isSuccess() ? "Succès" : "Erreur");
     }
 
+    private String orNA(String value) { return value == null || value.isEmpty() ? "N/A" : value; }
+
     private String shortId(String id) { return id != null ? id.substring(0, Math.min(8,id.length())) : "NA"; }
 
     /**
@@ -229,43 +251,114 @@ public class HistoriqueController {
         boolean deleted = false;
         if (mt103Repository != null && mt103Repository.findById(id).isPresent()) {
             MT103Msg msg = mt103Repository.findById(id).get();
-            if (currentUser.equals(msg.getUsername())) { mt103Repository.deleteById(id); deleted = true; }
+            if (currentUser.equals(msg.getUsername())) {
+                mt103Repository.deleteById(id);
+                if (statsService != null) statsService.recordDeleted(List.of(msg));
+                deleted = true;
+            }
         }
         if (!deleted && reverseRepository != null && reverseRepository.findById(id).isPresent()) {
             Pacs008ToMT103Conversion conv = reverseRepository.findById(id).get();
-            if (currentUser.equals(conv.getUsername())) { reverseRepository.deleteById(id); deleted = true; }
+            if (currentUser.equals(conv.getUsername())) {
+                reverseRepository.deleteById(id);
+                if (statsService != null) statsService.recordDeleted(List.of(conv));
+                deleted = true;
+            }
         }
         resp.put("success", deleted);
         resp.put("message", deleted ? "Élément supprimé" : "Introuvable ou non autorisé");
         return resp;
     }
 
-    @DeleteMapping("/api/historique/clear")
-    public Map<String,Object> clearHistory() {
-        String user = getCurrentUsername();
-        int count = 0;
-        if (mt103Repository != null) {
-            for (MT103Msg m : mt103Repository.findTop50ByUsernameOrderByCreatedAtDesc(user)) { mt103Repository.delete(m); count++; }
+    /**
+     * Export de l'historique de l'utilisateur connecté (deux sens), écrit au fil de la lecture :
+     * format csv ou ndjson (une ligne de résumé par conversion) ou zip (messages d'origine et convertis).
+     * from / to (jours ISO, inclus) limitent l'export à une période, sinon tout l'historique.
+     */
+    @GetMapping("/api/historique/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        HistoryExportService.Format exportFormat;
+        try {
+            exportFormat = HistoryExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
-        if (reverseRepository != null) {
-            for (Pacs008ToMT103Conversion c : reverseRepository.findTop50ByUsernameOrderByCreatedAtDesc(user)) { reverseRepository.delete(c); count++; }
+        if (historyExportService == null || (from != null && to != null && to.isBefore(from))) {
+            return ResponseEntity.badRequest().build();
         }
-        return Map.of("success", true, "deletedCount", count);
+        // utilisateur lu avant l'écriture, faite hors du thread de la requête
+        String user = getCurrentUsername();
+        LocalDateTime start = from == null ? null : from.atStartOfDay();
+        LocalDateTime end = to == null ? null : to.plusDays(1).atStartOfDay();
+        String filename = "historique_" + (from == null ? "debut" : from) + "_" + (to == null ? "fin" : to)
+                + "." + exportFormat.name().toLowerCase(Locale.ROOT);
+        MediaType contentType = switch (exportFormat) {
+            case CSV -> new MediaType("text", "csv", StandardCharsets.UTF_8);
+            case NDJSON -> MediaType.APPLICATION_NDJSON;
+            case ZIP -> MediaType.parseMediaType("application/zip");
+        };
+        StreamingResponseBody body = out -> historyExportService.export(user, start, end, exportFormat, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .contentType(contentType)
+                .body(body);
     }
 
-    // Utilitaires existants (copiés)
-    private String safeGetField(MT103Msg msg, String fieldTag) {
-        try { String value = msg.getField(fieldTag); return value != null ? value : ""; } catch (Exception e) { return ""; }
+    /**
+     * Suppression de l'historique de l'utilisateur connecté (deux sens), en tâche de fond par paquets.
+     * from / to (jours ISO, inclus) limitent la suppression à une période, sinon tout l'historique.
+     * Réponse 202 : suivre l'avancement sur /api/historique/purge/{jobId}
+     */
+    @DeleteMapping("/api/historique/clear")
+    public ResponseEntity<Map<String, Object>> clearHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (historyPurgeService == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("success", false, "message", "Suppression indisponible"));
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Période invalide"));
+        }
+        String user = getCurrentUsername();
+        try {
+            HistoryPurgeJob job = historyPurgeService.submit(user,
+                    from == null ? null : from.atStartOfDay(),
+                    to == null ? null : to.plusDays(1).atStartOfDay());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/historique/purge/" + job.getId()))
+                    .body(purgeStatus(job));
+        } catch (HistoryPurgeService.PurgeQueueFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
     }
-    private String extractAmount(String field32A) {
-        if (field32A == null || field32A.trim().isEmpty()) { return "N/A"; }
-        try { String cleanField = field32A.replaceAll("[\\r\\n]", ""); if (cleanField.length() > 9) { String amountPart = cleanField.substring(9); return amountPart.replaceAll("[^0-9.,]", ""); } } catch (Exception ignored) {}
-        return "N/A";
+
+    /**
+     * Avancement d'une suppression lancée par l'utilisateur connecté
+     */
+    @GetMapping("/api/historique/purge/{id}")
+    public ResponseEntity<Map<String, Object>> getPurgeStatus(@PathVariable String id) {
+        HistoryPurgeJob job = historyPurgeService == null ? null : historyPurgeService.getJob(id, getCurrentUsername());
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(purgeStatus(job));
     }
-    private String extractCurrency(String field32A) {
-        if (field32A == null || field32A.trim().isEmpty()) { return "N/A"; }
-        try { String cleanField = field32A.replaceAll("[\\r\\n]", ""); if (cleanField.length() > 8) { return cleanField.substring(6, 9); } } catch (Exception ignored) {}
-        return "N/A";
+
+    private static Map<String, Object> purgeStatus(HistoryPurgeJob job) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("success", job.getStatus() != HistoryPurgeJob.Status.FAILED);
+        status.put("jobId", job.getId());
+        status.put("status", job.getStatus());
+        status.put("totalCount", job.getTotalCount());
+        status.put("deletedCount", job.getDeletedCount());
+        status.put("finished", job.isFinished());
+        status.put("message", job.getErrorMessage());
+        return status;
     }
-    private String extractFirstLine(String field) { if (field == null || field.trim().isEmpty()) return "N/A"; try { String[] lines = field.split("\\r?\\n"); return lines.length > 0 ? lines[0].trim() : "N/A"; } catch (Exception e) { return "N/A"; } }
 }
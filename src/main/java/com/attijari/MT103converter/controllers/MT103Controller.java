@@ -1,17 +1,29 @@
 package com.attijari.MT103converter.controllers;
 
 import com.attijari.MT103converter.converters.MT103ToPacs008Converter;
+import com.attijari.MT103converter.models.HistoryPurgeJob;
 import com.attijari.MT103converter.models.MT103Msg;
 import com.attijari.MT103converter.repositories.MT103MsgRepository;
+import com.attijari.MT103converter.services.BatchConversionExecutor;
+import com.attijari.MT103converter.services.HistoryPurgeService;
+import com.attijari.MT103converter.services.HistoryWriter;
+import com.attijari.MT103converter.services.MT103BatchReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,14 +33,24 @@ public class MT103Controller {
 
     private final MT103ToPacs008Converter converter;
     private final MT103MsgRepository repository;
+    private final BatchConversionExecutor batchExecutor;
+    private final HistoryWriter historyWriter;
+    private final HistoryPurgeService historyPurgeService;
+    private final ObjectMapper objectMapper;
 
     // Stockage temporaire du dernier fichier converti
     private static String lastConvertedXml = null;
     private static String lastConvertedFilename = null;
 
-    public MT103Controller(MT103ToPacs008Converter converter, MT103MsgRepository repository) {
+    public MT103Controller(MT103ToPacs008Converter converter, MT103MsgRepository repository,
+                           BatchConversionExecutor batchExecutor, HistoryWriter historyWriter,
+                           HistoryPurgeService historyPurgeService, ObjectMapper objectMapper) {
         this.converter = converter;
         this.repository = repository;
+        this.batchExecutor = batchExecutor;
+        this.historyWriter = historyWriter;
+        this.historyPurgeService = historyPurgeService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -85,11 +107,11 @@ public class MT103Controller {
                 logger.warn("MT103 conversion failed for user {} - saving error to database: {}", currentUser, result.getErrorMessage());
             }
 
-            // Sauvegarder dans tous les cas
-            repository.save(mt103Msg);
+            // Sauvegarder dans tous les cas (écriture différée, hors du temps de réponse)
+            historyWriter.write(mt103Msg);
 
-            // Log détaillé après sauvegarde
-            logger.info("Conversion saved to database with ID: {} for user: {} - XML present: {} - XML length: {}",
+            // Log détaillé après mise en file
+            logger.info("Conversion queued for database with ID: {} for user: {} - XML present: {} - XML length: {}",
                        mt103Msg.getId(), currentUser,
                        mt103Msg.getPacs008Xml() != null,
                        mt103Msg.getPacs008Xml() != null ? mt103Msg.getPacs008Xml().length() : 0);
@@ -107,17 +129,84 @@ public class MT103Controller {
         }
     }
 
-    //historique de messages entrés
+    /**
+     * Conversion d'un lot de MT103 (RJE séparés par '$' ou FIN concaténés) sur le pool de conversion.
+     * Une ligne JSON par message (NDJSON), dans l'ordre du lot, envoyée dès que le message est converti.
+     */
+    @PostMapping(value = "/convert/batch", consumes = MediaType.TEXT_PLAIN_VALUE, produces = "application/x-ndjson")
+    public void convertBatch(InputStream body, HttpServletResponse response) throws IOException {
+        String currentUser = getCurrentUsername();
+        logger.info("Received MT103 batch for conversion from user: {}", currentUser);
+
+        NdjsonResponse out = NdjsonResponse.open(response, objectMapper);
+        int[] counts = new int[2];
+
+        BatchConversionExecutor.OrderedBatch<BatchLine> batch = batchExecutor.start(line -> {
+            out.write(line.response());
+            counts[0]++;
+            if (!line.response().success()) {
+                counts[1]++;
+            }
+            if (line.mt103Msg() != null) {
+                historyWriter.write(line.mt103Msg());
+            }
+        });
+        try (MT103BatchReader reader = MT103BatchReader.open(body)) {
+            while (reader.hasNext()) {
+                MT103BatchReader.Item item = reader.next();
+                batch.submit(() -> convertItem(item, currentUser));
+            }
+            batch.finish();
+        } catch (ClientDisconnectedException e) {
+            batch.cancel();
+            logger.warn("Lot MT103 abandonné après {} messages: {}", counts[0], e.getMessage());
+        } catch (RuntimeException e) {
+            batch.cancel();
+            logger.error("Lot MT103 interrompu après {} messages: {}", counts[0], e.getMessage(), e);
+            out.writeError(new BatchConversionResponse(0, false, null, "Lot interrompu: " + e.getMessage()));
+        }
+        logger.info("MT103 batch converted for user {}: {} messages, {} errors", currentUser, counts[0], counts[1]);
+    }
+
+    private BatchLine convertItem(MT103BatchReader.Item item, String currentUser) {
+        if (item.isMalformed()) {
+            String error = "Message mal formé à l'octet " + item.getByteOffset() + " : " + item.getError();
+            return new BatchLine(new BatchConversionResponse(item.getIndex(), false, null, error), null);
+        }
+        MT103ToPacs008Converter.ConversionResult result;
+        try {
+            result = converter.process(item.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Erreur de conversion du message {} du lot: {}", item.getIndex(), e.getMessage(), e);
+            item.getMessage().setUsername(currentUser);
+            return new BatchLine(new BatchConversionResponse(item.getIndex(), false, null,
+                    "Erreur lors de la conversion: " + e.getMessage()), item.getMessage());
+        }
+        MT103Msg mt103Msg = result.getMt103Msg();
+        mt103Msg.setUsername(currentUser);
+        mt103Msg.setPacs008Xml(result.isSuccess() ? result.getXmlContent() : null);
+        return new BatchLine(new BatchConversionResponse(item.getIndex(), result.isSuccess(),
+                result.getXmlContent(), result.getErrorMessage()), mt103Msg);
+    }
+
+    //historique de messages entrés : 50 derniers de l'utilisateur connecté (export complet : /api/historique/export)
     @GetMapping("/history")
     public ResponseEntity<List<MT103Msg>> getHistory() {
-        List<MT103Msg> messages = converter.getAllMessages();
+        List<MT103Msg> messages = repository.findTop50ByUsernameOrderByCreatedAtDesc(getCurrentUsername());
         return ResponseEntity.ok(messages);
     }
-    //option d'effacer l'historique
+    //option d'effacer l'historique de l'utilisateur connecté (en tâche de fond, voir /api/historique/purge/{id})
     @DeleteMapping("/history")
     public ResponseEntity<Void> clearHistory() {
-        repository.deleteAll();
-        return ResponseEntity.noContent().build();
+        HistoryPurgeJob job = historyPurgeService.submit(getCurrentUsername(), null, null);
+        return ResponseEntity.accepted().location(URI.create("/api/historique/purge/" + job.getId())).build();
+    }
+
+    @ExceptionHandler(HistoryPurgeService.PurgeQueueFullException.class)
+    public ResponseEntity<Void> purgeQueueFull(HistoryPurgeService.PurgeQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
     }
 
     // Télécharger le contenu MT103 depuis l'historique
@@ -176,6 +265,11 @@ public class MT103Controller {
                 .body(lastConvertedXml);
     }
 
+    // Ligne NDJSON d'un lot : rang du message dans le lot (0 : erreur du lot lui-même)
+    public record BatchConversionResponse(int index, boolean success, String xmlContent, String errorMessage) {}
+
+    private record BatchLine(BatchConversionResponse response, MT103Msg mt103Msg) {}
+
     // Classe pour la réponse JSON
     public static class ConversionResponse {
         private boolean success;
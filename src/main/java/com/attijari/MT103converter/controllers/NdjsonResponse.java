@@ -0,0 +1,61 @@
+package com.attijari.MT103converter.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Réponse NDJSON des conversions par lot : une ligne JSON par résultat, envoyée dès qu'elle est écrite.
+ * Client déconnecté : ClientDisconnectedException, le lot est abandonné.
+ */
+class NdjsonResponse {
+    private static final Logger logger = LogManager.getLogger(NdjsonResponse.class);
+
+    static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private final ObjectMapper objectMapper;
+    private final Writer out;
+
+    NdjsonResponse(ObjectMapper objectMapper, Writer out) {
+        this.objectMapper = objectMapper;
+        this.out = out;
+    }
+
+    static NdjsonResponse open(HttpServletResponse response, ObjectMapper objectMapper) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        return new NdjsonResponse(objectMapper, response.getWriter());
+    }
+
+    void write(Object line) {
+        try {
+            out.write(objectMapper.writeValueAsString(line));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            // client déconnecté : le lot est abandonné
+            throw new ClientDisconnectedException(e);
+        }
+        // PrintWriter de la réponse : erreur d'écriture signalée par checkError, sans exception
+        if (out instanceof PrintWriter printWriter && printWriter.checkError()) {
+            throw new ClientDisconnectedException(new IOException("écriture de la réponse impossible"));
+        }
+    }
+
+    /**
+     * Dernière ligne d'erreur du lot : un client déjà parti ne masque pas l'erreur d'origine
+     */
+    void writeError(Object line) {
+        try {
+            write(line);
+        } catch (RuntimeException e) {
+            logger.warn("Ligne d'erreur du lot non transmise: {}", e.getMessage());
+        }
+    }
+}
@@ -2,7 +2,11 @@ package com.attijari.MT103converter.controllers;
 
 import com.attijari.MT103converter.converters.Pacs008ToMT103Converter;
 import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
-import com.attijari.MT103converter.repositories.Pacs008ToMT103ConversionRepository;
+import com.attijari.MT103converter.services.BatchConversionExecutor;
+import com.attijari.MT103converter.services.HistoryWriter;
+import com.attijari.MT103converter.services.Pacs008Reader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.http.MediaType;
@@ -12,16 +16,27 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.web.bind.annotation.*;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 @RestController
 public class Pacs008ToMT103Controller {
 
     private static final Logger logger = LogManager.getLogger(Pacs008ToMT103Controller.class);
     private final Pacs008ToMT103Converter converter;
-    private final Pacs008ToMT103ConversionRepository repository;
+    private final HistoryWriter historyWriter;
+    private final BatchConversionExecutor batchExecutor;
+    private final ObjectMapper objectMapper;
 
-    public Pacs008ToMT103Controller(Pacs008ToMT103Converter converter, Pacs008ToMT103ConversionRepository repository) {
+    public Pacs008ToMT103Controller(Pacs008ToMT103Converter converter, HistoryWriter historyWriter,
+                                    BatchConversionExecutor batchExecutor, ObjectMapper objectMapper) {
         this.converter = converter;
-        this.repository = repository;
+        this.historyWriter = historyWriter;
+        this.batchExecutor = batchExecutor;
+        this.objectMapper = objectMapper;
     }
 
     private String getCurrentUsername() {
@@ -52,8 +67,9 @@ public class Pacs008ToMT103Controller {
         entity.setSuccess(result.isSuccess());
         entity.setMt103Result(result.getMt103Content());
         entity.setErrorMessage(result.getErrorMessage());
+        entity.setSummary(result.getSummary());
         entity.setUsername(user);
-        repository.save(entity);
+        historyWriter.write(entity);
 
         if (result.isSuccess()) {
             return ResponseEntity.ok(new ReverseResponse(true, result.getMt103Content(), null));
@@ -62,6 +78,67 @@ public class Pacs008ToMT103Controller {
         }
     }
 
+    /**
+     * Conversion inverse d'un pacs.008 à plusieurs CdtTrfTxInf : le document est lu au fil de l'eau
+     * et chaque transaction convertie sur le pool de conversion.
+     * Une ligne JSON par transaction (NDJSON), dans l'ordre du document ; un XML mal formé plus loin
+     * n'annule pas les transactions déjà rendues et donne une dernière ligne d'erreur (index 0).
+     * L'historique garde une entrée par transaction, sans le document d'origine (rawPacs008Xml vide).
+     */
+    @PostMapping(value = "/convert-reverse/batch", consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_PLAIN_VALUE}, produces = "application/x-ndjson")
+    public void convertReverseBatch(InputStream body, HttpServletResponse response) throws IOException {
+        String user = getCurrentUsername();
+        logger.info("Reverse batch conversion request by {}", user);
+
+        NdjsonResponse out = NdjsonResponse.open(response, objectMapper);
+        int[] counts = new int[2];
+
+        BatchConversionExecutor.OrderedBatch<Pacs008ToMT103Converter.TransactionResult> batch = batchExecutor.start(result -> {
+            out.write(new ReverseBatchLine(result.getIndex(), result.getReference(), result.isSuccess(),
+                    result.getMt103Content(), result.getErrorMessage()));
+            counts[0]++;
+            if (!result.isSuccess()) {
+                counts[1]++;
+            }
+            Pacs008ToMT103Conversion entity = new Pacs008ToMT103Conversion();
+            entity.setSuccess(result.isSuccess());
+            entity.setMt103Result(result.getMt103Content());
+            entity.setErrorMessage(result.getErrorMessage());
+            entity.setSummary(result.getSummary());
+            entity.setUsername(user);
+            historyWriter.write(entity);
+        });
+        int[] read = new int[1];
+        try {
+            try {
+                Pacs008Reader.read(new InputStreamReader(body, StandardCharsets.UTF_8), tx -> {
+                    int index = ++read[0];
+                    batch.submit(() -> converter.convertTransaction(index, tx));
+                });
+                batch.finish();
+                if (read[0] == 0) {
+                    out.write(new ReverseBatchLine(0, null, false, null, "Élément CdtTrfTxInf introuvable"));
+                }
+            } catch (XMLStreamException e) {
+                logger.error("XML mal formé dans le lot après {} transactions: {}", read[0], e.getMessage());
+                // transactions déjà lues rendues avant la ligne d'erreur
+                batch.finish();
+                out.write(new ReverseBatchLine(0, null, false, null, "XML mal formé : " + e.getMessage()));
+            }
+        } catch (ClientDisconnectedException e) {
+            batch.cancel();
+            logger.warn("Lot pacs.008 abandonné après {} transactions: {}", counts[0], e.getMessage());
+        } catch (RuntimeException e) {
+            batch.cancel();
+            logger.error("Lot pacs.008 interrompu après {} transactions: {}", counts[0], e.getMessage(), e);
+            out.writeError(new ReverseBatchLine(0, null, false, null, "Lot interrompu: " + e.getMessage()));
+        }
+        logger.info("Reverse batch converted for {}: {} transactions, {} errors", user, counts[0], counts[1]);
+    }
+
+    // Ligne NDJSON d'un lot : rang de la transaction dans le document (0 : erreur du document lui-même)
+    public record ReverseBatchLine(int index, String reference, boolean success, String mt103Content, String errorMessage) {}
+
     public record ReverseResponse(boolean success, String mt103Content, String errorMessage) {}
 }
 
@@ -1,9 +1,13 @@
 package com.attijari.MT103converter.converters;
 
+import com.attijari.MT103converter.models.ConversionSummary;
 import com.attijari.MT103converter.models.ErrorCall;
 import com.attijari.MT103converter.models.MT103Msg;
 import com.attijari.MT103converter.models.Pacs008Msg;
 import com.attijari.MT103converter.repositories.MT103MsgRepository;
+import com.attijari.MT103converter.services.ConversionMetrics;
+import com.attijari.MT103converter.services.ConversionMetrics.Outcome;
+import com.attijari.MT103converter.services.ConversionMetrics.Stage;
 import com.attijari.MT103converter.services.MT103Parser;
 import com.attijari.MT103converter.services.Transformer;
 import com.attijari.MT103converter.services.Validator;
@@ -30,17 +34,48 @@ public class MT103ToPacs008Converter {
     @Autowired
     private MT103MsgRepository repository;
 
+    @Autowired
+    private ConversionMetrics metrics = ConversionMetrics.noop();
+
+    private static final ConversionMetrics.Direction DIRECTION = ConversionMetrics.Direction.MT103_TO_PACS008;
+
     public ConversionResult process(String rawMT103) {
         if (rawMT103 == null || rawMT103.isBlank()) {
+            metrics.outcome(DIRECTION, Outcome.VALIDATION_ERROR);
             return new ConversionResult(false, null, "Le message MT103 est vide.", null);
         }
 
         //parser
+        long start = System.nanoTime();
         MT103Msg mt103 = parser.parse(rawMT103);
+        metrics.record(DIRECTION, Stage.PARSE, start);
+        return process(mt103);
+    }
+
+    /**
+     * Conversion d'un message déjà découpé (lecture d'un lot par MT103BatchReader) ;
+     * le résumé de l'historique est renseigné sur le message, quel que soit le résultat
+     */
+    public ConversionResult process(MT103Msg mt103) {
+        try {
+            return convert(mt103);
+        } catch (RuntimeException e) {
+            metrics.outcome(DIRECTION, Outcome.ERROR);
+            throw e;
+        } finally {
+            mt103.setSummary(ConversionSummary.forward(mt103));
+        }
+    }
+
+    private ConversionResult convert(MT103Msg mt103) {
+        String rawMT103 = mt103.getRawContent();
 
         //valider MT103
+        long start = System.nanoTime();
         ErrorCall mt103Errors = validator.validateMT103(mt103);
+        metrics.record(DIRECTION, Stage.VALIDATE_MT103, start);
         if (mt103Errors.hasErrors()) {
+            metrics.validationFailed(DIRECTION, mt103Errors);
             StringBuilder errorMsg = new StringBuilder();
 
             // *** LOG DÉTAILLÉ DES ERREURS ***
@@ -58,18 +93,25 @@ public class MT103ToPacs008Converter {
             return new ConversionResult(false, null, errorMsg.toString().trim(), mt103);
         }
 
-        // transformer
+        // transformer (en mode inline, la validation XSD faite pendant l'écriture est comptée dans VALIDATE_PACS008)
+        start = System.nanoTime();
         Pacs008Msg pacs = transformer.transform(mt103);
+        long inlineValidationNanos = pacs == null ? 0 : pacs.getSchemaValidationNanos();
+        metrics.recordNanos(DIRECTION, Stage.TRANSFORM, System.nanoTime() - start - inlineValidationNanos);
         if (pacs == null || pacs.getXmlContent() == null) {
+            metrics.outcome(DIRECTION, Outcome.ERROR);
             return new ConversionResult(false, null, "Erreur lors de la transformation du message MT103.", mt103);
         }
 
         // générer XML
         String xml = pacs.generateXML();
 
-        // valider XML avec XSD
-        ErrorCall pacsErrors = validator.validatePacs008(xml);
+        // valider XML avec XSD (déjà fait pendant la génération en mode inline)
+        start = System.nanoTime();
+        ErrorCall pacsErrors = validator.validatePacs008(pacs);
+        metrics.recordNanos(DIRECTION, Stage.VALIDATE_PACS008, System.nanoTime() - start + inlineValidationNanos);
         if (pacsErrors.hasErrors()) {
+            metrics.validationFailed(DIRECTION, pacsErrors);
             StringBuilder errorMsg = new StringBuilder();
             for (String err : pacsErrors.getErrors()) {
                 errorMsg.append("• ").append(err).append("\n");
@@ -79,6 +121,7 @@ public class MT103ToPacs008Converter {
 
         // Succès : on ne sauvegarde plus ici car c'est fait dans le MT103Controller
         mt103.setPacs008Xml(xml);
+        metrics.outcome(DIRECTION, Outcome.SUCCESS);
 
         //retourner XML final avec l'objet MT103
         return new ConversionResult(true, xml, null, mt103);
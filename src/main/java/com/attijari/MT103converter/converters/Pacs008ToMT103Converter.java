@@ -1,22 +1,33 @@
 package com.attijari.MT103converter.converters;
 
+import com.attijari.MT103converter.models.ConversionSummary;
 import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.attijari.MT103converter.models.Pacs008Transaction;
+import com.attijari.MT103converter.services.ConversionMetrics;
+import com.attijari.MT103converter.services.ConversionMetrics.Outcome;
+import com.attijari.MT103converter.services.ConversionMetrics.Stage;
+import com.attijari.MT103converter.services.Pacs008Mapping;
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+import com.attijari.MT103converter.services.Pacs008Reader;
 import com.attijari.MT103converter.services.Validator;
 import com.attijari.MT103converter.models.ErrorCall;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.*;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Conversion PACS008 -> MT103 (logique inverse enrichie)
@@ -24,100 +35,225 @@ import java.util.List;
 @Component
 public class Pacs008ToMT103Converter {
     private static final Logger logger = LogManager.getLogger(Pacs008ToMT103Converter.class);
-    private static final String NS = "urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08";
+    private static final DateTimeFormatter MT_DATE = DateTimeFormatter.ofPattern("yyMMdd");
 
     @Autowired(required = false)
     private Validator validator; // facultatif (tests unitaires peuvent bypass)
 
+    @Autowired(required = false)
+    private ConversionMetrics metrics = ConversionMetrics.noop();
+
+    private static final ConversionMetrics.Direction DIRECTION = ConversionMetrics.Direction.PACS008_TO_MT103;
+
+    /**
+     * Conversion d'un document à une transaction ; le résultat porte le résumé de l'historique
+     * (montant, parties) dès que la transaction a pu être lue
+     */
     public ConversionResult process(String xml) {
+        List<Pacs008Transaction> transactions = new ArrayList<>(1);
+        ConversionResult result = convert(xml, transactions);
+        if (transactions.isEmpty()) {
+            result.summary = ConversionSummary.reverseFailure();
+        } else {
+            Pacs008Transaction tx = transactions.get(0);
+            result.summary = ConversionSummary.reverse(tx, result.isSuccess());
+        }
+        return result;
+    }
+
+    private ConversionResult convert(String xml, List<Pacs008Transaction> transactions) {
         if (xml == null || xml.isBlank()) {
+            metrics.outcome(DIRECTION, Outcome.VALIDATION_ERROR);
             return new ConversionResult(false, null, "Le contenu XML pacs.008 est vide.");
         }
         try {
-            // 1. Validation XSD (si validator disponible)
+            // 1. Une seule lecture StAX : validation XSD (si validator disponible) et relevé des champs
+            long start = System.nanoTime();
             if (validator != null) {
-                ErrorCall validationErrors = validator.validatePacs008(xml);
+                ErrorCall validationErrors = validator.validatePacs008(xml, transactions::add);
+                metrics.record(DIRECTION, Stage.VALIDATE_PACS008, start);
                 if (validationErrors.hasErrors()) {
+                    metrics.validationFailed(DIRECTION, validationErrors);
                     StringBuilder sb = new StringBuilder("Validation XSD échouée:\n");
                     validationErrors.getErrors().forEach(err -> sb.append("• ").append(err).append('\n'));
                     return new ConversionResult(false, null, sb.toString().trim());
                 }
+            } else {
+                Pacs008Reader.read(new StringReader(xml), transactions::add);
+                metrics.record(DIRECTION, Stage.VALIDATE_PACS008, start);
             }
 
-            // 2. Parse DOM
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
-
-            // Rechercher le noeud CdtTrfTxInf (obligatoire pour la conversion)
-            NodeList txList = doc.getElementsByTagNameNS(NS, "CdtTrfTxInf");
-            if (txList.getLength() == 0) {
+            // 2. Transaction à convertir
+            if (transactions.isEmpty()) {
+                metrics.outcome(DIRECTION, Outcome.VALIDATION_ERROR);
                 return new ConversionResult(false, null, "Élément CdtTrfTxInf introuvable dans le pacs.008");
             }
-            Element tx = (Element) txList.item(0);
 
-            // 3. Extraire champs nécessaires
-            String instrId = text(tx, "PmtId/InstrId");
-            if (instrId == null || instrId.isBlank()) instrId = text(tx, "PmtId/EndToEndId");
-            if (instrId == null || instrId.isBlank()) instrId = "REF" + System.currentTimeMillis();
+            start = System.nanoTime();
+            String mt103 = toMT103(transactions.get(0));
+            metrics.record(DIRECTION, Stage.TRANSFORM, start);
+            metrics.outcome(DIRECTION, Outcome.SUCCESS);
+            return new ConversionResult(true, mt103, null);
+        } catch (Exception e) {
+            metrics.outcome(DIRECTION, Outcome.ERROR);
+            logger.error("Erreur conversion inverse: {}", e.getMessage(), e);
+            return new ConversionResult(false, null, "Erreur lors du parsing XML: " + e.getMessage());
+        }
+    }
 
-            Element amtEl = firstChild(tx, "IntrBkSttlmAmt");
-            String amount = amtEl != null ? amtEl.getTextContent() : null;
-            String currency = amtEl != null ? amtEl.getAttribute("Ccy") : null;
+    /**
+     * Conversion d'un document de lot : un MT103 par CdtTrfTxInf, remis au consumer dans l'ordre du document.
+     * Une seule transaction est en mémoire à la fois. Une transaction incorrecte est signalée
+     * (résultat en échec) sans interrompre les suivantes.
+     * Pas de validation XSD du document : le schéma HVPS+ n'accepte qu'une transaction par document,
+     * chaque transaction est contrôlée à la place (montant, devise).
+     *
+     * @param xml document pacs.008, lu au fil de l'eau
+     * @param results résultat de chaque transaction
+     * @return bilan du lot (nombre de transactions, échecs, erreur de lecture éventuelle)
+     */
+    public BatchResult processBatch(Reader xml, Consumer<TransactionResult> results) {
+        BatchResult batch = new BatchResult();
+        try {
+            Pacs008Reader.read(xml, tx -> {
+                TransactionResult result = convertTransaction(batch.transactionCount + 1, tx);
+                batch.add(result);
+                results.accept(result);
+            });
+        } catch (XMLStreamException e) {
+            // les transactions déjà lues restent converties
+            logger.error("Lot pacs.008 illisible après {} transactions: {}", batch.transactionCount, e.getMessage());
+            batch.errorMessage = "Erreur lors du parsing XML: " + e.getMessage();
+        }
+        if (batch.transactionCount == 0 && batch.errorMessage == null) {
+            batch.errorMessage = "Élément CdtTrfTxInf introuvable dans le pacs.008";
+        }
+        logger.info("Conversion inverse par lot: {} transactions, {} en échec", batch.transactionCount, batch.failureCount);
+        return batch;
+    }
 
-            String settlementDate = text(tx, "IntrBkSttlmDt");
-            if (settlementDate == null) {
-                // tenter dans GrpHdr si manquant
-                settlementDate = text(doc.getDocumentElement(), "GrpHdr/CreDtTm");
+    /**
+     * Conversion d'un document de lot en sortie RJE : les MT103 réussis sont écrits les uns
+     * après les autres, séparés par '$' ; les transactions en échec figurent dans le bilan.
+     */
+    public BatchResult processBatch(Reader xml, Writer rje) {
+        boolean[] first = {true};
+        BatchResult batch = processBatch(xml, result -> {
+            if (!result.isSuccess()) {
+                return;
+            }
+            try {
+                if (!first[0]) {
+                    rje.write('$');
+                }
+                rje.write(result.getMt103Content());
+                first[0] = false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        });
+        try {
+            rje.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return batch;
+    }
 
-            String chrgBr = text(tx, "ChrgBr");
-            String svcLvl = text(tx, "PmtTpInf/SvcLvl/Cd");
+    /**
+     * Conversion d'une transaction lue dans un lot (contrôles montant/devise puis MT103)
+     * @param index rang de la transaction dans le document (à partir de 1)
+     */
+    public TransactionResult convertTransaction(int index, Pacs008Transaction tx) {
+        TransactionResult result = convert(index, tx);
+        result.summary = ConversionSummary.reverse(tx, result.isSuccess());
+        return result;
+    }
 
-            // Debtor
-            String debtorName = text(tx, "Dbtr/Nm");
-            List<String> debtorAdr = adrLines(tx, "Dbtr/PstlAdr/AdrLine");
-            String debtorAcct = text(tx, "DbtrAcct/Id/Othr/Id");
+    private TransactionResult convert(int index, Pacs008Transaction tx) {
+        String reference = tx.getReference();
+        String error = checkTransaction(tx);
+        if (error != null) {
+            logger.warn("Transaction {} ({}) rejetée: {}", index, reference, error);
+            metrics.outcome(DIRECTION, Outcome.VALIDATION_ERROR);
+            return new TransactionResult(index, reference, false, null, error);
+        }
+        try {
+            long start = System.nanoTime();
+            String mt103 = toMT103(tx);
+            metrics.record(DIRECTION, Stage.TRANSFORM, start);
+            metrics.outcome(DIRECTION, Outcome.SUCCESS);
+            return new TransactionResult(index, reference, true, mt103, null);
+        } catch (RuntimeException e) {
+            metrics.outcome(DIRECTION, Outcome.ERROR);
+            logger.error("Erreur conversion inverse transaction {}: {}", index, e.getMessage(), e);
+            return new TransactionResult(index, reference, false, null, "Erreur lors de la conversion: " + e.getMessage());
+        }
+    }
 
-            // Creditor
-            String creditorName = text(tx, "Cdtr/Nm");
-            List<String> creditorAdr = adrLines(tx, "Cdtr/PstlAdr/AdrLine");
-            String creditorAcct = text(tx, "CdtrAcct/Id/Othr/Id");
+    /**
+     * Contrôles faits par le XSD pour un document unitaire, indispensables au champ 32A
+     */
+    private String checkTransaction(Pacs008Transaction tx) {
+        String amount = tx.get(Field.AMOUNT);
+        if (amount == null || amount.isBlank()) {
+            return "Montant IntrBkSttlmAmt manquant";
+        }
+        try {
+            if (new BigDecimal(amount.trim()).signum() < 0) {
+                return "Montant négatif: " + amount.trim();
+            }
+        } catch (NumberFormatException e) {
+            return "Montant invalide: " + amount.trim();
+        }
+        String currency = tx.get(Field.CURRENCY);
+        if (currency == null || !currency.matches("[A-Z]{3}")) {
+            return "Devise invalide: " + currency;
+        }
+        return null;
+    }
 
-            // Remittance
-            String remittance = text(tx, "RmtInf/Ustrd");
+    private String toMT103(Pacs008Transaction tx) {
+        // 3. Champs nécessaires (correspondances, codes et longueurs : Pacs008Mapping)
+        String reference = tx.getReference();
+        String field20 = reference != null ? Field.INSTR_ID.toMt(reference) : "REF" + System.currentTimeMillis();
 
-            // 4. Mapping inverse
-            String field23B = mapServiceLevelReverse(svcLvl);
-            String field71A = mapChargeBearerReverse(chrgBr);
-            String field32A = build32A(settlementDate, currency, amount);
+        String amount = tx.get(Field.AMOUNT);
+        String currency = tx.get(Field.CURRENCY);
 
-            String field50K = buildPartyField(debtorAcct, debtorName, debtorAdr);
-            String field59 = buildPartyField(creditorAcct, creditorName, creditorAdr);
+        String settlementDate = tx.get(Field.SETTLEMENT_DATE);
+        if (settlementDate == null) {
+            // tenter dans GrpHdr si manquant
+            settlementDate = tx.getCreationDateTime();
+        }
 
-            // 5. Construire MT103
-            StringBuilder mt = new StringBuilder();
-            mt.append("{1:F01BANKDEFAXXX0000000000}{2:O103").append(nowDateYYMMDD())
-              .append("BANKDEFAXXXBANKFRPPXXX0000000000}{4:\n");
-            mt.append(tagLine("20", instrId));
-            mt.append(tagLine("23B", field23B));
-            mt.append(tagLine("32A", field32A));
-            mt.append(tagLine("33B", build33B(currency, amount)));
-            mt.append(tagLine("50K", field50K));
-            mt.append(tagLine("59", field59));
-            if (remittance != null && !remittance.isBlank()) {
-                mt.append(tagLine("70", sanitize(remittance, 140))); // Tag 70 multi-ligne simplifié
-            }
-            mt.append(":").append("71A").append(":").append(field71A == null ? "" : field71A).append("\n");
-            // Clôturer correctement le bloc 4 avec "-}" avant d'ouvrir le bloc 5
-            mt.append("-}\n{5:{CHK:000000000000}}\n");
+        String remittance = tx.get(Field.REMITTANCE);
 
-            return new ConversionResult(true, mt.toString(), null);
-        } catch (Exception e) {
-            logger.error("Erreur conversion inverse: {}", e.getMessage(), e);
-            return new ConversionResult(false, null, "Erreur lors du parsing XML: " + e.getMessage());
+        // 4. Mapping inverse
+        String field23B = Pacs008Mapping.SERVICE_LEVEL.toMt(tx.get(Field.SERVICE_LEVEL));
+        String field71A = Pacs008Mapping.CHARGE_BEARER.toMt(tx.get(Field.CHARGE_BEARER));
+        String field32A = Pacs008Mapping.to32A(settlementDate, currency, amount);
+
+        String field50K = buildPartyField(tx, Field.DEBTOR_ACCOUNT, Field.DEBTOR_NAME, Field.DEBTOR_ADDRESS);
+        String field59 = buildPartyField(tx, Field.CREDITOR_ACCOUNT, Field.CREDITOR_NAME, Field.CREDITOR_ADDRESS);
+
+        // 5. Construire MT103
+        StringBuilder mt = new StringBuilder();
+        mt.append("{1:F01BANKDEFAXXX0000000000}{2:O103").append(nowDateYYMMDD())
+          .append("BANKDEFAXXXBANKFRPPXXX0000000000}{4:\n");
+        mt.append(tagLine("20", field20));
+        mt.append(tagLine("23B", field23B));
+        mt.append(tagLine("32A", field32A));
+        mt.append(tagLine("33B", Pacs008Mapping.to33B(currency, amount)));
+        mt.append(tagLine("50K", field50K));
+        mt.append(tagLine("59", field59));
+        if (remittance != null && !remittance.isBlank()) {
+            mt.append(tagLine("70", Field.REMITTANCE.toMt(remittance))); // Tag 70 multi-ligne simplifié
         }
+        mt.append(":").append("71A").append(":").append(field71A).append("\n");
+        // Clôturer correctement le bloc 4 avec "-}" avant d'ouvrir le bloc 5
+        mt.append("-}\n{5:{CHK:000000000000}}\n");
+        return mt.toString();
     }
 
     // ================= Utility methods =================
@@ -125,146 +261,96 @@ public class Pacs008ToMT103Converter {
         return ":" + tag + ":" + (value == null ? "" : value) + "\n";
     }
 
-    private String sanitize(String val, int max) {
-        if (val == null) return "";
-        String cleaned = val.replaceAll("\r", "").trim();
-        if (cleaned.length() > max) return cleaned.substring(0, max);
-        return cleaned;
-    }
-
-    private String build33B(String currency, String amount) {
-        String c = (currency == null || currency.isBlank()) ? "EUR" : currency.trim();
-        String a = "0,00";
-        if (amount != null && !amount.isBlank()) {
-            a = amount.replace('.', ',');
-        }
-        return c + a;
-    }
-
-    private String buildPartyField(String account, String name, List<String> adrLines) {
+    private String buildPartyField(Pacs008Transaction tx, Field accountField, Field nameField, Field addressField) {
         StringBuilder sb = new StringBuilder();
+        String account = tx.get(accountField);
         if (account != null && !account.isBlank()) {
-            sb.append('/').append(account.trim()).append('\n');
+            sb.append('/').append(accountField.toMt(account)).append('\n');
         }
+        String name = tx.get(nameField);
         if (name != null && !name.isBlank()) {
-            sb.append(sanitize(name, 35)).append('\n');
+            sb.append(nameField.toMt(name)).append('\n');
         } else {
             sb.append("UNKNOWN").append('\n');
         }
-        for (String l : adrLines) {
+        for (String l : tx.getAll(addressField)) {
             if (l == null || l.isBlank()) continue;
-            sb.append(sanitize(l, 35)).append('\n');
+            sb.append(addressField.toMt(l)).append('\n');
         }
         // Remove trailing newline
         if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') sb.setLength(sb.length() - 1);
         return sb.toString();
     }
 
-    private List<String> adrLines(Element root, String path) {
-        List<String> lines = new ArrayList<>();
-        String[] parts = path.split("/");
-        // Navigate down ignoring namespace convenience: collect final element name
-        String last = parts[parts.length - 1];
-        NodeList nl = root.getElementsByTagNameNS(NS, last);
-        for (int i = 0; i < nl.getLength(); i++) {
-            lines.add(nl.item(i).getTextContent());
-        }
-        return lines;
-    }
-
-    private Element firstChild(Element parent, String localName) {
-        NodeList nl = parent.getElementsByTagNameNS(NS, localName);
-        if (nl.getLength() > 0) return (Element) nl.item(0);
-        return null;
-    }
-
-    private String text(Node context, String path) {
-        if (context == null || path == null) return null;
-        String[] parts = path.split("/");
-        return findRecursive(context, parts, 0);
+    private String nowDateYYMMDD() {
+        return LocalDate.now().format(MT_DATE);
     }
 
-    private String findRecursive(Node node, String[] parts, int idx) {
-        if (idx >= parts.length) return null;
-        String target = parts[idx];
-        NodeList children;
-        if (node instanceof Document doc) {
-            children = doc.getDocumentElement().getChildNodes();
-        } else {
-            children = node.getChildNodes();
-        }
-        for (int i = 0; i < children.getLength(); i++) {
-            Node c = children.item(i);
-            if (c.getNodeType() == Node.ELEMENT_NODE) {
-                if (c.getLocalName() != null && c.getLocalName().equals(target)) {
-                    if (idx == parts.length - 1) {
-                        return c.getTextContent();
-                    }
-                    return findRecursive(c, parts, idx + 1);
-                }
-            }
-        }
-        // Fallback global search by localName
-        if (node instanceof Element || node instanceof Document) {
-            NodeList nl = (node instanceof Document d ? d : node.getOwnerDocument()).getElementsByTagNameNS(NS, target);
-            if (nl.getLength() > 0) {
-                Node c = nl.item(0);
-                if (idx == parts.length - 1) return c.getTextContent();
-                return findRecursive(c, parts, idx + 1);
-            }
-        }
-        return null;
+    /**
+     * Résultat d'une transaction d'un lot
+     */
+    public static class TransactionResult {
+        private final int index;
+        private final String reference;
+        private final boolean success;
+        private final String mt103Content;
+        private final String errorMessage;
+        private ConversionSummary summary;
+        public TransactionResult(int index, String reference, boolean success, String mt103Content, String errorMessage) {
+            this.index = index; this.reference = reference; this.success = success;
+            this.mt103Content = mt103Content; this.errorMessage = errorMessage; }
+        /** rang de la transaction dans le document (à partir de 1) */
+        public int getIndex() { return index; }
+        /** InstrId, à défaut EndToEndId */
+        public String getReference() { return reference; }
+        public boolean isSuccess() { return success; }
+        public String getMt103Content() { return mt103Content; }
+        public String getErrorMessage() { return errorMessage; }
+        /** résumé pour l'historique */
+        public ConversionSummary getSummary() { return summary; }
     }
 
-    private String mapServiceLevelReverse(String svcLvl) {
-        if (svcLvl == null) return "CRED";
-        switch (svcLvl.toUpperCase()) {
-            case "NORM": return "CRED";
-            case "NURG": return "CRTS";
-            default: return "CRED";
-        }
-    }
+    /**
+     * Bilan d'un lot : compteurs et détail des premières transactions en échec (mémoire bornée)
+     */
+    public static class BatchResult {
+        public static final int MAX_REPORTED_FAILURES = 1000;
 
-    private String mapChargeBearerReverse(String chrgBr) {
-        if (chrgBr == null) return "SHA";
-        switch (chrgBr.toUpperCase()) {
-            case "DEBT": return "OUR";
-            case "CRED": return "BEN";
-            case "SHAR": return "SHA";
-            default: return "SHA";
-        }
-    }
+        private int transactionCount;
+        private int failureCount;
+        private final List<TransactionResult> failures = new ArrayList<>();
+        private String errorMessage;
 
-    private String build32A(String isoDate, String currency, String amount) {
-        String date = "000000";
-        try {
-            if (isoDate != null && !isoDate.isBlank()) {
-                // Accept either yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss formats
-                String datePart = isoDate.contains("T") ? isoDate.substring(0, isoDate.indexOf('T')) : isoDate;
-                LocalDate d = LocalDate.parse(datePart);
-                date = d.format(DateTimeFormatter.ofPattern("yyMMdd"));
+        private void add(TransactionResult result) {
+            transactionCount++;
+            if (!result.isSuccess()) {
+                failureCount++;
+                if (failures.size() < MAX_REPORTED_FAILURES) {
+                    failures.add(result);
+                }
             }
-        } catch (Exception ignored) {}
-        if (currency == null || currency.isBlank()) currency = "EUR";
-        String amt = "0,00";
-        if (amount != null && !amount.isBlank()) {
-            amt = amount.replace('.', ',');
         }
-        return date + currency + amt;
-    }
 
-    private String nowDateYYMMDD() {
-        return LocalDate.now().format(DateTimeFormatter.ofPattern("yyMMdd"));
+        public int getTransactionCount() { return transactionCount; }
+        public int getSuccessCount() { return transactionCount - failureCount; }
+        public int getFailureCount() { return failureCount; }
+        public List<TransactionResult> getFailures() { return failures; }
+        /** erreur empêchant de lire le document jusqu'au bout (null si lu entièrement) */
+        public String getErrorMessage() { return errorMessage; }
+        public boolean isSuccess() { return errorMessage == null && failureCount == 0; }
     }
 
     public static class ConversionResult {
         private final boolean success;
         private final String mt103Content;
         private final String errorMessage;
+        private ConversionSummary summary;
         public ConversionResult(boolean success, String mt103Content, String errorMessage) {
             this.success = success; this.mt103Content = mt103Content; this.errorMessage = errorMessage; }
         public boolean isSuccess() { return success; }
         public String getMt103Content() { return mt103Content; }
         public String getErrorMessage() { return errorMessage; }
+        /** résumé pour l'historique */
+        public ConversionSummary getSummary() { return summary; }
     }
 }
@@ -0,0 +1,144 @@
+package com.attijari.MT103converter.models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Contenu volumineux de l'historique (MT103 brut, pacs.008) stocké compressé en base (binaire Mongo).
+ * Format : un octet de version puis le contenu ; version 1 = deflate brut avec le dictionnaire
+ * compression/payload-dictionary.txt (balises pacs.008 et blocs MT103 qui reviennent dans chaque message),
+ * version 0 = UTF-8 non compressé (contenus trop courts pour y gagner).
+ * La compression est faite à l'écriture en base, la décompression à la première lecture du texte seulement :
+ * une entrée relue en entier garde ses octets compressés tant que personne ne demande le contenu.
+ * Le dictionnaire de la version 1 ne doit plus changer : un nouveau dictionnaire = une nouvelle version.
+ */
+public final class CompressedText {
+
+    static final byte RAW = 0;
+    static final byte DEFLATE_DICTIONARY_V1 = 1;
+
+    private static final byte[] DICTIONARY = loadDictionary("/compression/payload-dictionary.txt");
+
+    // Deflater / Inflater natifs réutilisés par thread (remis à zéro, dictionnaire reposé à chaque usage)
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private volatile String text;
+    private volatile byte[] bytes;
+
+    private CompressedText(String text, byte[] bytes) {
+        this.text = text;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Texte à stocker, compressé à la première écriture ; null pour null
+     */
+    public static CompressedText of(String text) {
+        return text == null ? null : new CompressedText(text, null);
+    }
+
+    /**
+     * Octets lus en base, décompressés à la première lecture du texte
+     */
+    public static CompressedText fromBytes(byte[] bytes) {
+        return bytes == null ? null : new CompressedText(null, bytes);
+    }
+
+    /**
+     * Texte null-safe d'un champ compressé
+     */
+    public static String text(CompressedText value) {
+        return value == null ? null : value.text();
+    }
+
+    public String text() {
+        String result = text;
+        if (result == null) {
+            result = decode(bytes);
+            text = result;
+        }
+        return result;
+    }
+
+    public byte[] bytes() {
+        byte[] result = bytes;
+        if (result == null) {
+            result = encode(text);
+            bytes = result;
+        }
+        return result;
+    }
+
+    static byte[] encode(String text) {
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(plain);
+        deflater.finish();
+        byte[] out = new byte[plain.length + 1];
+        out[0] = DEFLATE_DICTIONARY_V1;
+        int length = 1;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        if (!deflater.finished()) {
+            // pas plus petit que le texte : stocké tel quel
+            byte[] raw = new byte[plain.length + 1];
+            raw[0] = RAW;
+            System.arraycopy(plain, 0, raw, 1, plain.length);
+            return raw;
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    static String decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            return "";
+        }
+        if (bytes[0] == RAW) {
+            return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+        }
+        if (bytes[0] != DEFLATE_DICTIONARY_V1) {
+            throw new IllegalStateException("Format de contenu compressé inconnu: " + bytes[0]);
+        }
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(bytes, 1, bytes.length - 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Contenu compressé tronqué");
+                }
+                out.write(buffer, 0, count);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Contenu compressé illisible: " + e.getMessage(), e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] loadDictionary(String resource) {
+        try (InputStream in = CompressedText.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Dictionnaire de compression introuvable: " + resource);
+            }
+            // fins de ligne normalisées : le dictionnaire ne doit pas dépendre de l'extraction git
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
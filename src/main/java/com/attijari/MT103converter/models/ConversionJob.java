@@ -0,0 +1,88 @@
+package com.attijari.MT103converter.models;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Conversion asynchrone soumise par /jobs/... : suivie en mémoire jusqu'à expiration,
+ * mise à jour par le thread du pool qui l'exécute et lue par les requêtes de suivi.
+ */
+public class ConversionJob {
+
+    public enum Type { MT103_TO_PACS008, PACS008_TO_MT103 }
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id;
+    private final Type type;
+    private final String username;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    // messages traités jusqu'ici (progression)
+    private volatile int processedCount;
+    private volatile int failureCount;
+    private volatile String errorMessage;
+    // publiés en fin de job
+    private volatile List<Item> results = Collections.emptyList();
+    // taille des contenus convertis publiés (caractères), pour borner la mémoire des jobs conservés
+    private volatile long resultChars;
+
+    public ConversionJob(String id, Type type, String username) {
+        this.id = id;
+        this.type = type;
+        this.username = username;
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    public void progress(boolean success) {
+        processedCount++;
+        if (!success) {
+            failureCount++;
+        }
+    }
+
+    /**
+     * Fin du job : résultats publiés, errorMessage renseigné si le contenu n'a pas pu être lu jusqu'au bout
+     */
+    public void finish(List<Item> results, String errorMessage) {
+        long chars = 0;
+        for (Item item : results) {
+            chars += item.content() == null ? 0 : item.content().length();
+        }
+        this.results = Collections.unmodifiableList(results);
+        this.resultChars = chars;
+        this.errorMessage = errorMessage;
+        finishedAt = Instant.now();
+        status = errorMessage == null ? Status.DONE : Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    public String getId() { return id; }
+    public Type getType() { return type; }
+    public String getUsername() { return username; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Status getStatus() { return status; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public int getProcessedCount() { return processedCount; }
+    public int getFailureCount() { return failureCount; }
+    public String getErrorMessage() { return errorMessage; }
+    public List<Item> getResults() { return results; }
+    public long getResultChars() { return resultChars; }
+
+    /**
+     * Résultat d'un message du job (rang à partir de 1, contenu converti ou erreur)
+     */
+    public record Item(int index, String reference, boolean success, String content, String errorMessage) {}
+}
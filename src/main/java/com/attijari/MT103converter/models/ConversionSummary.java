@@ -0,0 +1,190 @@
+package com.attijari.MT103converter.models;
+
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Résumé d'une conversion, écrit avec l'entrée d'historique (sous-document "summary") :
+ * les listes de l'historique le lisent par projection, sans charger les messages eux-mêmes.
+ * Les valeurs sont reprises telles qu'elles figurent dans le message (montant au format du message).
+ * searchKeys : début (1 à MAX_KEY_LENGTH caractères) de chaque mot de la référence et des noms des parties,
+ * et de la référence entière, en minuscules sans accents ; la recherche par préfixe devient une égalité
+ * sur cet index multiclé, triée par date comme les pages de l'historique.
+ */
+public class ConversionSummary {
+
+    public static final String FORWARD = "forward"; // MT103 -> PACS008
+    public static final String REVERSE = "reverse"; // PACS008 -> MT103
+
+    // préfixes indexés par mot : une recherche plus longue est tronquée à cette longueur
+    public static final int MAX_KEY_LENGTH = 20;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NOT_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private String transactionRef;
+    private String amount;
+    private String currency;
+    private String sender;
+    private String beneficiary;
+    private boolean success;
+    private String direction;
+    private List<String> searchKeys = new ArrayList<>();
+
+    public ConversionSummary() {}
+
+    /**
+     * Résumé d'un MT103 converti (ou non) en pacs.008 : champs 20, 32A, 50K et 59
+     */
+    public static ConversionSummary forward(MT103Msg msg) {
+        ConversionSummary summary = fromMt103(msg);
+        summary.success = msg.getPacs008Xml() != null;
+        summary.direction = FORWARD;
+        return summary.indexed();
+    }
+
+    /**
+     * Résumé d'une transaction pacs.008 convertie (ou non) en MT103
+     */
+    public static ConversionSummary reverse(Pacs008Transaction tx, boolean success) {
+        ConversionSummary summary = new ConversionSummary();
+        summary.transactionRef = tx.getReference();
+        summary.amount = trim(tx.get(Field.AMOUNT));
+        summary.currency = trim(tx.get(Field.CURRENCY));
+        summary.sender = trim(tx.get(Field.DEBTOR_NAME));
+        summary.beneficiary = trim(tx.get(Field.CREDITOR_NAME));
+        summary.success = success;
+        summary.direction = REVERSE;
+        return summary.indexed();
+    }
+
+    /**
+     * Résumé d'une conversion inverse à partir du MT103 produit (entrées sans pacs.008 d'origine)
+     */
+    public static ConversionSummary reverse(MT103Msg result, boolean success) {
+        ConversionSummary summary = fromMt103(result);
+        summary.success = success;
+        summary.direction = REVERSE;
+        return summary.indexed();
+    }
+
+    /**
+     * Conversion inverse dont la transaction n'a pas pu être lue
+     */
+    public static ConversionSummary reverseFailure() {
+        ConversionSummary summary = new ConversionSummary();
+        summary.direction = REVERSE;
+        return summary;
+    }
+
+    private static ConversionSummary fromMt103(MT103Msg msg) {
+        ConversionSummary summary = new ConversionSummary();
+        summary.transactionRef = trim(msg.getField("20"));
+        // 32A : date (6) + devise (3) + montant
+        String field32A = msg.getField("32A").replaceAll("[\\r\\n]", "");
+        if (field32A.length() > 9) {
+            summary.currency = field32A.substring(6, 9);
+            summary.amount = field32A.substring(9).replaceAll("[^0-9.,]", "");
+        }
+        summary.sender = partyName(msg.getField("50K"));
+        summary.beneficiary = partyName(msg.getField("59"));
+        return summary;
+    }
+
+    /**
+     * Première ligne du champ partie qui n'est pas le compte (/...)
+     */
+    private static String partyName(String field) {
+        for (String line : field.split("\\r?\\n")) {
+            String value = line.trim();
+            if (!value.isEmpty() && !value.startsWith("/")) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Clés de recherche de la référence et des parties
+     */
+    private ConversionSummary indexed() {
+        Set<String> keys = new LinkedHashSet<>();
+        String reference = normalize(transactionRef);
+        if (!reference.isEmpty()) {
+            addPrefixes(keys, reference);
+        }
+        for (String value : new String[]{transactionRef, sender, beneficiary}) {
+            for (String word : words(value)) {
+                addPrefixes(keys, word);
+            }
+        }
+        searchKeys = new ArrayList<>(keys);
+        return this;
+    }
+
+    private static void addPrefixes(Set<String> keys, String word) {
+        for (int length = 1; length <= Math.min(word.length(), MAX_KEY_LENGTH); length++) {
+            keys.add(word.substring(0, length));
+        }
+    }
+
+    /**
+     * Termes d'une recherche, normalisés comme les clés : une référence avec séparateurs reste un seul terme
+     */
+    public static List<String> searchTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        for (String part : normalize(query).split("\\s+")) {
+            if (!part.isEmpty()) {
+                terms.add(part.length() > MAX_KEY_LENGTH ? part.substring(0, MAX_KEY_LENGTH) : part);
+            }
+        }
+        return terms;
+    }
+
+    private static List<String> words(String value) {
+        String normalized = normalize(value);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(NOT_ALPHANUMERIC.split(normalized)).filter(word -> !word.isEmpty()).toList();
+    }
+
+    /**
+     * Minuscules sans accents
+     */
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static String trim(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    public String getTransactionRef() { return transactionRef; }
+    public void setTransactionRef(String transactionRef) { this.transactionRef = transactionRef; }
+    public String getAmount() { return amount; }
+    public void setAmount(String amount) { this.amount = amount; }
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+    public String getSender() { return sender; }
+    public void setSender(String sender) { this.sender = sender; }
+    public String getBeneficiary() { return beneficiary; }
+    public void setBeneficiary(String beneficiary) { this.beneficiary = beneficiary; }
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+    public String getDirection() { return direction; }
+    public void setDirection(String direction) { this.direction = direction; }
+    public List<String> getSearchKeys() { return searchKeys; }
+    public void setSearchKeys(List<String> searchKeys) { this.searchKeys = searchKeys; }
+}
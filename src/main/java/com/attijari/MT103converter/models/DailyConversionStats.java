@@ -0,0 +1,52 @@
+package com.attijari.MT103converter.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Compteurs de conversions d'un utilisateur pour une journée (day = yyyy-MM-dd, heure locale),
+ * ou depuis le début (day = ALL). Tenus à jour par $inc à chaque enregistrement de l'historique.
+ */
+@Document(collection = "DAILY_STATS")
+public class DailyConversionStats {
+
+    public static final String ALL_DAYS = "ALL";
+
+    @Id
+    private String id; // username|day
+    private String username;
+    private String day;
+    private long mt103Total;
+    private long mt103Success;
+    private long reverseTotal;
+    private long reverseSuccess;
+
+    public DailyConversionStats() {}
+
+    public DailyConversionStats(String username, String day) {
+        this.id = id(username, day);
+        this.username = username;
+        this.day = day;
+    }
+
+    public static String id(String username, String day) {
+        return username + "|" + day;
+    }
+
+    public String getId() { return id; }
+    public String getUsername() { return username; }
+    public String getDay() { return day; }
+    public long getMt103Total() { return mt103Total; }
+    public void setMt103Total(long mt103Total) { this.mt103Total = mt103Total; }
+    public long getMt103Success() { return mt103Success; }
+    public void setMt103Success(long mt103Success) { this.mt103Success = mt103Success; }
+    public long getReverseTotal() { return reverseTotal; }
+    public void setReverseTotal(long reverseTotal) { this.reverseTotal = reverseTotal; }
+    public long getReverseSuccess() { return reverseSuccess; }
+    public void setReverseSuccess(long reverseSuccess) { this.reverseSuccess = reverseSuccess; }
+
+    // totaux des deux sens de conversion
+    public long total() { return mt103Total + reverseTotal; }
+    public long success() { return mt103Success + reverseSuccess; }
+    public long errors() { return total() - success(); }
+}
@@ -4,19 +4,32 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Représenter erreurs de validation
+ * Représenter erreurs de validation ; chaque erreur porte une catégorie (métriques par type d'erreur)
  */
 public class ErrorCall {
 
+    // catégories des erreurs MT103
+    public static final String STRUCTURE = "structure";
+    public static final String MISSING_FIELD = "missing_field";
+    public static final String FIELD_FORMAT = "field_format";
+    // erreurs XSD non reconnues, erreurs sans catégorie
+    public static final String OTHER = "other";
+
     private List<String> errors = new ArrayList<>();
+    private List<String> categories = new ArrayList<>();
 
     public void addError(String error) {
+        addError(OTHER, error);
+    }
+
+    public void addError(String category, String error) {
         errors.add(error);
+        categories.add(category);
     }
 
     public void addAllErrors(List<String> errorList) {
         if (errorList != null) {
-            errors.addAll(errorList);
+            errorList.forEach(this::addError);
         }
     }
 
@@ -27,4 +40,11 @@ public class ErrorCall {
     public List<String> getErrors() {
         return errors;
     }
+
+    /**
+     * Catégorie de chaque erreur, dans l'ordre de getErrors()
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
 }
@@ -0,0 +1,67 @@
+package com.attijari.MT103converter.models;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Suppression de l'historique d'un utilisateur (sur une période ou en entier), exécutée en tâche de fond
+ * par paquets : suivie en mémoire, mise à jour par le thread de purge et lue par les requêtes de suivi.
+ */
+public class HistoryPurgeJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id;
+    private final String username;
+    // bornes de createdAt : from inclus, to exclu (null : pas de borne)
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    // entrées à supprimer (compte au démarrage) et supprimées jusqu'ici
+    private volatile long totalCount;
+    private volatile long deletedCount;
+    private volatile String errorMessage;
+
+    public HistoryPurgeJob(String id, String username, LocalDateTime from, LocalDateTime to) {
+        this.id = id;
+        this.username = username;
+        this.from = from;
+        this.to = to;
+    }
+
+    public void start(long totalCount) {
+        this.totalCount = totalCount;
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    public void progress(long deleted) {
+        deletedCount += deleted;
+    }
+
+    public void finish(String errorMessage) {
+        this.errorMessage = errorMessage;
+        finishedAt = Instant.now();
+        status = errorMessage == null ? Status.DONE : Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    public String getId() { return id; }
+    public String getUsername() { return username; }
+    public LocalDateTime getFrom() { return from; }
+    public LocalDateTime getTo() { return to; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Status getStatus() { return status; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public long getTotalCount() { return totalCount; }
+    public long getDeletedCount() { return deletedCount; }
+    public String getErrorMessage() { return errorMessage; }
+}
@@ -0,0 +1,65 @@
+package com.attijari.MT103converter.models;
+
+/**
+ * Problème de structure relevé pendant le découpage d'un message MT103.
+ * Le découpage ne s'interrompt pas : les champs lisibles sont tout de même extraits.
+ */
+public final class MT103Diagnostic {
+
+    public enum Kind {
+        /** le message ne commence pas par '{' ou ne se termine pas par '}' (erreur) */
+        NOT_BRACE_DELIMITED(true),
+        /** bloc 1, 2, 4 ou 5 absent ou vide (erreur) */
+        MISSING_BLOCK(true),
+        /** bloc ouvert mais jamais fermé */
+        UNCLOSED_BLOCK(false),
+        /** ligne commençant par ':' sans tag valide */
+        INVALID_TAG_LINE(false),
+        /** tag répété : la dernière valeur est conservée */
+        DUPLICATE_TAG(false);
+
+        private final boolean error;
+
+        Kind(boolean error) {
+            this.error = error;
+        }
+
+        public boolean isError() {
+            return error;
+        }
+    }
+
+    private final Kind kind;
+    private final int offset;
+    private final String message;
+
+    public MT103Diagnostic(Kind kind, int offset, String message) {
+        this.kind = kind;
+        this.offset = offset;
+        this.message = message;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Position du problème dans le message brut (-1 pour un bloc absent)
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isError() {
+        return kind.isError();
+    }
+
+    @Override
+    public String toString() {
+        return kind + "@" + offset + " : " + message;
+    }
+}
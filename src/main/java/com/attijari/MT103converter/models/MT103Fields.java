@@ -0,0 +1,235 @@
+package com.attijari.MT103converter.models;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Champs d'un message MT103 rangés dans un tableau indexé par une table fixe des tags MT103 :
+ * un tableau de valeurs par message, sans objet Entry ni copie des tags (la table est partagée).
+ * Les tags hors table passent par une HashMap de débordement.
+ * Reste une Map<String, String> ordinaire pour le mapping Mongo et la sérialisation JSON.
+ */
+public final class MT103Fields extends AbstractMap<String, String> {
+
+    /**
+     * Tags connus du MT103, dans l'ordre d'itération
+     */
+    private static final String[] KNOWN_TAGS = {
+            "13C", "20", "23B", "23E", "26T", "32A", "33B", "36",
+            "50A", "50F", "50K", "51A", "52A", "52D", "53A", "53B", "53D",
+            "54A", "54B", "54D", "55A", "55B", "55D", "56A", "56C", "56D",
+            "57A", "57B", "57C", "57D", "59", "59A", "59F",
+            "70", "71A", "71F", "71G", "72", "77B", "77T"
+    };
+
+    // table d'adressage ouvert sur le hash (mis en cache par String) : tag connu -> case dans values
+    private static final int TABLE_MASK = 127;
+    private static final String[] TABLE_TAGS = new String[TABLE_MASK + 1];
+    private static final byte[] TABLE_SLOTS = new byte[TABLE_MASK + 1];
+
+    static {
+        for (int slot = 0; slot < KNOWN_TAGS.length; slot++) {
+            int i = index(KNOWN_TAGS[slot].hashCode());
+            while (TABLE_TAGS[i] != null) {
+                i = (i + 1) & TABLE_MASK;
+            }
+            TABLE_TAGS[i] = KNOWN_TAGS[slot];
+            TABLE_SLOTS[i] = (byte) slot;
+        }
+    }
+
+    private final String[] values = new String[KNOWN_TAGS.length];
+    private int knownCount;
+    // tags hors table et valeurs null (créée au premier besoin)
+    private Map<String, String> overflow;
+
+    public MT103Fields() {
+    }
+
+    public MT103Fields(Map<String, String> fields) {
+        putAll(fields);
+    }
+
+    /**
+     * Renvoie la map telle quelle si c'est déjà un MT103Fields, sinon une copie
+     */
+    public static MT103Fields of(Map<String, String> fields) {
+        return fields instanceof MT103Fields mt103Fields ? mt103Fields : new MT103Fields(fields);
+    }
+
+    private static int index(int hash) {
+        return (hash ^ (hash >>> 7)) & TABLE_MASK;
+    }
+
+    /**
+     * Case du tag connu, -1 pour un tag hors table
+     */
+    private static int slot(Object key) {
+        if (!(key instanceof String tag)) {
+            return -1;
+        }
+        for (int i = index(tag.hashCode()); ; i = (i + 1) & TABLE_MASK) {
+            String known = TABLE_TAGS[i];
+            if (known == null) {
+                return -1;
+            }
+            if (known == tag || known.equals(tag)) {
+                return TABLE_SLOTS[i];
+            }
+        }
+    }
+
+    @Override
+    public String get(Object key) {
+        int slot = slot(key);
+        if (slot >= 0 && values[slot] != null) {
+            return values[slot];
+        }
+        return overflow == null ? null : overflow.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = slot(key);
+        if (slot >= 0 && values[slot] != null) {
+            return true;
+        }
+        return overflow != null && overflow.containsKey(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int slot = slot(key);
+        if (slot >= 0 && value != null) {
+            String previous = values[slot];
+            if (previous == null) {
+                knownCount++;
+                if (overflow != null) {
+                    previous = overflow.remove(key);
+                }
+            }
+            values[slot] = value;
+            return previous;
+        }
+        if (slot >= 0 && values[slot] != null) {
+            // valeur null pour un tag connu : rangée avec les tags hors table
+            String previous = values[slot];
+            values[slot] = null;
+            knownCount--;
+            overflow().put(key, null);
+            return previous;
+        }
+        return overflow().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        int slot = slot(key);
+        if (slot >= 0 && values[slot] != null) {
+            String previous = values[slot];
+            values[slot] = null;
+            knownCount--;
+            return previous;
+        }
+        return overflow == null ? null : overflow.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return knownCount + (overflow == null ? 0 : overflow.size());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        knownCount = 0;
+        overflow = null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return MT103Fields.this.size();
+            }
+        };
+    }
+
+    private Map<String, String> overflow() {
+        if (overflow == null) {
+            overflow = new HashMap<>(4);
+        }
+        return overflow;
+    }
+
+    /**
+     * Tags connus dans l'ordre de la table, puis tags de débordement
+     */
+    private final class EntryIterator implements Iterator<Entry<String, String>> {
+        private int next = advance(0);
+        private int lastSlot = -1;
+        private Iterator<Entry<String, String>> overflowIterator;
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (overflowIterator == null) {
+                if (overflow == null) {
+                    return false;
+                }
+                overflowIterator = overflow.entrySet().iterator();
+            }
+            return overflowIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (next < values.length) {
+                lastSlot = next;
+                next = advance(next + 1);
+                return new SimpleImmutableEntry<>(KNOWN_TAGS[lastSlot], values[lastSlot]);
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastSlot = -1;
+            return overflowIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastSlot >= 0) {
+                if (values[lastSlot] == null) {
+                    throw new IllegalStateException();
+                }
+                values[lastSlot] = null;
+                knownCount--;
+            } else if (overflowIterator != null) {
+                overflowIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.attijari.MT103converter.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.AccessType;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Map;
 import org.springframework.data.annotation.CreatedDate;
@@ -8,38 +12,58 @@ import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
 
 @Document(collection = "MT103")
+// index créés en tâche de fond au démarrage (HistoryIndexService)
+// historique par utilisateur, pagination par clé (createdAt, _id)
+@CompoundIndex(name = "username_createdAt_id", def = "{ 'username': 1, 'createdAt': -1, '_id': -1 }")
+// recherche dans l'historique par préfixe (ConversionSummary.searchKeys), mêmes pages
+@CompoundIndex(name = "username_searchKeys_createdAt_id", def = "{ 'username': 1, 'summary.searchKeys': 1, 'createdAt': -1, '_id': -1 }")
 public class MT103Msg {
 
     @Id
     private String id;
 
-    private String rawContent;
+    // MT103 brut et pacs.008 produit : compressés en base (CompressedText), décompressés à la lecture du texte
+    private CompressedText rawContent;
+    // lu et écrit par Mongo via getFields()/setFields() : MT103Fields en mémoire, document "fields" inchangé en base
+    @AccessType(AccessType.Type.PROPERTY)
     private Map<String, String> fields;
+
+    // résultat du découpage, partagé par le validateur et le transformer (non persisté)
+    @Transient
+    private ParsedMT103 parsed;
     @Field("pacs008Xml")
-    private String pacs008Xml;
+    private CompressedText pacs008Xml;
 
     // Champ pour stocker l'utilisateur qui a créé cette conversion
     private String username;
 
+    // résumé écrit à la conversion, seul lu (avec l'id et la date) par les listes de l'historique
+    private ConversionSummary summary;
+
     public String getPacs008Xml() {
-        return pacs008Xml;
+        return CompressedText.text(pacs008Xml);
     }
 
     public void setPacs008Xml(String pacs008Xml) {
-        this.pacs008Xml = pacs008Xml;
+        this.pacs008Xml = CompressedText.of(pacs008Xml);
     }
 
     public MT103Msg() {
         //bare constructor
     }
-        //timestamps pour l'historique
+        //timestamps pour l'historique (posé par HistoryWriter ; absent des anciens documents : null)
         @CreatedDate
-        private LocalDateTime createdAt = LocalDateTime.now();
+        private LocalDateTime createdAt;
 
 
     public MT103Msg(String rawContent, Map<String, String> fields) {
-        this.rawContent = rawContent;
-        this.fields = fields;
+        this.rawContent = CompressedText.of(rawContent);
+        this.fields = fields == null ? null : MT103Fields.of(fields);
+    }
+
+    public MT103Msg(ParsedMT103 parsed) {
+        this.rawContent = CompressedText.of(parsed.getRaw());
+        this.parsed = parsed;
     }
 
     public String getField(String tag) {
@@ -47,7 +71,8 @@ public class MT103Msg {
         extract and return fields from MT103 message
          */
         if (fields == null) {
-            return "";
+            String value = parsed != null ? parsed.getField(tag) : null;
+            return value != null ? value : "";
         }
         String orDefault = fields.getOrDefault(tag, "");
         return orDefault;
@@ -59,23 +84,39 @@ public class MT103Msg {
         TODO : add other requirement checks
          */
         // simplified example
-        boolean validFlag = fields != null && fields.containsKey("20") && fields.containsKey("32A");
+        boolean validFlag = hasField("20") && hasField("32A");
         return validFlag;
     }
 
+    private boolean hasField(String tag) {
+        if (fields == null) {
+            return parsed != null && parsed.hasField(tag);
+        }
+        return fields.containsKey(tag);
+    }
+
+    @JsonIgnore
+    public ParsedMT103 getParsed() {
+        return parsed;
+    }
+
     public String getRawContent() {
-        return rawContent;
+        return CompressedText.text(rawContent);
     }
     public void setRawContent(String rawContent) {
-        this.rawContent = rawContent;
+        this.rawContent = CompressedText.of(rawContent);
     }
 
     public Map<String, String> getFields() {
+        if (fields == null && parsed != null) {
+            fields = parsed.toFieldMap();
+        }
         return fields;
     }
 
     public void setFields(Map<String, String> fields) {
-        this.fields = fields;
+        // la map lue par Mongo est recopiée dans le tableau indexé par tag
+        this.fields = fields == null ? null : MT103Fields.of(fields);
     }
 
     public void setId(String id) {
@@ -90,6 +131,10 @@ public class MT103Msg {
         return createdAt;
     }
 
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -97,4 +142,12 @@ public class MT103Msg {
     public void setUsername(String username) {
         this.username = username;
     }
+
+    public ConversionSummary getSummary() {
+        return summary;
+    }
+
+    public void setSummary(ConversionSummary summary) {
+        this.summary = summary;
+    }
 }
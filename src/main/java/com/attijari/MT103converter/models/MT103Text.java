@@ -0,0 +1,127 @@
+package com.attijari.MT103converter.models;
+
+/**
+ * Primitives de lecture du texte MT103 (sans regex), partagées par le tokenizer et ParsedMT103
+ */
+public final class MT103Text {
+
+    private MT103Text() {
+    }
+
+    /**
+     * Même définition que \s
+     */
+    public static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Premier caractère conservé par String.trim() dans [start, end)
+     */
+    public static int skipLeading(String raw, int start, int end) {
+        while (start < end && raw.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Fin (exclue) de la zone conservée par String.trim() dans [start, end)
+     */
+    public static int skipTrailing(String raw, int start, int end) {
+        while (end > start && raw.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    public static boolean isBlank(String raw, int start, int end) {
+        return skipLeading(raw, start, end) == end;
+    }
+
+    /**
+     * Position ":NN:" ou ":NNA:" (équivalent du lookahead (?=:[0-9]{2}[A-Z]?:))
+     */
+    public static boolean isTagAt(String raw, int i) {
+        int n = raw.length();
+        if (i + 3 >= n || !isDigit(raw.charAt(i + 1)) || !isDigit(raw.charAt(i + 2))) {
+            return false;
+        }
+        char c = raw.charAt(i + 3);
+        if (c == ':') {
+            return true;
+        }
+        return c >= 'A' && c <= 'Z' && i + 4 < n && raw.charAt(i + 4) == ':';
+    }
+
+    /**
+     * Sous-chaîne dont chaque suite d'espaces blancs est remplacée par un seul espace
+     */
+    public static String collapse(String raw, int start, int end) {
+        int i = start;
+        while (i < end && !isSpace(raw.charAt(i))) {
+            i++;
+        }
+        if (i == end) {
+            return raw.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(raw, start, i);
+        boolean inSpace = false;
+        for (; i < end; i++) {
+            char c = raw.charAt(i);
+            if (isSpace(c)) {
+                if (!inSpace) {
+                    sb.append(' ');
+                    inSpace = true;
+                }
+            } else {
+                sb.append(c);
+                inSpace = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Coupe la valeur au marqueur de fin de bloc "-}" (équivalent de replaceAll("\\s*-\\}.*$", "").trim())
+     */
+    public static String stripBlockTrailer(String value) {
+        int n = value.length();
+        // '$' accepte un seul terminateur de ligne final
+        int tail = n;
+        if (n >= 2 && value.charAt(n - 2) == '\r' && value.charAt(n - 1) == '\n') {
+            tail = n - 2;
+        } else if (n >= 1 && isLineTerminator(value.charAt(n - 1))) {
+            tail = n - 1;
+        }
+        // ".*" ne traverse pas les retours à la ligne : le marqueur doit être sur la dernière ligne
+        int from = 0;
+        for (int i = tail - 1; i >= 0; i--) {
+            if (isLineTerminator(value.charAt(i))) {
+                from = i + 1;
+                break;
+            }
+        }
+        int marker = value.indexOf("-}", from);
+        if (marker < 0) {
+            return value;
+        }
+        // "\\s*" : les espaces qui précèdent le marqueur partent avec lui, le terminateur final reste
+        while (marker > 0 && isSpace(value.charAt(marker - 1))) {
+            marker--;
+        }
+        return tail == n ? value.substring(0, marker).trim() : (value.substring(0, marker) + value.substring(tail)).trim();
+    }
+
+    /**
+     * Terminateurs de ligne reconnus par '.' et '$'
+     */
+    public static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
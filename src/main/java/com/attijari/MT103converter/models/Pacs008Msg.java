@@ -7,6 +7,12 @@ public class Pacs008Msg {
 
     private String xmlContent;
 
+    // validation XSD faite pendant la génération (pacs008.validation.mode=inline)
+    private boolean schemaValidated;
+    private String schemaError;
+    // durée de cette validation, comprise dans celle de la génération
+    private long schemaValidationNanos;
+
     public Pacs008Msg() {}
 
     public Pacs008Msg(String xmlContent) {
@@ -34,4 +40,37 @@ public class Pacs008Msg {
     public void setXmlContent(String xmlContent) {
         this.xmlContent = xmlContent;
     }
+
+    /**
+     * Le document a-t-il déjà été validé contre le XSD pendant sa génération ?
+     */
+    public boolean isSchemaValidated() {
+        return schemaValidated;
+    }
+
+    public void setSchemaValidated(boolean schemaValidated) {
+        this.schemaValidated = schemaValidated;
+    }
+
+    /**
+     * Première erreur XSD relevée pendant la génération (message technique), null si le document est valide
+     */
+    public String getSchemaError() {
+        return schemaError;
+    }
+
+    public void setSchemaError(String schemaError) {
+        this.schemaError = schemaError;
+    }
+
+    /**
+     * Temps passé dans la validation XSD pendant la génération (ns), 0 si elle n'a pas eu lieu
+     */
+    public long getSchemaValidationNanos() {
+        return schemaValidationNanos;
+    }
+
+    public void setSchemaValidationNanos(long schemaValidationNanos) {
+        this.schemaValidationNanos = schemaValidationNanos;
+    }
 }
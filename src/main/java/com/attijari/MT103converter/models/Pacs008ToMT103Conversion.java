@@ -2,6 +2,7 @@ package com.attijari.MT103converter.models;
 
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
@@ -9,35 +10,46 @@ import java.time.LocalDateTime;
  * Stocke une conversion PACS008 -> MT103
  */
 @Document(collection = "PACS008_CONVERSIONS")
+// index créés en tâche de fond au démarrage (HistoryIndexService)
+// historique par utilisateur, pagination par clé (createdAt, _id)
+@CompoundIndex(name = "username_createdAt_id", def = "{ 'username': 1, 'createdAt': -1, '_id': -1 }")
+// recherche dans l'historique par préfixe (ConversionSummary.searchKeys), mêmes pages
+@CompoundIndex(name = "username_searchKeys_createdAt_id", def = "{ 'username': 1, 'summary.searchKeys': 1, 'createdAt': -1, '_id': -1 }")
 public class Pacs008ToMT103Conversion {
     @Id
     private String id;
-    private String rawPacs008Xml; // input
-    private String mt103Result;   // output (peut être null si erreur)
+    // contenus compressés en base (CompressedText), décompressés à la lecture du texte
+    private CompressedText rawPacs008Xml; // input
+    private CompressedText mt103Result;   // output (peut être null si erreur)
     private String errorMessage;  // message d'erreur éventuel
     private boolean success;
     private String username; // utilisateur
+    private ConversionSummary summary; // résumé pour les listes de l'historique (lu par projection)
 
     @CreatedDate
-    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime createdAt; // posé par HistoryWriter ; absent des anciens documents : null
 
     public Pacs008ToMT103Conversion() {}
 
     public Pacs008ToMT103Conversion(String rawPacs008Xml) {
-        this.rawPacs008Xml = rawPacs008Xml;
+        this.rawPacs008Xml = CompressedText.of(rawPacs008Xml);
     }
 
     public String getId() { return id; }
-    public String getRawPacs008Xml() { return rawPacs008Xml; }
-    public void setRawPacs008Xml(String rawPacs008Xml) { this.rawPacs008Xml = rawPacs008Xml; }
-    public String getMt103Result() { return mt103Result; }
-    public void setMt103Result(String mt103Result) { this.mt103Result = mt103Result; }
+    public void setId(String id) { this.id = id; }
+    public String getRawPacs008Xml() { return CompressedText.text(rawPacs008Xml); }
+    public void setRawPacs008Xml(String rawPacs008Xml) { this.rawPacs008Xml = CompressedText.of(rawPacs008Xml); }
+    public String getMt103Result() { return CompressedText.text(mt103Result); }
+    public void setMt103Result(String mt103Result) { this.mt103Result = CompressedText.of(mt103Result); }
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
     public boolean isSuccess() { return success; }
     public void setSuccess(boolean success) { this.success = success; }
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
+    public ConversionSummary getSummary() { return summary; }
+    public void setSummary(ConversionSummary summary) { this.summary = summary; }
     public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 }
 
@@ -0,0 +1,75 @@
+package com.attijari.MT103converter.models;
+
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Champs d'une transaction pacs.008 (CdtTrfTxInf) utiles à la conversion inverse vers MT103,
+ * rangés par champ de la table de correspondance (Pacs008Mapping.Field).
+ * Les textes sont repris tels qu'ils figurent dans le XML (null si l'élément est absent).
+ */
+public class Pacs008Transaction {
+
+    private static final Field[] FIELDS = Field.values();
+
+    // GrpHdr/CreDtTm du document, date de secours si IntrBkSttlmDt est absent
+    private String creationDateTime;
+
+    private final String[] values = new String[FIELDS.length];
+    // occurrences des champs répétés (lignes d'adresse), créées à la première
+    private final List<String>[] repeated = newLists();
+
+    @SuppressWarnings("unchecked")
+    private static List<String>[] newLists() {
+        return (List<String>[]) new List<?>[FIELDS.length];
+    }
+
+    public String getCreationDateTime() { return creationDateTime; }
+    public void setCreationDateTime(String creationDateTime) { this.creationDateTime = creationDateTime; }
+
+    /**
+     * Valeur lue pour le champ : une occurrence de plus pour un champ répété, sinon la première est conservée
+     */
+    public void add(Field field, String value) {
+        int i = field.ordinal();
+        if (field.isRepeated()) {
+            if (repeated[i] == null) {
+                repeated[i] = new ArrayList<>(2);
+            }
+            repeated[i].add(value);
+        } else if (values[i] == null) {
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Première valeur du champ, null s'il est absent
+     */
+    public String get(Field field) {
+        int i = field.ordinal();
+        if (field.isRepeated()) {
+            return repeated[i] == null ? null : repeated[i].get(0);
+        }
+        return values[i];
+    }
+
+    /**
+     * Référence de la transaction : InstrId, à défaut EndToEndId (null si aucun des deux)
+     */
+    public String getReference() {
+        String instrId = get(Field.INSTR_ID);
+        if (instrId == null || instrId.isBlank()) instrId = get(Field.END_TO_END_ID);
+        return instrId == null || instrId.isBlank() ? null : instrId;
+    }
+
+    /**
+     * Toutes les occurrences d'un champ répété, dans l'ordre du document
+     */
+    public List<String> getAll(Field field) {
+        List<String> all = repeated[field.ordinal()];
+        return all == null ? Collections.emptyList() : all;
+    }
+}
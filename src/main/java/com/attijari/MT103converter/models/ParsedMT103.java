@@ -0,0 +1,222 @@
+package com.attijari.MT103converter.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Résultat immuable du découpage d'un message MT103 (construit par MT103Tokenizer).
+ * Blocs et champs sont conservés sous forme de positions dans le message d'origine :
+ * une valeur n'est transformée en String que lorsqu'une étape la lit (puis mise en cache).
+ */
+public final class ParsedMT103 {
+
+    /**
+     * Lecture utilisée pour les champs
+     */
+    public enum Layout {
+        /** blocs 1, 2, 4 et 5 présents : champs du bloc 4, espaces ramenés à un seul */
+        BLOCKS,
+        /** structure incomplète : lecture ligne par ligne, retours à la ligne conservés */
+        LINES
+    }
+
+    private final String raw;
+    private final Layout layout;
+
+    // bornes de raw.trim()
+    private final int trimStart;
+    private final int trimEnd;
+
+    // blocs fermés de premier niveau, dans l'ordre du message : début du numéro, ':' , accolade fermante
+    private final int[] blocks;
+    private final int blockCount;
+
+    // champs : tag et positions [début, fin) de la valeur brute
+    private final String[] tags;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private final int fieldCount;
+
+    // problèmes de structure relevés au découpage
+    private final List<MT103Diagnostic> diagnostics;
+
+    // valeurs déjà matérialisées (course bénigne : deux lectures simultanées calculent la même String)
+    private final String[] values;
+
+    public ParsedMT103(String raw, Layout layout, int[] blocks, int blockCount,
+                       String[] tags, int[] valueStarts, int[] valueEnds, int fieldCount,
+                       List<MT103Diagnostic> diagnostics) {
+        this.raw = raw;
+        this.layout = layout;
+        this.trimStart = MT103Text.skipLeading(raw, 0, raw.length());
+        this.trimEnd = MT103Text.skipTrailing(raw, trimStart, raw.length());
+        this.blocks = blocks;
+        this.blockCount = blockCount;
+        this.tags = tags;
+        this.valueStarts = valueStarts;
+        this.valueEnds = valueEnds;
+        this.fieldCount = fieldCount;
+        this.values = new String[fieldCount];
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    public String getRaw() {
+        return raw;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Le message (sans espaces autour) commence par '{' et se termine par '}'
+     */
+    public boolean isBraceDelimited() {
+        return trimEnd > trimStart && raw.charAt(trimStart) == '{' && raw.charAt(trimEnd - 1) == '}';
+    }
+
+    public boolean isEmpty() {
+        return raw.isEmpty();
+    }
+
+    /**
+     * Problèmes de structure relevés au découpage (vide si le message est bien formé)
+     */
+    public List<MT103Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public boolean hasErrors() {
+        for (MT103Diagnostic diagnostic : diagnostics) {
+            if (diagnostic.isError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ===== Blocs =====
+
+    /**
+     * Le bloc {id:...} est présent (fermé) dans le message
+     */
+    public boolean hasBlock(String id) {
+        return findBlock(id) >= 0;
+    }
+
+    /**
+     * Le bloc est absent ou ne contient que des espaces
+     */
+    public boolean isBlockBlank(String id) {
+        int b = findBlock(id);
+        return b < 0 || MT103Text.isBlank(raw, blocks[b + 1] + 1, blocks[b + 2]);
+    }
+
+    /**
+     * Contenu brut du bloc (dernière occurrence), null si absent
+     */
+    public String getBlockContent(String id) {
+        int b = findBlock(id);
+        return b < 0 ? null : raw.substring(blocks[b + 1] + 1, blocks[b + 2]);
+    }
+
+    public List<String> getBlockIds() {
+        List<String> ids = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount * 3; b += 3) {
+            ids.add(raw.substring(blocks[b], blocks[b + 1]));
+        }
+        return ids;
+    }
+
+    private int findBlock(String id) {
+        int length = id.length();
+        // la dernière occurrence l'emporte, comme dans l'ancienne map des blocs
+        for (int b = (blockCount - 1) * 3; b >= 0; b -= 3) {
+            if (blocks[b + 1] - blocks[b] == length && raw.startsWith(id, blocks[b])) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    // ===== Champs =====
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public boolean hasField(String tag) {
+        return indexOf(tag) >= 0;
+    }
+
+    /**
+     * Valeur du champ, null si absent
+     */
+    public String getField(String tag) {
+        int f = indexOf(tag);
+        return f < 0 ? null : value(f);
+    }
+
+    /**
+     * Matérialise tous les champs (persistance, affichage)
+     */
+    public MT103Fields toFieldMap() {
+        MT103Fields map = new MT103Fields();
+        for (int f = 0; f < fieldCount; f++) {
+            map.put(tags[f], value(f));
+        }
+        return map;
+    }
+
+    private int indexOf(String tag) {
+        for (int f = 0; f < fieldCount; f++) {
+            if (tags[f].equals(tag)) {
+                return f;
+            }
+        }
+        return -1;
+    }
+
+    private String value(int f) {
+        String value = values[f];
+        if (value == null) {
+            value = layout == Layout.BLOCKS
+                    ? MT103Text.stripBlockTrailer(MT103Text.collapse(raw, valueStarts[f], valueEnds[f]))
+                    : joinLines(valueStarts[f], valueEnds[f]);
+            values[f] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Valeur en lecture ligne par ligne : lignes rognées jointes par '\n',
+     * sans les lignes de tag invalides ni les lignes de fin de bloc
+     */
+    private String joinLines(int start, int end) {
+        int lineEnd = lineEnd(start, end);
+        int first = MT103Text.skipLeading(raw, start, lineEnd);
+        if (lineEnd == end) {
+            // cas courant : valeur sur une ligne, sans copie intermédiaire
+            return MT103Text.stripBlockTrailer(raw.substring(first, MT103Text.skipTrailing(raw, first, lineEnd)));
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(raw, first, MT103Text.skipTrailing(raw, first, lineEnd));
+        int lineStart = lineEnd + 1;
+        while (lineStart <= end) {
+            lineEnd = lineEnd(lineStart, end);
+            int ts = MT103Text.skipLeading(raw, lineStart, lineEnd);
+            boolean skipped = (lineStart < lineEnd && raw.charAt(lineStart) == ':')
+                    || raw.startsWith("-}", ts) || raw.startsWith("{5:", ts);
+            if (!skipped) {
+                sb.append('\n').append(raw, ts, MT103Text.skipTrailing(raw, ts, lineEnd));
+            }
+            lineStart = lineEnd + 1;
+        }
+        return MT103Text.stripBlockTrailer(sb.toString().trim());
+    }
+
+    private int lineEnd(int from, int end) {
+        int newline = raw.indexOf('\n', from);
+        return newline < 0 || newline > end ? end : newline;
+    }
+}
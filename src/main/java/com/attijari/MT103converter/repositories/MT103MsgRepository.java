@@ -1,6 +1,7 @@
 package com.attijari.MT103converter.repositories;
 
 import com.attijari.MT103converter.models.MT103Msg;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import java.time.LocalDateTime;
@@ -33,4 +34,8 @@ public interface MT103MsgRepository extends MongoRepository<MT103Msg, String> {
     List<MT103Msg> findTop10ByUsernameOrderByCreatedAtDesc(String username);
     List<MT103Msg> findTop3ByUsernameOrderByCreatedAtDesc(String username);
     List<MT103Msg> findTop5ByUsernameOrderByCreatedAtDesc(String username); // MÉTHODE MANQUANTE AJOUTÉE
+
+    // Lignes d'historique : date et résumé (sans clés de recherche) seulement, sans rawContent ni pacs008Xml
+    @Query(value = "{ 'username': ?0 }", fields = "{ 'username': 1, 'createdAt': 1, 'summary.transactionRef': 1, 'summary.amount': 1, 'summary.currency': 1, 'summary.success': 1 }", sort = "{ 'createdAt': -1 }")
+    List<MT103Msg> findSummariesByUsername(String username, Limit limit);
 }
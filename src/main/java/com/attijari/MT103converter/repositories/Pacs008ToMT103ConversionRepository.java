@@ -1,7 +1,9 @@
 package com.attijari.MT103converter.repositories;
 
 import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -17,4 +19,8 @@ public interface Pacs008ToMT103ConversionRepository extends MongoRepository<Pacs
     List<Pacs008ToMT103Conversion> findByUsernameAndCreatedAtBetweenOrderByCreatedAtDesc(String username, LocalDateTime start, LocalDateTime end);
     List<Pacs008ToMT103Conversion> findTop3ByUsernameOrderByCreatedAtDesc(String username);
     List<Pacs008ToMT103Conversion> findTop5ByUsernameOrderByCreatedAtDesc(String username); // MÉTHODE MANQUANTE AJOUTÉE
+
+    // Lignes d'historique : date, statut et résumé (sans clés de recherche) seulement, sans rawPacs008Xml ni mt103Result
+    @Query(value = "{ 'username': ?0 }", fields = "{ 'username': 1, 'createdAt': 1, 'success': 1, 'errorMessage': 1, 'summary.transactionRef': 1, 'summary.amount': 1, 'summary.currency': 1, 'summary.success': 1 }", sort = "{ 'createdAt': -1 }")
+    List<Pacs008ToMT103Conversion> findSummariesByUsername(String username, Limit limit);
 }
@@ -0,0 +1,146 @@
+package com.attijari.MT103converter.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pool de conversion partagé par les traitements par lot (/convert/batch, /convert-reverse/batch).
+ * Nombre de threads et file d'attente bornés ; file pleine : la tâche est exécutée par le thread
+ * de la requête, ce qui ralentit la lecture du lot au lieu d'accumuler du travail en mémoire.
+ * Les résultats d'un lot sont rendus dans l'ordre d'entrée, avec au plus conversion.batch.window
+ * tâches en cours par lot : la mémoire utilisée ne dépend pas de la taille du lot.
+ */
+@Component
+public class BatchConversionExecutor {
+    private static final Logger logger = LogManager.getLogger(BatchConversionExecutor.class);
+
+    // 0 = nombre de processeurs
+    @Value("${conversion.batch.threads:0}")
+    private int threads;
+
+    @Value("${conversion.batch.queue-capacity:256}")
+    private int queueCapacity = 256;
+
+    // tâches en cours par lot (0 = deux par thread)
+    @Value("${conversion.batch.window:0}")
+    private int window;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "batch-conversion-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        if (window <= 0) {
+            window = 2 * poolSize;
+        }
+        logger.info("Pool de conversion par lot: {} threads, file de {}, fenêtre de {} par lot", poolSize, queueCapacity, window);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * Démarre un lot dont les résultats sont remis au consumer dans l'ordre des submit
+     * (sur le thread appelant submit/finish)
+     */
+    public <R> OrderedBatch<R> start(Consumer<R> results) {
+        return new OrderedBatch<>(results);
+    }
+
+    /**
+     * Lot en cours : tâches exécutées en parallèle, résultats rendus dans l'ordre d'entrée
+     */
+    public final class OrderedBatch<R> {
+        private final Deque<Future<R>> pending = new ArrayDeque<>();
+        private final Consumer<R> results;
+
+        private OrderedBatch(Consumer<R> results) {
+            this.results = results;
+        }
+
+        /**
+         * Ajoute une tâche ; fenêtre pleine : attend et remet d'abord le plus ancien résultat
+         */
+        public void submit(Supplier<R> task) {
+            while (pending.size() >= window) {
+                deliverOldest();
+            }
+            if (executor.isShutdown()) {
+                // arrêt de l'application : la tâche ne serait jamais exécutée
+                cancel();
+                throw new IllegalStateException("Pool de conversion arrêté");
+            }
+            pending.add(executor.submit(task::get));
+        }
+
+        /**
+         * Remet tous les résultats restants
+         */
+        public void finish() {
+            while (!pending.isEmpty()) {
+                deliverOldest();
+            }
+        }
+
+        /**
+         * Abandonne les tâches non terminées (client déconnecté, erreur de lecture)
+         */
+        public void cancel() {
+            for (Future<R> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+
+        private void deliverOldest() {
+            Future<R> oldest = pending.poll();
+            R result;
+            try {
+                result = oldest.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new IllegalStateException("Traitement du lot interrompu", e);
+            } catch (ExecutionException e) {
+                cancel();
+                throw new IllegalStateException("Erreur de conversion dans le lot", e.getCause());
+            }
+            try {
+                results.accept(result);
+            } catch (RuntimeException e) {
+                cancel();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.converters.MT103ToPacs008Converter;
+import com.attijari.MT103converter.converters.Pacs008ToMT103Converter;
+import com.attijari.MT103converter.models.ConversionJob;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conversions asynchrones : la soumission rend un identifiant de job aussitôt, la conversion
+ * s'exécute sur un pool dédié dont la file d'attente est bornée (conversion.jobs.queue-capacity).
+ * File pleine : la soumission est refusée (JobQueueFullException) au lieu d'occuper un thread de requête.
+ * Les jobs terminés restent consultables conversion.jobs.retention-minutes, puis sont oubliés ;
+ * au-delà de conversion.jobs.max-retained jobs terminés ou de conversion.jobs.max-retained-result-mb
+ * de résultats, les plus anciens sont oubliés plus tôt. Purge à chaque soumission et toutes les minutes.
+ */
+@Service
+public class ConversionJobService {
+    private static final Logger logger = LogManager.getLogger(ConversionJobService.class);
+
+    @Autowired
+    private MT103ToPacs008Converter converter;
+
+    @Autowired
+    private Pacs008ToMT103Converter reverseConverter;
+
+    @Autowired
+    private HistoryWriter historyWriter;
+
+    // 0 = nombre de processeurs
+    @Value("${conversion.jobs.threads:0}")
+    private int threads;
+
+    @Value("${conversion.jobs.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    @Value("${conversion.jobs.retry-after-seconds:5}")
+    private int retryAfterSeconds = 5;
+
+    @Value("${conversion.jobs.retention-minutes:60}")
+    private long retentionMinutes = 60;
+
+    // balise ouvrante CdtTrfTxInf, avec ou sans préfixe d'espace de noms
+    private static final Pattern TRANSACTION_TAG = Pattern.compile("<(?:[\\w.-]+:)?CdtTrfTxInf[\\s>]");
+
+    @Value("${conversion.jobs.max-retained:1000}")
+    private int maxRetained = 1000;
+
+    // contenus des résultats en mémoire (2 octets par caractère)
+    @Value("${conversion.jobs.max-retained-result-mb:200}")
+    private long maxRetainedResultMb = 200;
+
+    private static final long EVICTION_INTERVAL_SECONDS = 60;
+
+    private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService evictor;
+
+    @PostConstruct
+    public void start() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "conversion-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "conversion-job-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictExpired, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        logger.info("Pool des jobs de conversion: {} threads, file de {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        evictor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Job MT103 -> pacs.008 : un ou plusieurs MT103 (RJE séparés par '$' ou FIN concaténés)
+     */
+    public ConversionJob submitMt103(String content, String username) {
+        ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), ConversionJob.Type.MT103_TO_PACS008, username);
+        submit(job, () -> runMt103(job, content));
+        return job;
+    }
+
+    /**
+     * Job pacs.008 -> MT103 : un MT103 par CdtTrfTxInf du document
+     */
+    public ConversionJob submitPacs008(String xml, String username) {
+        ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), ConversionJob.Type.PACS008_TO_MT103, username);
+        submit(job, () -> runPacs008(job, xml));
+        return job;
+    }
+
+    /**
+     * Job de l'utilisateur, null s'il est inconnu, expiré ou soumis par un autre utilisateur
+     */
+    public ConversionJob getJob(String id, String username) {
+        ConversionJob job = jobs.get(id);
+        if (job == null || !job.getUsername().equals(username)) {
+            return null;
+        }
+        return job;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    private void submit(ConversionJob job, Runnable work) {
+        evictExpired();
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> {
+                job.start();
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    logger.error("Job {} interrompu: {}", job.getId(), e.getMessage(), e);
+                    job.finish(new ArrayList<>(), "Erreur lors de la conversion: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            logger.warn("File des jobs pleine ({}), job refusé pour {}", queueCapacity, job.getUsername());
+            throw new JobQueueFullException(retryAfterSeconds);
+        }
+        logger.info("Job {} ({}) soumis par {}", job.getId(), job.getType(), job.getUsername());
+    }
+
+    private void runMt103(ConversionJob job, String content) {
+        List<ConversionJob.Item> results = new ArrayList<>();
+        String error = null;
+        try (MT103BatchReader reader = new MT103BatchReader(new StringReader(content))) {
+            while (reader.hasNext()) {
+                MT103BatchReader.Item item = reader.next();
+                ConversionJob.Item result;
+                if (item.isMalformed()) {
+                    result = new ConversionJob.Item(item.getIndex(), null, false, null,
+                            "Message mal formé à l'octet " + item.getByteOffset() + " : " + item.getError());
+                } else {
+                    MT103Msg mt103 = item.getMessage();
+                    MT103ToPacs008Converter.ConversionResult conversion = converter.process(mt103);
+                    result = new ConversionJob.Item(item.getIndex(), mt103.getField("20"), conversion.isSuccess(),
+                            conversion.getXmlContent(), conversion.getErrorMessage());
+                    mt103.setUsername(job.getUsername());
+                    mt103.setPacs008Xml(conversion.isSuccess() ? conversion.getXmlContent() : null);
+                    historyWriter.write(mt103);
+                }
+                results.add(result);
+                job.progress(result.success());
+            }
+        } catch (IOException e) {
+            error = "Erreur de lecture: " + e.getMessage();
+        }
+        if (error == null && results.isEmpty()) {
+            error = "Aucun message MT103 dans le contenu soumis";
+        }
+        job.finish(results, error);
+        logger.info("Job {} terminé: {} messages, {} en échec", job.getId(), job.getProcessedCount(), job.getFailureCount());
+    }
+
+    private void runPacs008(ConversionJob job, String xml) {
+        if (!hasSeveralTransactions(xml)) {
+            runSinglePacs008(job, xml);
+            return;
+        }
+        // lot : pas de validation XSD du document (une transaction par document dans le schéma HVPS+),
+        // chaque transaction est contrôlée par processBatch
+        List<ConversionJob.Item> results = new ArrayList<>();
+        Pacs008ToMT103Converter.BatchResult batch = reverseConverter.processBatch(new StringReader(xml), result -> {
+            results.add(new ConversionJob.Item(result.getIndex(), result.getReference(), result.isSuccess(),
+                    result.getMt103Content(), result.getErrorMessage()));
+            job.progress(result.isSuccess());
+            Pacs008ToMT103Conversion entity = new Pacs008ToMT103Conversion();
+            entity.setSuccess(result.isSuccess());
+            entity.setMt103Result(result.getMt103Content());
+            entity.setErrorMessage(result.getErrorMessage());
+            entity.setSummary(result.getSummary());
+            entity.setUsername(job.getUsername());
+            historyWriter.write(entity);
+        });
+        job.finish(results, batch.getErrorMessage());
+        logger.info("Job {} terminé: {} transactions, {} en échec", job.getId(), job.getProcessedCount(), job.getFailureCount());
+    }
+
+    /**
+     * Document à une transaction : même traitement que /convert-reverse (validation XSD et lecture en une passe),
+     * historique avec le document d'origine. Un document rejeté met le job en échec.
+     */
+    private void runSinglePacs008(ConversionJob job, String xml) {
+        Pacs008ToMT103Converter.ConversionResult result = reverseConverter.process(xml);
+        job.progress(result.isSuccess());
+
+        Pacs008ToMT103Conversion entity = new Pacs008ToMT103Conversion();
+        entity.setRawPacs008Xml(xml);
+        entity.setSuccess(result.isSuccess());
+        entity.setMt103Result(result.getMt103Content());
+        entity.setErrorMessage(result.getErrorMessage());
+        entity.setSummary(result.getSummary());
+        entity.setUsername(job.getUsername());
+        historyWriter.write(entity);
+
+        List<ConversionJob.Item> results = new ArrayList<>(1);
+        results.add(new ConversionJob.Item(1, result.getSummary().getTransactionRef(), result.isSuccess(),
+                result.getMt103Content(), result.getErrorMessage()));
+        job.finish(results, result.isSuccess() ? null : result.getErrorMessage());
+        logger.info("Job {} terminé: document à une transaction, {}", job.getId(), result.isSuccess() ? "converti" : "rejeté");
+    }
+
+    /**
+     * Plus d'un élément CdtTrfTxInf dans le document (repérage textuel, sans lecture XML :
+     * un document mal formé passe par process et y est rejeté)
+     */
+    static boolean hasSeveralTransactions(String xml) {
+        if (xml == null) {
+            return false;
+        }
+        Matcher matcher = TRANSACTION_TAG.matcher(xml);
+        return matcher.find() && matcher.find();
+    }
+
+    /**
+     * Oubli des jobs terminés expirés, puis des plus anciens tant que leur nombre ou la taille
+     * de leurs résultats dépasse la limite (les jobs en file ou en cours sont bornés par le pool)
+     */
+    synchronized void evictExpired() {
+        Instant limit = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+
+        List<ConversionJob> finished = new ArrayList<>();
+        long resultBytes = 0;
+        for (ConversionJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finished.add(job);
+                resultBytes += 2 * job.getResultChars();
+            }
+        }
+        long maxResultBytes = maxRetainedResultMb * 1024 * 1024;
+        if (finished.size() <= maxRetained && resultBytes <= maxResultBytes) {
+            return;
+        }
+        finished.sort(Comparator.comparing(ConversionJob::getFinishedAt));
+        int evicted = 0;
+        for (ConversionJob job : finished) {
+            if (finished.size() - evicted <= maxRetained && resultBytes <= maxResultBytes) {
+                break;
+            }
+            jobs.remove(job.getId());
+            resultBytes -= 2 * job.getResultChars();
+            evicted++;
+        }
+        logger.info("{} jobs terminés oubliés avant expiration (limite {} jobs, {} Mo)", evicted, maxRetained, maxRetainedResultMb);
+    }
+
+    /**
+     * File des jobs pleine : à rejouer après retryAfterSeconds
+     */
+    public static class JobQueueFullException extends RuntimeException {
+        private final int retryAfterSeconds;
+
+        public JobQueueFullException(int retryAfterSeconds) {
+            super("File des conversions pleine, réessayer dans " + retryAfterSeconds + " s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+}
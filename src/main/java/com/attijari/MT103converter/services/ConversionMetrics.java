@@ -0,0 +1,110 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.ErrorCall;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métriques de la conversion (exposées sur /actuator/prometheus) :
+ * conversion.stage   : durée de chaque étape (histogramme), par sens et par étape
+ * conversion.result  : conversions par sens et par issue (success, validation_error, error)
+ * conversion.validation.errors : erreurs de validation par sens et par catégorie (ErrorCall)
+ * Les compteurs et timers sont créés une fois : un enregistrement = System.nanoTime() et un ajout sans verrou,
+ * sans recherche dans le registre, ce qui permet de les laisser actifs en pleine charge.
+ */
+@Component
+public class ConversionMetrics {
+
+    public enum Direction { MT103_TO_PACS008, PACS008_TO_MT103 }
+
+    /**
+     * Étapes : PARSE (MT103Parser), VALIDATE_MT103, TRANSFORM (Transformer ou mapping inverse),
+     * VALIDATE_PACS008 (XSD ; lecture des transactions comprise dans le sens inverse, validation faite pendant
+     * la génération comprise en mode inline), PERSIST (écriture de l'historique)
+     */
+    public enum Stage { PARSE, VALIDATE_MT103, TRANSFORM, VALIDATE_PACS008, PERSIST }
+
+    public enum Outcome { SUCCESS, VALIDATION_ERROR, ERROR }
+
+    // sans registre (tests unitaires, composants instanciés hors Spring)
+    private static final ConversionMetrics NOOP = new ConversionMetrics(new CompositeMeterRegistry());
+
+    private final MeterRegistry registry;
+    private final Timer[][] stages = new Timer[Direction.values().length][Stage.values().length];
+    private final Counter[][] outcomes = new Counter[Direction.values().length][Outcome.values().length];
+    private final List<Map<String, Counter>> validationErrors = List.of(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+    public ConversionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Direction direction : Direction.values()) {
+            for (Stage stage : Stage.values()) {
+                stages[direction.ordinal()][stage.ordinal()] = Timer.builder("conversion.stage")
+                        .description("Durée d'une étape de la conversion")
+                        .tag("direction", tag(direction))
+                        .tag("stage", tag(stage))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(10_000))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(registry);
+            }
+            for (Outcome outcome : Outcome.values()) {
+                outcomes[direction.ordinal()][outcome.ordinal()] = Counter.builder("conversion.result")
+                        .description("Conversions par issue")
+                        .tag("direction", tag(direction))
+                        .tag("outcome", tag(outcome))
+                        .register(registry);
+            }
+        }
+    }
+
+    public static ConversionMetrics noop() {
+        return NOOP;
+    }
+
+    /**
+     * Durée d'une étape commencée à startNanos (System.nanoTime())
+     */
+    public void record(Direction direction, Stage stage, long startNanos) {
+        stages[direction.ordinal()][stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Durée d'une étape mesurée par ailleurs (validation inline, décomptée de la génération)
+     */
+    public void recordNanos(Direction direction, Stage stage, long nanos) {
+        stages[direction.ordinal()][stage.ordinal()].record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    public void outcome(Direction direction, Outcome outcome) {
+        outcomes[direction.ordinal()][outcome.ordinal()].increment();
+    }
+
+    /**
+     * Une conversion rejetée par la validation : issue validation_error et une erreur par catégorie
+     */
+    public void validationFailed(Direction direction, ErrorCall errors) {
+        outcome(direction, Outcome.VALIDATION_ERROR);
+        Map<String, Counter> counters = validationErrors.get(direction.ordinal());
+        for (String category : errors.getCategories()) {
+            counters.computeIfAbsent(category, key -> Counter.builder("conversion.validation.errors")
+                    .description("Erreurs de validation par catégorie")
+                    .tag("direction", tag(direction))
+                    .tag("category", key)
+                    .register(registry)).increment();
+        }
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,283 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.DailyConversionStats;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Statistiques du dashboard tenues à jour au fil de l'eau : un document DAILY_STATS par utilisateur et par jour,
+ * plus un document ALL par utilisateur, incrémentés ($inc, upsert) après chaque insertion dans l'historique
+ * et décrémentés après chaque suppression.
+ * Le dashboard lit une poignée de petits documents au lieu de compter et charger les conversions.
+ * rebuild() reconstruit les compteurs depuis les collections d'historique (première mise en place, dérive) ;
+ * lancé au démarrage si la collection est vide, sinon à la demande (POST /admin/rebuild-stats, de préférence hors charge).
+ */
+@Service
+public class ConversionStatsService {
+    private static final Logger logger = LogManager.getLogger(ConversionStatsService.class);
+
+    private static final int REMOVE_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Documents d'historique insérés (MT103Msg, Pacs008ToMT103Conversion)
+     */
+    public void recordInserted(List<?> documents) {
+        record(documents, 1);
+    }
+
+    /**
+     * Documents d'historique supprimés : compteurs décrémentés
+     */
+    public void recordDeleted(List<?> documents) {
+        record(documents, -1);
+    }
+
+    private void record(List<?> documents, int delta) {
+        Map<String, Increment> increments = new LinkedHashMap<>();
+        for (Object document : documents) {
+            if (document instanceof MT103Msg msg) {
+                add(increments, msg.getUsername(), msg.getCreatedAt(), false, msg.getPacs008Xml() != null, delta);
+            } else if (document instanceof Pacs008ToMT103Conversion conversion) {
+                add(increments, conversion.getUsername(), conversion.getCreatedAt(), true, conversion.isSuccess(), delta);
+            }
+        }
+        apply(increments);
+    }
+
+    /**
+     * Documents Mongo bruts insérés dans une collection d'historique (rejeu du spool)
+     */
+    public void recordInserted(String collection, List<Document> documents) {
+        boolean reverse = mongoTemplate.getCollectionName(Pacs008ToMT103Conversion.class).equals(collection);
+        Map<String, Increment> increments = new LinkedHashMap<>();
+        for (Document document : documents) {
+            Date createdAt = document.getDate("createdAt");
+            boolean success = reverse ? Boolean.TRUE.equals(document.getBoolean("success")) : document.get("pacs008Xml") != null;
+            add(increments, document.getString("username"),
+                    createdAt == null ? null : LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()),
+                    reverse, success, 1);
+        }
+        apply(increments);
+    }
+
+    /**
+     * Documents Mongo supprimés d'une collection d'historique (purge) : username, createdAt
+     * et success (booléen, calculé par la requête pour MT103)
+     */
+    public void recordDeleted(String collection, List<Document> documents) {
+        boolean reverse = mongoTemplate.getCollectionName(Pacs008ToMT103Conversion.class).equals(collection);
+        Map<String, Increment> increments = new LinkedHashMap<>();
+        for (Document document : documents) {
+            Date createdAt = document.getDate("createdAt");
+            add(increments, document.getString("username"),
+                    createdAt == null ? null : LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault()),
+                    reverse, Boolean.TRUE.equals(document.getBoolean("success")), -1);
+        }
+        apply(increments);
+    }
+
+    /**
+     * Compteurs de l'utilisateur pour les jours demandés et depuis le début (clé ALL) ; jour sans conversion : absent
+     */
+    public Map<String, DailyConversionStats> load(String username, List<LocalDate> days) {
+        List<String> ids = new ArrayList<>(days.size() + 1);
+        ids.add(DailyConversionStats.id(username, DailyConversionStats.ALL_DAYS));
+        for (LocalDate day : days) {
+            ids.add(DailyConversionStats.id(username, day.toString()));
+        }
+        Map<String, DailyConversionStats> byDay = new HashMap<>();
+        for (DailyConversionStats stats : mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), DailyConversionStats.class)) {
+            byDay.put(stats.getDay(), stats);
+        }
+        return byDay;
+    }
+
+    /**
+     * Reconstruit tous les compteurs depuis les collections d'historique (agrégation côté Mongo).
+     * Chaque document est remplacé par _id (upsert) au lieu de vider la collection : les compteurs restent
+     * lisibles pendant la reconstruction et un $inc concurrent ne heurte pas une insertion (clé dupliquée).
+     * Un $inc reçu entre l'agrégation et le remplacement de son document peut être écrasé ; un rebuild suivant le rattrape.
+     * @return nombre de documents de statistiques écrits
+     */
+    public int rebuild() {
+        // relevé avant l'agrégation : un compteur créé pendant la reconstruction n'est jamais supprimé
+        Set<String> previous = new HashSet<>();
+        Query existing = new Query();
+        existing.fields().include("_id");
+        try (Stream<DailyConversionStats> stats = mongoTemplate.stream(existing, DailyConversionStats.class)) {
+            stats.forEach(document -> previous.add(document.getId()));
+        }
+
+        Map<String, DailyConversionStats> rebuilt = new LinkedHashMap<>();
+        aggregate(mongoTemplate.getCollectionName(MT103Msg.class), false, rebuilt);
+        aggregate(mongoTemplate.getCollectionName(Pacs008ToMT103Conversion.class), true, rebuilt);
+
+        int removed = replace(rebuilt, previous);
+        logger.info("Statistiques du dashboard reconstruites: {} documents, {} sans historique supprimés", rebuilt.size(), removed);
+        return rebuilt.size();
+    }
+
+    /**
+     * Remplacement (upsert) des documents reconstruits, suppression par _id de ceux qui n'ont plus d'historique
+     * @return nombre de documents supprimés
+     */
+    int replace(Map<String, DailyConversionStats> rebuilt, Set<String> previous) {
+        if (!rebuilt.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyConversionStats.class);
+            for (DailyConversionStats stats : rebuilt.values()) {
+                bulk.replaceOne(Query.query(Criteria.where("_id").is(stats.getId())), stats, FindAndReplaceOptions.options().upsert());
+            }
+            bulk.execute();
+        }
+        List<String> stale = new ArrayList<>(previous);
+        stale.removeAll(rebuilt.keySet());
+        for (int from = 0; from < stale.size(); from += REMOVE_CHUNK_SIZE) {
+            List<String> chunk = stale.subList(from, Math.min(from + REMOVE_CHUNK_SIZE, stale.size()));
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(chunk)), DailyConversionStats.class);
+        }
+        return stale.size();
+    }
+
+    /**
+     * Première mise en place : compteurs reconstruits en tâche de fond si la collection est vide
+     * (sans risque si des $inc les créent entre-temps : rebuild() remplace par upsert)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Thread backfill = new Thread(() -> {
+            try {
+                if (mongoTemplate.estimatedCount(DailyConversionStats.class) == 0) {
+                    rebuild();
+                }
+            } catch (Exception e) {
+                logger.warn("Reconstruction des statistiques du dashboard impossible: {}", e.getMessage());
+            }
+        }, "stats-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    private void aggregate(String collection, boolean reverse, Map<String, DailyConversionStats> rebuilt) {
+        Document successCondition = reverse
+                ? new Document("$cond", List.of(new Document("$eq", List.of("$success", true)), 1, 0))
+                : new Document("$cond", List.of(new Document("$gt", Arrays.asList("$pacs008Xml", null)), 1, 0));
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", new Document("username", "$username")
+                        .append("day", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                                .append("date", "$createdAt")
+                                .append("timezone", ZoneId.systemDefault().getId()))))
+                        .append("total", new Document("$sum", 1))
+                        .append("success", new Document("$sum", successCondition))));
+        for (Document row : mongoTemplate.getCollection(collection).aggregate(pipeline).allowDiskUse(true)) {
+            Document key = row.get("_id", Document.class);
+            String username = key.getString("username") == null ? "anonymous" : key.getString("username");
+            long total = ((Number) row.get("total")).longValue();
+            long success = ((Number) row.get("success")).longValue();
+            for (String day : new String[]{key.getString("day"), DailyConversionStats.ALL_DAYS}) {
+                if (day == null) {
+                    continue;
+                }
+                DailyConversionStats stats = rebuilt.computeIfAbsent(DailyConversionStats.id(username, day),
+                        id -> new DailyConversionStats(username, day));
+                if (reverse) {
+                    stats.setReverseTotal(stats.getReverseTotal() + total);
+                    stats.setReverseSuccess(stats.getReverseSuccess() + success);
+                } else {
+                    stats.setMt103Total(stats.getMt103Total() + total);
+                    stats.setMt103Success(stats.getMt103Success() + success);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<String, Increment> increments, String username, LocalDateTime createdAt,
+                            boolean reverse, boolean success, int delta) {
+        String user = username == null ? "anonymous" : username;
+        String day = (createdAt == null ? LocalDate.now() : createdAt.toLocalDate()).toString();
+        increments.computeIfAbsent(DailyConversionStats.id(user, day), id -> new Increment(user, day)).add(reverse, success, delta);
+        increments.computeIfAbsent(DailyConversionStats.id(user, DailyConversionStats.ALL_DAYS),
+                id -> new Increment(user, DailyConversionStats.ALL_DAYS)).add(reverse, success, delta);
+    }
+
+    /**
+     * Un upsert $inc par document de statistiques, en un seul aller-retour ; une erreur ici ne remet pas
+     * en cause l'historique déjà écrit (compteurs corrigés par rebuild())
+     */
+    private void apply(Map<String, Increment> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyConversionStats.class);
+            for (Map.Entry<String, Increment> entry : increments.entrySet()) {
+                Increment increment = entry.getValue();
+                Update update = new Update()
+                        .setOnInsert("username", increment.username)
+                        .setOnInsert("day", increment.day)
+                        .inc("mt103Total", increment.mt103Total)
+                        .inc("mt103Success", increment.mt103Success)
+                        .inc("reverseTotal", increment.reverseTotal)
+                        .inc("reverseSuccess", increment.reverseSuccess);
+                bulk.upsert(Query.query(Criteria.where("_id").is(entry.getKey())), update);
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            logger.error("Mise à jour des statistiques du dashboard impossible ({} compteurs): {}",
+                    increments.size(), e.getMessage());
+        }
+    }
+
+    private static final class Increment {
+        private final String username;
+        private final String day;
+        private long mt103Total;
+        private long mt103Success;
+        private long reverseTotal;
+        private long reverseSuccess;
+
+        Increment(String username, String day) {
+            this.username = username;
+            this.day = day;
+        }
+
+        void add(boolean reverse, boolean success, int delta) {
+            if (reverse) {
+                reverseTotal += delta;
+                if (success) reverseSuccess += delta;
+            } else {
+                mt103Total += delta;
+                if (success) mt103Success += delta;
+            }
+        }
+    }
+}
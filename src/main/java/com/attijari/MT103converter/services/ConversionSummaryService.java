@@ -0,0 +1,138 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.ConversionSummary;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.attijari.MT103converter.models.Pacs008Transaction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Résumés des entrées d'historique écrites avant l'ajout du sous-document "summary" ou de ses clés de recherche :
+ * calculés depuis les messages complets, une fois, en tâche de fond au démarrage.
+ * En attendant, les listes résument à la volée les quelques lignes concernées.
+ */
+@Service
+public class ConversionSummaryService {
+    private static final Logger logger = LogManager.getLogger(ConversionSummaryService.class);
+
+    private static final int BACKFILL_CHUNK = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MT103Parser parser;
+
+    /**
+     * Résumé d'une ligne lue par projection ; entrée antérieure aux résumés : relue en entier
+     */
+    public ConversionSummary summaryOf(MT103Msg row) {
+        if (row.getSummary() != null) {
+            return row.getSummary();
+        }
+        MT103Msg full = mongoTemplate.findById(row.getId(), MT103Msg.class);
+        return summarize(full != null ? full : row);
+    }
+
+    public ConversionSummary summaryOf(Pacs008ToMT103Conversion row) {
+        if (row.getSummary() != null) {
+            return row.getSummary();
+        }
+        Pacs008ToMT103Conversion full = mongoTemplate.findById(row.getId(), Pacs008ToMT103Conversion.class);
+        return summarize(full != null ? full : row);
+    }
+
+    public ConversionSummary summarize(MT103Msg msg) {
+        return ConversionSummary.forward(msg);
+    }
+
+    /**
+     * MT103 produit s'il existe, sinon première transaction du pacs.008 d'origine
+     */
+    public ConversionSummary summarize(Pacs008ToMT103Conversion conversion) {
+        if (conversion.getMt103Result() != null && !conversion.getMt103Result().isBlank()) {
+            return ConversionSummary.reverse(parser.parse(conversion.getMt103Result()), conversion.isSuccess());
+        }
+        if (conversion.getRawPacs008Xml() != null) {
+            try {
+                List<Pacs008Transaction> transactions = Pacs008Reader.read(conversion.getRawPacs008Xml());
+                if (!transactions.isEmpty()) {
+                    return ConversionSummary.reverse(transactions.get(0), conversion.isSuccess());
+                }
+            } catch (Exception e) {
+                logger.debug("pacs.008 illisible pour le résumé de {}: {}", conversion.getId(), e.getMessage());
+            }
+        }
+        ConversionSummary summary = ConversionSummary.reverseFailure();
+        summary.setSuccess(conversion.isSuccess());
+        return summary;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillInBackground() {
+        Thread backfill = new Thread(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                logger.warn("Calcul des résumés de l'historique interrompu: {}", e.getMessage());
+            }
+        }, "summary-backfill");
+        backfill.setDaemon(true);
+        backfill.start();
+    }
+
+    /**
+     * Renseigne le résumé des entrées qui n'en ont pas, par paquets de mises à jour
+     * @return nombre d'entrées complétées
+     */
+    public long backfill() {
+        long count = backfill(MT103Msg.class, MT103Msg::getId, this::summarize)
+                + backfill(Pacs008ToMT103Conversion.class, Pacs008ToMT103Conversion::getId, this::summarize);
+        if (count > 0) {
+            logger.info("Résumés de l'historique calculés pour {} entrées", count);
+        }
+        return count;
+    }
+
+    private <T> long backfill(Class<T> type, Function<T, String> id, Function<T, ConversionSummary> summarize) {
+        long count = 0;
+        List<Pair<Query, UpdateDefinition>> updates = new ArrayList<>(BACKFILL_CHUNK);
+        try (Stream<T> missing = mongoTemplate.stream(Query.query(Criteria.where("summary.searchKeys").exists(false)), type)) {
+            for (T entry : (Iterable<T>) missing::iterator) {
+                updates.add(Pair.of(Query.query(Criteria.where("_id").is(id.apply(entry))),
+                        new Update().set("summary", summarize.apply(entry))));
+                if (updates.size() == BACKFILL_CHUNK) {
+                    count += flush(type, updates);
+                }
+            }
+        }
+        return count + flush(type, updates);
+    }
+
+    private int flush(Class<?> type, List<Pair<Query, UpdateDefinition>> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        int size = updates.size();
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type).updateOne(updates).execute();
+        updates.clear();
+        return size;
+    }
+}
@@ -0,0 +1,228 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.ConversionSummary;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export de l'historique d'un utilisateur sur une période (rapprochements) écrit au fil d'un curseur Mongo :
+ * une ligne de résumé par conversion (CSV ou NDJSON), ou une archive ZIP des messages d'origine et convertis.
+ * Les deux collections sont lues dans l'ordre de createdAt (index username, createdAt, _id) et fusionnées ;
+ * seuls un lot du curseur et la ligne en cours sont en mémoire, quelle que soit la taille de l'export.
+ */
+@Service
+public class HistoryExportService {
+    private static final Logger logger = LogManager.getLogger(HistoryExportService.class);
+
+    // documents complets (ZIP) : lots de curseur plus petits que pour les résumés
+    private static final int SUMMARY_BATCH_SIZE = 500;
+    private static final int PAYLOAD_BATCH_SIZE = 50;
+
+    // premier caractère d'une formule de tableur (injection CSV)
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    static final String CSV_HEADER = "id,createdAt,direction,transactionRef,amount,currency,sender,beneficiary,success,errorMessage";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversionSummaryService summaryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public enum Format { CSV, NDJSON, ZIP }
+
+    /**
+     * @param from début de période inclus, null : depuis le début
+     * @param to fin de période exclue, null : jusqu'à maintenant
+     * @return nombre de conversions exportées
+     */
+    public long export(String username, LocalDateTime from, LocalDateTime to, Format format, OutputStream out) throws IOException {
+        long count = format == Format.ZIP ? writePayloads(username, from, to, out) : writeSummaries(username, from, to, format, out);
+        logger.info("Export {} de l'historique de {} ({} -> {}): {} conversions", format, username, from, to, count);
+        return count;
+    }
+
+    private long writeSummaries(String username, LocalDateTime from, LocalDateTime to, Format format, OutputStream out)
+            throws IOException {
+        Query mt103Query = query(username, from, to, SUMMARY_BATCH_SIZE);
+        mt103Query.fields().include("createdAt").include(HistoryPageService.SUMMARY_FIELDS);
+        Query reverseQuery = query(username, from, to, SUMMARY_BATCH_SIZE);
+        reverseQuery.fields().include("createdAt", "success", "errorMessage").include(HistoryPageService.SUMMARY_FIELDS);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+        }
+        long count = 0;
+        try (Stream<MT103Msg> mt103 = mongoTemplate.stream(mt103Query, MT103Msg.class);
+             Stream<Pacs008ToMT103Conversion> reverse = mongoTemplate.stream(reverseQuery, Pacs008ToMT103Conversion.class)) {
+            Iterator<ExportRow> rows = merge(
+                    mt103.map(msg -> ExportRow.of(msg.getId(), msg.getCreatedAt(), summaryService.summaryOf(msg), null)).iterator(),
+                    reverse.map(conversion -> ExportRow.of(conversion.getId(), conversion.getCreatedAt(),
+                            summaryService.summaryOf(conversion), conversion.getErrorMessage())).iterator());
+            while (rows.hasNext()) {
+                ExportRow row = rows.next();
+                if (format == Format.CSV) {
+                    writer.write(row.toCsv());
+                    writer.write("\r\n");
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                count++;
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private long writePayloads(String username, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        long count = 0;
+        try (Stream<MT103Msg> mt103 = mongoTemplate.stream(query(username, from, to, PAYLOAD_BATCH_SIZE), MT103Msg.class);
+             Stream<Pacs008ToMT103Conversion> reverse = mongoTemplate.stream(query(username, from, to, PAYLOAD_BATCH_SIZE),
+                     Pacs008ToMT103Conversion.class)) {
+            // un dossier par conversion : message reçu puis message produit (absent si la conversion a échoué)
+            Iterator<Payloads> entries = merge(
+                    mt103.map(msg -> new Payloads(msg.getCreatedAt(), msg.getId(), "mt103-pacs008",
+                            "MT103.txt", msg.getRawContent(), "PACS008.xml", msg.getPacs008Xml())).iterator(),
+                    reverse.map(conversion -> new Payloads(conversion.getCreatedAt(), conversion.getId(), "pacs008-mt103",
+                            "PACS008.xml", conversion.getRawPacs008Xml(), "MT103.txt", conversion.getMt103Result())).iterator());
+            while (entries.hasNext()) {
+                Payloads payloads = entries.next();
+                String folder = payloads.folder() + "/";
+                putEntry(zip, folder + payloads.inputName(), payloads.input());
+                putEntry(zip, folder + payloads.outputName(), payloads.output());
+                count++;
+            }
+        }
+        zip.finish();
+        zip.flush();
+        return count;
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        if (content == null || content.isEmpty()) {
+            return;
+        }
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static Query query(String username, LocalDateTime from, LocalDateTime to, int batchSize) {
+        Criteria criteria = Criteria.where("username").is(username);
+        if (from != null && to != null) {
+            criteria = criteria.and("createdAt").gte(from).lt(to);
+        } else if (from != null) {
+            criteria = criteria.and("createdAt").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("createdAt").lt(to);
+        }
+        return Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt", "_id"))
+                .cursorBatchSize(batchSize);
+    }
+
+    /**
+     * Fusion de deux curseurs triés par date croissante
+     */
+    static <T extends Dated> Iterator<T> merge(Iterator<T> first, Iterator<T> second) {
+        Comparator<T> order = Comparator.comparing(Dated::createdAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+        return new Iterator<>() {
+            private T nextFirst = first.hasNext() ? first.next() : null;
+            private T nextSecond = second.hasNext() ? second.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return nextFirst != null || nextSecond != null;
+            }
+
+            @Override
+            public T next() {
+                T result;
+                if (nextSecond == null || (nextFirst != null && order.compare(nextFirst, nextSecond) <= 0)) {
+                    result = nextFirst;
+                    nextFirst = first.hasNext() ? first.next() : null;
+                } else {
+                    result = nextSecond;
+                    nextSecond = second.hasNext() ? second.next() : null;
+                }
+                return result;
+            }
+        };
+    }
+
+    interface Dated {
+        LocalDateTime createdAt();
+    }
+
+    /**
+     * Ligne de résumé exportée (CSV et NDJSON)
+     */
+    public record ExportRow(String id, LocalDateTime createdAt, String direction, String transactionRef,
+                            String amount, String currency, String sender, String beneficiary,
+                            boolean success, String errorMessage) implements Dated {
+
+        static ExportRow of(String id, LocalDateTime createdAt, ConversionSummary summary, String errorMessage) {
+            return new ExportRow(id, createdAt, summary.getDirection(), summary.getTransactionRef(),
+                    summary.getAmount(), summary.getCurrency(), summary.getSender(), summary.getBeneficiary(),
+                    summary.isSuccess(), errorMessage);
+        }
+
+        String toCsv() {
+            return String.join(",", csv(id), csv(createdAt == null ? null : createdAt.toString()), csv(direction),
+                    csv(transactionRef), csv(amount), csv(currency), csv(sender), csv(beneficiary),
+                    String.valueOf(success), csv(errorMessage));
+        }
+
+        // valeur saisie commençant comme une formule (=, +, -, @, tabulation, retour chariot) : préfixée d'une
+        // apostrophe pour être lue comme du texte par un tableur ; puis RFC 4180 : champ entre guillemets
+        // s'il contient un séparateur, un guillemet ou un saut de ligne
+        private static String csv(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private record Payloads(LocalDateTime createdAt, String id, String direction,
+                            String inputName, String input, String outputName, String output) implements Dated {
+        String folder() {
+            return (createdAt == null ? "" : createdAt.toLocalDate() + "_") + direction + "_" + id;
+        }
+    }
+}
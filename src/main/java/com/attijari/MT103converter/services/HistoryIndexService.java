@@ -0,0 +1,62 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Index de l'historique (@CompoundIndex de MT103Msg et Pacs008ToMT103Conversion) créés en tâche de fond
+ * après le démarrage, sans spring.data.mongodb.auto-index-creation : l'application démarre même si Mongo
+ * est indisponible (spool de l'historique) et une création d'index longue ne retarde pas le démarrage.
+ * Index déjà présent : createIndex ne fait rien. Échec : journalisé, les pages restent servies sans index.
+ */
+@Service
+public class HistoryIndexService {
+    private static final Logger logger = LogManager.getLogger(HistoryIndexService.class);
+
+    private static final List<Class<?>> INDEXED = List.of(MT103Msg.class, Pacs008ToMT103Conversion.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexesInBackground() {
+        Thread indexes = new Thread(() -> {
+            try {
+                ensureIndexes();
+            } catch (Exception e) {
+                logger.warn("Création des index de l'historique impossible: {}", e.getMessage());
+            }
+        }, "history-indexes");
+        indexes.setDaemon(true);
+        indexes.start();
+    }
+
+    /**
+     * @return nombre d'index vérifiés ou créés
+     */
+    public int ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        int count = 0;
+        for (Class<?> type : INDEXED) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            for (IndexDefinition index : resolver.resolveIndexFor(type)) {
+                String name = indexOps.createIndex(index);
+                logger.info("Index {} de {} en place", name, mongoTemplate.getCollectionName(type));
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,173 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Historique d'un utilisateur, deux sens confondus, page par page du plus récent au plus ancien.
+ * Pagination par clé (createdAt, _id) décroissante : chaque collection est lue par un curseur Mongo
+ * positionné après la dernière ligne de la page précédente (index username, createdAt, _id),
+ * et les curseurs sont fusionnés au fil de l'eau. Une page lit au plus size + 1 documents par
+ * collection, quelle que soit sa position dans l'historique.
+ * Recherche : chaque terme doit être le début d'un mot de la référence ou d'une partie
+ * (égalité sur summary.searchKeys, index username, summary.searchKeys, createdAt, _id) ;
+ * les résultats sont paginés de la même façon.
+ * Le jeton de continuation est opaque pour le client (createdAt et id de la dernière ligne, en base64).
+ */
+@Service
+public class HistoryPageService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // ordre de l'historique : date décroissante, puis identifiant décroissant (ObjectId en hexadécimal) ;
+    // entrées anciennes sans createdAt en dernier, comme le tri décroissant de Mongo
+    private static final Comparator<Row> NEWEST_FIRST = Comparator.comparing(Row::createdAt,
+            Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(Row::id).reversed();
+
+    // résumé affiché, sans les clés de recherche
+    static final String[] SUMMARY_FIELDS = {"summary.transactionRef", "summary.amount", "summary.currency",
+            "summary.sender", "summary.beneficiary", "summary.success", "summary.direction"};
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * @param cursor jeton de la page précédente (nextCursor), null pour la première page
+     * @param terms termes recherchés (ConversionSummary.searchTerms), vide : tout l'historique
+     * @return entrées MT103Msg et Pacs008ToMT103Conversion (id, date, statut et résumé seulement)
+     * @throws IllegalArgumentException jeton illisible
+     */
+    public Page page(String username, String cursor, int size, List<String> terms) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Row after = cursor == null || cursor.isBlank() ? null : decode(cursor);
+        // une ligne de plus que la page : savoir s'il reste une page suivante
+        int limit = pageSize + 1;
+
+        List<Stream<?>> streams = new ArrayList<>(2);
+        try {
+            PriorityQueue<Source> heads = new PriorityQueue<>(2, Comparator.comparing(source -> source.head, NEWEST_FIRST));
+            addSource(heads, streams, stream(MT103Msg.class, username, terms, after, limit,
+                    "username", "createdAt"), MT103Msg::getId, MT103Msg::getCreatedAt);
+            addSource(heads, streams, stream(Pacs008ToMT103Conversion.class, username, terms, after, limit,
+                    "username", "createdAt", "success", "errorMessage"),
+                    Pacs008ToMT103Conversion::getId, Pacs008ToMT103Conversion::getCreatedAt);
+
+            List<Object> entries = new ArrayList<>(pageSize);
+            Row last = null;
+            while (!heads.isEmpty()) {
+                Source source = heads.poll();
+                Row row = source.head;
+                if (source.advance()) {
+                    heads.add(source);
+                }
+                if (entries.size() == pageSize) {
+                    // au moins une ligne après la page
+                    return new Page(entries, encode(last));
+                }
+                entries.add(row.value());
+                last = row;
+            }
+            return new Page(entries, null);
+        } finally {
+            streams.forEach(Stream::close);
+        }
+    }
+
+    private <T> Stream<T> stream(Class<T> type, String username, List<String> terms, Row after, int limit, String... fields) {
+        Criteria criteria = Criteria.where("username").is(username);
+        if (terms.size() == 1) {
+            criteria = criteria.and("summary.searchKeys").is(terms.get(0));
+        } else if (!terms.isEmpty()) {
+            criteria = criteria.and("summary.searchKeys").all(terms);
+        }
+        if (after != null && after.createdAt() == null) {
+            // déjà dans les entrées sans date (fin de l'historique)
+            criteria = criteria.and("createdAt").is(null).and("_id").lt(new ObjectId(after.id()));
+        } else if (after != null) {
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(after.createdAt()),
+                    Criteria.where("createdAt").is(after.createdAt()).and("_id").lt(new ObjectId(after.id())),
+                    Criteria.where("createdAt").is(null));
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+                .limit(limit)
+                .cursorBatchSize(limit);
+        query.fields().include(fields).include(SUMMARY_FIELDS);
+        return mongoTemplate.stream(query, type);
+    }
+
+    private <T> void addSource(PriorityQueue<Source> heads, List<Stream<?>> streams, Stream<T> stream,
+                               Function<T, String> id, Function<T, LocalDateTime> createdAt) {
+        streams.add(stream);
+        Iterator<Row> rows = stream.map(entry -> new Row(createdAt.apply(entry), id.apply(entry), entry)).iterator();
+        Source source = new Source(rows);
+        if (source.advance()) {
+            heads.add(source);
+        }
+    }
+
+    // date vide : entrée sans createdAt
+    static String encode(Row row) {
+        String key = (row.createdAt() == null ? "" : row.createdAt().toString()) + "|" + row.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Row decode(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = key.indexOf('|');
+            String id = key.substring(separator + 1);
+            if (separator < 0 || !ObjectId.isValid(id)) {
+                throw new IllegalArgumentException("Jeton de pagination invalide");
+            }
+            String createdAt = key.substring(0, separator);
+            return new Row(createdAt.isEmpty() ? null : LocalDateTime.parse(createdAt), id, null);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Jeton de pagination invalide", e);
+        }
+    }
+
+    record Row(LocalDateTime createdAt, String id, Object value) {}
+
+    /**
+     * Curseur d'une collection et sa prochaine ligne
+     */
+    private static final class Source {
+        private final Iterator<Row> rows;
+        private Row head;
+
+        Source(Iterator<Row> rows) {
+            this.rows = rows;
+        }
+
+        boolean advance() {
+            head = rows.hasNext() ? rows.next() : null;
+            return head != null;
+        }
+    }
+
+    /**
+     * Page d'historique ; nextCursor null sur la dernière page
+     */
+    public record Page(List<Object> entries, String nextCursor) {}
+}
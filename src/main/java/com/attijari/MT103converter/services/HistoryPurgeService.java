@@ -0,0 +1,208 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.HistoryPurgeJob;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.mongodb.client.MongoCollection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suppression de l'historique d'un utilisateur (tout ou une période de createdAt) en tâche de fond.
+ * Chaque collection est vidée par paquets bornés (history.purge.chunk-size) : lecture des seuls
+ * identifiants d'un paquet sur l'index (username, createdAt), un deleteMany sur ces identifiants,
+ * décrément des compteurs du dashboard, puis une courte pause (history.purge.pause-ms) qui laisse
+ * Mongo aux conversions en cours. Un seul thread de purge, file bornée ; une purge par utilisateur à la fois.
+ * Les purges terminées restent consultables history.purge.retention-minutes.
+ */
+@Service
+public class HistoryPurgeService {
+    private static final Logger logger = LogManager.getLogger(HistoryPurgeService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversionStatsService stats;
+
+    @Value("${history.purge.chunk-size:500}")
+    private int chunkSize = 500;
+
+    @Value("${history.purge.pause-ms:50}")
+    private long pauseMs = 50;
+
+    @Value("${history.purge.queue-capacity:10}")
+    private int queueCapacity = 10;
+
+    @Value("${history.purge.retention-minutes:60}")
+    private long retentionMinutes = 60;
+
+    @Value("${history.purge.retry-after-seconds:30}")
+    private int retryAfterSeconds = 30;
+
+    private final Map<String, HistoryPurgeJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "history-purge");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Purge de l'historique de l'utilisateur ; la purge déjà en cours pour cet utilisateur est rendue telle quelle
+     * @param from début de période inclus, null : depuis le début
+     * @param to fin de période exclue, null : jusqu'à maintenant
+     * @throws PurgeQueueFullException file des purges pleine
+     */
+    public synchronized HistoryPurgeJob submit(String username, LocalDateTime from, LocalDateTime to) {
+        evictExpired();
+        for (HistoryPurgeJob job : jobs.values()) {
+            if (job.getUsername().equals(username) && !job.isFinished()) {
+                return job;
+            }
+        }
+        HistoryPurgeJob job = new HistoryPurgeJob(UUID.randomUUID().toString(), username, from, to);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            logger.warn("File des purges pleine ({}), purge refusée pour {}", queueCapacity, username);
+            throw new PurgeQueueFullException(retryAfterSeconds);
+        }
+        logger.info("Purge {} de l'historique soumise par {} (du {} au {})", job.getId(), username, from, to);
+        return job;
+    }
+
+    /**
+     * Purge de l'utilisateur, null si elle est inconnue, expirée ou lancée par un autre utilisateur
+     */
+    public HistoryPurgeJob getJob(String id, String username) {
+        HistoryPurgeJob job = jobs.get(id);
+        if (job == null || !job.getUsername().equals(username)) {
+            return null;
+        }
+        return job;
+    }
+
+    void run(HistoryPurgeJob job) {
+        try {
+            Document filter = filter(job);
+            List<MongoCollection<Document>> collections = List.of(
+                    mongoTemplate.getCollection(mongoTemplate.getCollectionName(MT103Msg.class)),
+                    mongoTemplate.getCollection(mongoTemplate.getCollectionName(Pacs008ToMT103Conversion.class)));
+            long total = 0;
+            for (MongoCollection<Document> collection : collections) {
+                total += collection.countDocuments(filter);
+            }
+            job.start(total);
+            // MT103 : réussi si le pacs.008 produit est présent, calculé par Mongo sans relire le XML
+            purge(job, collections.get(0), filter, new Document("username", 1).append("createdAt", 1)
+                    .append("success", new Document("$gt", List.of("$pacs008Xml", new Document("$literal", null)))));
+            purge(job, collections.get(1), filter, new Document("username", 1).append("createdAt", 1).append("success", 1));
+            job.finish(null);
+            logger.info("Purge {} terminée: {} entrées supprimées pour {}", job.getId(), job.getDeletedCount(), job.getUsername());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish("Purge interrompue");
+        } catch (RuntimeException e) {
+            logger.error("Purge {} interrompue: {}", job.getId(), e.getMessage(), e);
+            job.finish("Erreur lors de la suppression: " + e.getMessage());
+        }
+    }
+
+    private void purge(HistoryPurgeJob job, MongoCollection<Document> collection, Document filter, Document projection)
+            throws InterruptedException {
+        String name = collection.getNamespace().getCollectionName();
+        while (true) {
+            List<Document> chunk = collection.find(filter).projection(projection).limit(chunkSize).into(new ArrayList<>());
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<Object> ids = new ArrayList<>(chunk.size());
+            for (Document document : chunk) {
+                ids.add(document.get("_id"));
+            }
+            long deleted = collection.deleteMany(new Document("_id", new Document("$in", ids))).getDeletedCount();
+            stats.recordDeleted(name, chunk);
+            job.progress(deleted);
+            if (chunk.size() < chunkSize) {
+                return;
+            }
+            Thread.sleep(pauseMs);
+        }
+    }
+
+    private static Document filter(HistoryPurgeJob job) {
+        Document filter = new Document("username", job.getUsername());
+        Document createdAt = new Document();
+        if (job.getFrom() != null) {
+            createdAt.append("$gte", toDate(job.getFrom()));
+        }
+        if (job.getTo() != null) {
+            createdAt.append("$lt", toDate(job.getTo()));
+        }
+        if (!createdAt.isEmpty()) {
+            filter.append("createdAt", createdAt);
+        }
+        return filter;
+    }
+
+    // même conversion que Spring Data pour les LocalDateTime enregistrés
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private void evictExpired() {
+        Instant limit = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+    }
+
+    /**
+     * File des purges pleine : à rejouer après retryAfterSeconds
+     */
+    public static class PurgeQueueFullException extends RuntimeException {
+        private final int retryAfterSeconds;
+
+        public PurgeQueueFullException(int retryAfterSeconds) {
+            super("File des suppressions pleine, réessayer dans " + retryAfterSeconds + " s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+}
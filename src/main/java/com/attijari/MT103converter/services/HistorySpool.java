@@ -0,0 +1,314 @@
+package com.attijari.MT103converter.services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.BsonSerializationException;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spool disque de l'historique : quand Mongo est lent ou indisponible, les documents sont ajoutés
+ * à un fichier local (une ligne JSON étendu par document : collection + document Mongo déjà converti)
+ * au lieu d'être perdus, puis rejoués dans Mongo une fois la base revenue.
+ * - fichiers en ajout seul, fermés par rotate() puis rejoués et supprimés par replay()
+ * - rejeu idempotent : l'identifiant est attribué avant le spool, un document déjà présent
+ *   (clé dupliquée) est ignoré ; un fichier rejoué en partie est simplement rejoué à nouveau
+ * - ligne tronquée (arrêt brutal pendant une écriture) : ignorée au rejeu, avec un avertissement
+ * - document refusé par Mongo (validation, taille...) : il échouerait à chaque rejeu, il est écrit avec l'erreur
+ *   dans history-deadletter.ndjson et le rejeu continue ; un fichier illisible est mis de côté (history-deadletter-*).
+ *   Seule une erreur de Mongo lui-même (connexion, délai, serveur) interrompt le rejeu, repris au passage suivant
+ */
+@Component
+public class HistorySpool {
+    private static final Logger logger = LogManager.getLogger(HistorySpool.class);
+
+    private static final String PREFIX = "history-spool-";
+    private static final String SUFFIX = ".ndjson";
+    private static final String DEAD_LETTER = "history-deadletter";
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int REPLAY_CHUNK = 500;
+    // types exacts au rejeu (dates, ObjectId)
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversionStatsService stats;
+
+    @Value("${history.spool.dir:spool}")
+    private String directory = "spool";
+
+    // force l'écriture sur disque à chaque ajout
+    @Value("${history.spool.fsync:true}")
+    private boolean fsync = true;
+
+    private Path dir;
+    private Path activeFile;
+    private FileChannel active;
+    private Writer activeWriter;
+    private long sequence;
+
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong skippedLines = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        dir = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(dir);
+        int pending = pendingFiles().size();
+        if (pending > 0) {
+            logger.warn("Spool de l'historique: {} fichiers à rejouer dans {}", pending, dir);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        closeActive();
+    }
+
+    /**
+     * Ajoute les documents au fichier courant (créé au besoin)
+     */
+    public synchronized void append(List<?> documents) throws IOException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        if (activeWriter == null) {
+            // nom = horodatage puis numéro, de longueur fixe : l'ordre alphabétique est l'ordre d'écriture
+            Path file = dir.resolve(String.format("%s%013d-%06d%s", PREFIX, System.currentTimeMillis(), sequence++ % 1_000_000, SUFFIX));
+            activeFile = file;
+            active = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            activeWriter = Channels.newWriter(active, StandardCharsets.UTF_8);
+            logger.info("Spool de l'historique: nouveau fichier {}", file);
+        }
+        for (Object document : documents) {
+            Document bson = new Document();
+            mongoTemplate.getConverter().write(document, bson);
+            activeWriter.write(new Document("c", mongoTemplate.getCollectionName(document.getClass()))
+                    .append("d", bson).toJson(JSON));
+            activeWriter.write('\n');
+        }
+        activeWriter.flush();
+        if (fsync) {
+            active.force(false);
+        }
+        spooled.addAndGet(documents.size());
+    }
+
+    /**
+     * Ferme le fichier courant : les prochains ajouts iront dans un nouveau fichier,
+     * celui-ci devient rejouable
+     */
+    public synchronized void rotate() {
+        closeActive();
+    }
+
+    public synchronized boolean hasPending() {
+        return activeWriter != null || !pendingFiles().isEmpty();
+    }
+
+    /**
+     * Rejoue les fichiers fermés, du plus ancien au plus récent ; chaque fichier est supprimé une fois
+     * entièrement traité (documents insérés ou mis de côté). S'arrête au premier fichier interrompu
+     * par une erreur de Mongo (à nouveau indisponible).
+     * @return true si tous les fichiers fermés ont été rejoués
+     */
+    public boolean replay() {
+        List<Path> files;
+        synchronized (this) {
+            files = pendingFiles();
+        }
+        for (Path file : files) {
+            try {
+                long count = replayFile(file);
+                Files.delete(file);
+                replayed.addAndGet(count);
+                logger.info("Spool de l'historique: {} documents rejoués depuis {}", count, file.getFileName());
+            } catch (IOException e) {
+                // fichier illisible : mis de côté, les suivants sont rejoués
+                logger.error("Spool {} illisible, mis de côté: {}", file.getFileName(), e.getMessage());
+                quarantine(file);
+            } catch (Exception e) {
+                logger.warn("Rejeu du spool interrompu sur {}: {}", file.getFileName(), e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long replayFile(Path file) throws IOException {
+        long count = 0;
+        Map<String, List<Document>> chunk = new LinkedHashMap<>();
+        int chunkSize = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Document entry;
+                try {
+                    entry = Document.parse(line);
+                } catch (RuntimeException e) {
+                    skippedLines.incrementAndGet();
+                    logger.warn("Spool {}: ligne {} illisible ignorée ({})", file.getFileName(), lineNumber, e.getMessage());
+                    continue;
+                }
+                chunk.computeIfAbsent(entry.getString("c"), c -> new ArrayList<>()).add(entry.get("d", Document.class));
+                if (++chunkSize == REPLAY_CHUNK) {
+                    count += insert(chunk);
+                    chunk.clear();
+                    chunkSize = 0;
+                }
+            }
+        }
+        return count + insert(chunk);
+    }
+
+    /**
+     * Insertion non ordonnée ; les clés dupliquées (documents déjà écrits) ne sont pas des erreurs,
+     * les documents refusés par Mongo partent dans le fichier des rejets
+     */
+    private long insert(Map<String, List<Document>> chunk) throws IOException {
+        long count = 0;
+        for (Map.Entry<String, List<Document>> entry : chunk.entrySet()) {
+            String collection = entry.getKey();
+            List<Document> documents = entry.getValue();
+            try {
+                mongoTemplate.getCollection(collection).insertMany(documents, new InsertManyOptions().ordered(false));
+                stats.recordInserted(collection, documents);
+            } catch (MongoBulkWriteException e) {
+                boolean[] notInserted = new boolean[documents.size()];
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    notInserted[error.getIndex()] = true;
+                    if (error.getCode() != DUPLICATE_KEY) {
+                        deadLetter(collection, documents.get(error.getIndex()), error.getMessage());
+                    }
+                }
+                // statistiques : seulement les documents insérés par ce rejeu (ni déjà en base, ni en erreur)
+                List<Document> inserted = new ArrayList<>(documents.size());
+                for (int i = 0; i < documents.size(); i++) {
+                    if (!notInserted[i]) {
+                        inserted.add(documents.get(i));
+                    }
+                }
+                stats.recordInserted(collection, inserted);
+            } catch (BsonSerializationException | IllegalArgumentException e) {
+                // paquet refusé avant l'envoi (document trop gros...) : document par document
+                insertOneByOne(collection, documents);
+            }
+            count += documents.size();
+        }
+        return count;
+    }
+
+    private void insertOneByOne(String collection, List<Document> documents) throws IOException {
+        for (Document document : documents) {
+            try {
+                mongoTemplate.getCollection(collection).insertOne(document);
+                stats.recordInserted(collection, List.of(document));
+            } catch (MongoWriteException e) {
+                if (e.getError().getCode() != DUPLICATE_KEY) {
+                    deadLetter(collection, document, e.getMessage());
+                }
+            } catch (BsonSerializationException | IllegalArgumentException e) {
+                deadLetter(collection, document, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Document refusé par Mongo : ajouté au fichier des rejets avec l'erreur, pour reprise manuelle
+     */
+    private synchronized void deadLetter(String collection, Document document, String error) throws IOException {
+        Path file = dir.resolve(DEAD_LETTER + SUFFIX);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(new Document("c", collection).append("d", document).append("e", error).toJson(JSON));
+            writer.write('\n');
+        }
+        deadLettered.incrementAndGet();
+        logger.error("Spool: document {} de {} refusé par Mongo, écrit dans {}: {}",
+                document.get("_id"), collection, file.getFileName(), error);
+    }
+
+    private void quarantine(Path file) {
+        try {
+            Files.move(file, dir.resolve(DEAD_LETTER + "-" + file.getFileName()));
+        } catch (IOException e) {
+            logger.error("Spool {}: mise de côté impossible: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    private List<Path> pendingFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                if (!file.equals(activeFile)) {
+                    files.add(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Lecture du répertoire de spool {} impossible: {}", dir, e.getMessage());
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private void closeActive() {
+        if (activeWriter == null) {
+            return;
+        }
+        try {
+            activeWriter.close();
+        } catch (IOException e) {
+            logger.error("Fermeture du fichier de spool impossible: {}", e.getMessage());
+        }
+        activeWriter = null;
+        active = null;
+        activeFile = null;
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("spoolDirectory", String.valueOf(dir));
+        metrics.put("spooled", spooled.get());
+        metrics.put("replayed", replayed.get());
+        metrics.put("skippedLines", skippedLines.get());
+        metrics.put("deadLettered", deadLettered.get());
+        metrics.put("pendingFiles", pendingFiles().size());
+        return metrics;
+    }
+}
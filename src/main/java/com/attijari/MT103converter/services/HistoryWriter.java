@@ -0,0 +1,383 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écriture différée de l'historique (MT103Msg, Pacs008ToMT103Conversion) : les documents sont mis en file
+ * et insérés par paquets (bulk insert non ordonné) par un thread dédié, dès que le paquet est plein
+ * ou au plus tard après history.write-behind.flush-interval-ms. La réponse HTTP n'attend plus Mongo.
+ * - mémoire bornée : file de history.write-behind.capacity documents ; file pleine, le document
+ *   part dans le spool disque (HistorySpool) : la requête n'attend jamais Mongo
+ * - Mongo en erreur ou plus lent que history.spool.latency-threshold-ms : mode dégradé, les paquets
+ *   sont écrits dans le spool ; toutes les history.spool.replay-interval-ms, Mongo est sondé (ping)
+ *   et, s'il répond à temps, le spool est rejoué puis le mode dégradé quitté
+ * - arrêt de l'application : la file est vidée avant la fermeture de la connexion Mongo
+ * L'identifiant est attribué à la mise en file : il est connu de l'appelant avant l'écriture,
+ * et rend le rejeu du spool idempotent.
+ */
+@Service
+public class HistoryWriter {
+    private static final Logger logger = LogManager.getLogger(HistoryWriter.class);
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private HistorySpool spool;
+
+    @Autowired
+    private ConversionStatsService stats;
+
+    @Autowired
+    private ConversionMetrics metrics = ConversionMetrics.noop();
+
+    @Value("${history.write-behind.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${history.write-behind.capacity:10000}")
+    private int capacity = 10000;
+
+    @Value("${history.write-behind.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${history.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs = 200;
+
+    // au-delà, Mongo est considéré comme lent : passage au spool
+    @Value("${history.spool.latency-threshold-ms:2000}")
+    private long latencyThresholdMs = 2000;
+
+    @Value("${history.spool.replay-interval-ms:5000}")
+    private long replayIntervalMs = 5000;
+
+    private BlockingQueue<Object> queue;
+    private Thread flusher;
+    private ScheduledExecutorService replayer;
+    private volatile boolean running;
+    // Mongo lent ou indisponible : écritures dans le spool jusqu'au rejeu
+    private volatile boolean degraded;
+
+    // métriques
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Écriture différée de l'historique désactivée : enregistrement synchrone");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        flusher = new Thread(this::run, "history-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        replayer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "history-spool-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // premier passage immédiat : fichiers laissés par une exécution précédente
+        replayer.scheduleWithFixedDelay(this::replaySpool, 0, replayIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Écriture différée de l'historique: file de {}, paquets de {}, délai max {} ms",
+                capacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * Vide la file avant l'arrêt (appelé avant la fermeture du client Mongo)
+     */
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        replayer.shutdownNow();
+        // pas d'interrupt : une écriture en cours irait au bout, le thread s'arrête au prochain poll
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // reste éventuel (thread bloqué ou arrêté sur délai)
+        drainAndFlush();
+        logger.info("Historique: {} documents écrits, {} mis en spool, {} perdus",
+                written.get(), spooled.get(), lost.get());
+    }
+
+    public void write(MT103Msg msg) {
+        enqueue(msg);
+    }
+
+    public void write(Pacs008ToMT103Conversion conversion) {
+        enqueue(conversion);
+    }
+
+    private void enqueue(Object document) {
+        assignIdAndDate(document);
+        if (!running) {
+            insertDirectly(document);
+            return;
+        }
+        if (queue.offer(document)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+        // file pleine : Mongo ne suit pas, le document part sur disque sans attendre
+        toSpool(List.of(document));
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Object first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // complète le paquet jusqu'à batchSize ou jusqu'au délai
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Object next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // le paquet en cours est écrit ci-dessous, le reste par stop()
+                running = false;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void drainAndFlush() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Un bulk insert non ordonné par collection ; un document en échec n'empêche pas l'écriture des autres
+     * et part dans le spool. Mode dégradé : le paquet entier part dans le spool.
+     */
+    private void flush(List<Object> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (degraded) {
+            toSpool(batch);
+            return;
+        }
+        long start = System.nanoTime();
+        Map<Class<?>, List<Object>> byType = new LinkedHashMap<>(4);
+        for (Object document : batch) {
+            byType.computeIfAbsent(document.getClass(), type -> new ArrayList<>()).add(document);
+        }
+        for (Map.Entry<Class<?>, List<Object>> entry : byType.entrySet()) {
+            List<Object> documents = entry.getValue();
+            long insertStart = System.nanoTime();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entry.getKey())
+                        .insert(documents)
+                        .execute();
+                // étape PERSIST : un bulk insert (paquet de l'écriture différée)
+                metrics.record(direction(entry.getKey()), ConversionMetrics.Stage.PERSIST, insertStart);
+                written.addAndGet(documents.size());
+                stats.recordInserted(documents);
+            } catch (BulkOperationException e) {
+                // non ordonné : les autres documents du paquet sont écrits
+                written.addAndGet(e.getResult().getInsertedCount());
+                List<Object> rejected = new ArrayList<>();
+                boolean[] notInserted = new boolean[documents.size()];
+                for (BulkWriteError error : e.getErrors()) {
+                    notInserted[error.getIndex()] = true;
+                    // clé dupliquée : document déjà en base
+                    if (error.getCode() != DUPLICATE_KEY) {
+                        rejected.add(documents.get(error.getIndex()));
+                    }
+                }
+                List<Object> inserted = new ArrayList<>(documents.size());
+                for (int i = 0; i < documents.size(); i++) {
+                    if (!notInserted[i]) {
+                        inserted.add(documents.get(i));
+                    }
+                }
+                stats.recordInserted(inserted);
+                failed.addAndGet(rejected.size());
+                logger.error("Écriture partielle de {} documents {}: {} en échec, première erreur: {}", documents.size(),
+                        entry.getKey().getSimpleName(), e.getErrors().size(), e.getErrors().get(0).getMessage());
+                toSpool(rejected);
+            } catch (Exception e) {
+                failed.addAndGet(documents.size());
+                enterDegraded("échec d'écriture: " + e.getMessage());
+                toSpool(documents);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs)) {
+            enterDegraded("écriture de " + batch.size() + " documents en " + elapsed / 1_000_000 + " ms");
+        }
+        flushes.incrementAndGet();
+        flushNanosTotal.addAndGet(elapsed);
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+    }
+
+    private static ConversionMetrics.Direction direction(Class<?> type) {
+        return type == Pacs008ToMT103Conversion.class
+                ? ConversionMetrics.Direction.PACS008_TO_MT103 : ConversionMetrics.Direction.MT103_TO_PACS008;
+    }
+
+    /**
+     * Après l'arrêt du thread d'écriture (fin d'application) : insertion directe, spool en cas d'échec
+     */
+    private void insertDirectly(Object document) {
+        try {
+            long start = System.nanoTime();
+            mongoTemplate.insert(document);
+            metrics.record(direction(document.getClass()), ConversionMetrics.Stage.PERSIST, start);
+            written.incrementAndGet();
+            stats.recordInserted(List.of(document));
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.error("Erreur lors de la sauvegarde en base: {}", e.getMessage(), e);
+            toSpool(List.of(document));
+        }
+    }
+
+    private void toSpool(List<?> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        try {
+            spool.append(documents);
+            spooled.addAndGet(documents.size());
+        } catch (Exception e) {
+            // disque indisponible aussi : dernier recours, rien d'autre à tenter
+            lost.addAndGet(documents.size());
+            logger.error("Spool de l'historique impossible, {} documents perdus: {}", documents.size(), e.getMessage(), e);
+        }
+    }
+
+    private void enterDegraded(String reason) {
+        if (!degraded) {
+            degraded = true;
+            logger.warn("Mongo lent ou indisponible ({}) : historique écrit dans le spool", reason);
+        }
+    }
+
+    /**
+     * Sonde Mongo puis rejoue le spool ; le mode dégradé n'est quitté qu'une fois le spool entièrement rejoué
+     */
+    private void replaySpool() {
+        try {
+            if (!degraded && !spool.hasPending()) {
+                return;
+            }
+            long start = System.nanoTime();
+            mongoTemplate.executeCommand("{ ping: 1 }");
+            if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs)) {
+                return;
+            }
+            // les nouveaux documents iront dans un nouveau fichier pendant le rejeu
+            spool.rotate();
+            if (spool.replay() && degraded) {
+                degraded = false;
+                logger.info("Mongo disponible : fin du spool de l'historique");
+            }
+        } catch (Exception e) {
+            logger.debug("Mongo toujours indisponible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Identifiant et date de création posés à l'entrée dans l'historique (valeurs déjà présentes conservées)
+     */
+    private static void assignIdAndDate(Object document) {
+        if (document instanceof MT103Msg msg) {
+            if (msg.getId() == null) {
+                msg.setId(new ObjectId().toHexString());
+            }
+            if (msg.getCreatedAt() == null) {
+                msg.setCreatedAt(LocalDateTime.now());
+            }
+        } else if (document instanceof Pacs008ToMT103Conversion conversion) {
+            if (conversion.getId() == null) {
+                conversion.setId(new ObjectId().toHexString());
+            }
+            if (conversion.getCreatedAt() == null) {
+                conversion.setCreatedAt(LocalDateTime.now());
+            }
+        }
+    }
+
+    /**
+     * Profondeur de file et latence des écritures (millisecondes)
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("queueDepth", queue == null ? 0 : queue.size());
+        metrics.put("queueCapacity", capacity);
+        metrics.put("enqueued", enqueued.get());
+        metrics.put("written", written.get());
+        metrics.put("failed", failed.get());
+        metrics.put("degraded", degraded);
+        metrics.put("spooled", spooled.get());
+        metrics.put("lost", lost.get());
+        metrics.put("spool", spool.getMetrics());
+        long flushCount = flushes.get();
+        metrics.put("flushes", flushCount);
+        metrics.put("lastFlushMs", lastFlushNanos / 1_000_000.0);
+        metrics.put("maxFlushMs", maxFlushNanos / 1_000_000.0);
+        metrics.put("avgFlushMs", flushCount == 0 ? 0.0 : flushNanosTotal.get() / 1_000_000.0 / flushCount);
+        return metrics;
+    }
+}
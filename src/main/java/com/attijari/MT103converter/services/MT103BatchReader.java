@@ -0,0 +1,366 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ MT103BatchReader.java : lecture au fil de l'eau d'un fichier contenant plusieurs MT103
+ - RJE : messages séparés par '$'
+ - FIN : messages concaténés {1:...}{2:...}{4:...-}{5:...}{1:...}
+ Un seul message est gardé en mémoire à la fois (taille bornée), quel que soit le fichier.
+ Un message mal formé (accolades non équilibrées, trop long) est signalé avec sa position en octets
+ (UTF-8) dans le fichier, la lecture continue au message suivant.
+ **/
+public class MT103BatchReader implements Iterator<MT103BatchReader.Item>, Closeable {
+    private static final Logger logger = LogManager.getLogger(MT103BatchReader.class);
+
+    /**
+     * Taille maximale par défaut d'un message (un MT103 valide fait au plus une dizaine de milliers de caractères)
+     */
+    public static final int DEFAULT_MAX_MESSAGE_CHARS = 64 * 1024;
+
+    private final Reader reader;
+    private final int maxMessageChars;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    // position en octets du prochain caractère lu
+    private long bytePosition;
+    private int index;
+
+    // message en cours
+    private final StringBuilder current = new StringBuilder();
+    private long currentOffset = -1;
+    private int depth;
+    private boolean unbalanced;
+    private boolean oversized;
+    private char previous1;
+    private char previous2;
+
+    private Item next;
+
+    public MT103BatchReader(Reader reader) {
+        this(reader, DEFAULT_MAX_MESSAGE_CHARS);
+    }
+
+    public MT103BatchReader(Reader reader, int maxMessageChars) {
+        this.reader = reader;
+        this.maxMessageChars = maxMessageChars;
+    }
+
+    /**
+     * Flux d'octets encodé en UTF-8
+     */
+    public static MT103BatchReader open(InputStream in) {
+        return new MT103BatchReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fichier UTF-8 lu par projection mémoire (par tranches, pas de limite de taille)
+     */
+    public static MT103BatchReader open(Path file) throws IOException {
+        return new MT103BatchReader(new MappedFileReader(file));
+    }
+
+    /**
+     * Les messages restants sous forme de Stream (fermer le Stream ferme la source)
+     */
+    public Stream<Item> stream() {
+        Spliterator<Item> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Item next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Item item = next;
+        next = null;
+        return item;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Avance jusqu'à la fin du prochain message non vide
+     */
+    private Item readNext() {
+        while (true) {
+            if (position == limit && !fill()) {
+                return finish(depth);
+            }
+            char c = buffer[position++];
+
+            if (c == '$') {
+                // séparateur RJE : termine le message quel que soit l'état des accolades
+                Item item = finish(depth);
+                bytePosition++;
+                previous2 = previous1;
+                previous1 = c;
+                if (item != null) {
+                    return item;
+                }
+                continue;
+            }
+
+            if (c == ':' && previous1 == '1' && previous2 == '{' && currentOffset >= 0 && currentOffset < bytePosition - 2) {
+                // "{1:" : début d'un nouveau message FIN, le '{' appartient déjà au message suivant
+                long start = bytePosition - 2;
+                if (!oversized) {
+                    current.setLength(current.length() - 2);
+                }
+                Item item = finish(depth - 1);
+                currentOffset = start;
+                current.append("{1:");
+                depth = 1;
+                bytePosition++;
+                previous2 = '1';
+                previous1 = ':';
+                return item;
+            }
+
+            if (currentOffset >= 0) {
+                append(c);
+            } else if (c > ' ') {
+                // les espaces entre deux messages ne sont pas conservés
+                currentOffset = bytePosition;
+                append(c);
+            }
+            bytePosition += utf8Length(c);
+            previous2 = previous1;
+            previous1 = c;
+        }
+    }
+
+    private void append(char c) {
+        if (c == '{') {
+            depth++;
+        } else if (c == '}') {
+            if (depth == 0) {
+                unbalanced = true;
+            } else {
+                depth--;
+            }
+        }
+        if (oversized) {
+            return;
+        }
+        if (current.length() == maxMessageChars) {
+            // le message est abandonné, on continue seulement à chercher sa fin
+            oversized = true;
+            current.setLength(0);
+            return;
+        }
+        current.append(c);
+    }
+
+    /**
+     * Termine le message en cours
+     * @return le message, null s'il ne contenait que des espaces
+     */
+    private Item finish(int finalDepth) {
+        Item item = null;
+        if (currentOffset >= 0) {
+            index++;
+            if (oversized) {
+                item = malformed("Message trop long (plus de " + maxMessageChars + " caractères)");
+            } else if (finalDepth != 0 || unbalanced) {
+                item = malformed("Accolades non équilibrées");
+            } else {
+                String raw = current.toString();
+                item = new Item(index, currentOffset, new MT103Msg(MT103Tokenizer.tokenize(raw)), null);
+            }
+        }
+        current.setLength(0);
+        currentOffset = -1;
+        depth = 0;
+        unbalanced = false;
+        oversized = false;
+        return item;
+    }
+
+    private Item malformed(String error) {
+        logger.warn("Message {} mal formé à l'octet {} : {}", index, currentOffset, error);
+        return new Item(index, currentOffset, null, error);
+    }
+
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800) {
+            return 2;
+        }
+        // une paire de surrogates fait 4 octets, 2 comptés pour chacun
+        return Character.isSurrogate(c) ? 2 : 3;
+    }
+
+    /**
+     * Un message du lot : soit lu (message), soit mal formé (error)
+     */
+    public static class Item {
+        private final int index;
+        private final long byteOffset;
+        private final MT103Msg message;
+        private final String error;
+
+        public Item(int index, long byteOffset, MT103Msg message, String error) {
+            this.index = index;
+            this.byteOffset = byteOffset;
+            this.message = message;
+            this.error = error;
+        }
+
+        /**
+         * Rang du message dans le fichier (à partir de 1)
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Position en octets du premier caractère du message dans le fichier
+         */
+        public long getByteOffset() {
+            return byteOffset;
+        }
+
+        public MT103Msg getMessage() {
+            return message;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isMalformed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * Lecture d'un fichier UTF-8 projeté en mémoire par tranches
+     */
+    private static final class MappedFileReader extends Reader {
+        private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+        private final FileChannel channel;
+        private final long size;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private long chunkStart;
+        private MappedByteBuffer chunk;
+        private boolean flushed;
+
+        MappedFileReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long start) throws IOException {
+            chunkStart = start;
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (true) {
+                boolean last = chunkStart + chunk.limit() == size;
+                CoderResult result = decoder.decode(chunk, out, last);
+                if (out.position() > off) {
+                    return out.position() - off;
+                }
+                if (result.isOverflow()) {
+                    // len == 0
+                    return 0;
+                }
+                if (!last) {
+                    // une séquence UTF-8 coupée en fin de tranche est relue au début de la suivante
+                    map(chunkStart + chunk.position());
+                    continue;
+                }
+                if (!flushed) {
+                    decoder.flush(out);
+                    flushed = true;
+                    if (out.position() > off) {
+                        return out.position() - off;
+                    }
+                }
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
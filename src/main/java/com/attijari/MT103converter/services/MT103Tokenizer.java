@@ -0,0 +1,305 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Diagnostic;
+import com.attijari.MT103converter.models.MT103Text;
+import com.attijari.MT103converter.models.ParsedMT103;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ MT103Tokenizer.java : découpage d'un message MT103 en une seule lecture, caractère par caractère, sans regex.
+ Produit un ParsedMT103 (positions des blocs et des champs dans le message) dont les valeurs
+ sont exactement celles de l'ancien parser :
+ - blocs 1, 2, 4 et 5 présents : champs du bloc 4, espaces/retours à la ligne ramenés à un seul espace
+ - sinon : lecture ligne par ligne, les valeurs multi-lignes gardent leurs retours à la ligne
+ Blocs, tags du bloc 4 et lignes de tag sont relevés dans la même lecture : le mode ligne par ligne
+ ne relit pas le message. Les problèmes de structure sont consignés dans les diagnostics du résultat.
+ **/
+final class MT103Tokenizer {
+    private static final Logger logger = LogManager.getLogger(MT103Tokenizer.class);
+
+    // états de la machine de lecture des blocs
+    private static final int OUTSIDE = 0; // entre deux blocs
+    private static final int HEADER = 1;  // après '{', en attente du ':' qui termine le numéro de bloc
+    private static final int BODY = 2;    // contenu du bloc, comptage des accolades
+
+    private static final char[] MANDATORY_BLOCKS = {'1', '2', '4', '5'};
+
+    private MT103Tokenizer() {
+    }
+
+    /**
+     * Découpe un message MT103 brut
+     * @param raw message MT103 en String
+     * @return positions des blocs et des champs
+     */
+    static ParsedMT103 tokenize(String raw) {
+        if (raw == null) {
+            raw = "";
+        }
+
+        int n = raw.length();
+        // blocs fermés : début du numéro, ':' , accolade fermante
+        int[] blocks = new int[3 * 6];
+        int blockCount = 0;
+        // positions des tags ":NN:" / ":NNA:" du dernier bloc 4 fermé, et du bloc 4 en cours
+        int[] tags = new int[16];
+        int tagCount = 0;
+        int block4End = -1;
+        int[] pending = new int[16];
+        int pendingCount = 0;
+
+        // lignes commençant par ':' : début de ligne, second ':' (-1 si absent de la ligne)
+        int[] tagLines = new int[32];
+        int tagLineCount = 0;
+        int lineStart = 0;
+        int pendingTagLine = -1;
+
+        int state = OUTSIDE;
+        int open = 0;
+        int colon = 0;
+        int depth = 0;
+        boolean block4 = false;
+
+        for (int i = 0; i < n; i++) {
+            char c = raw.charAt(i);
+
+            // lignes de tag (utilisées si la structure en blocs est incomplète)
+            if (c == ':') {
+                if (i == lineStart) {
+                    pendingTagLine = i;
+                } else if (pendingTagLine >= 0) {
+                    tagLines = addPair(tagLines, tagLineCount++, pendingTagLine, i == pendingTagLine + 1 ? -1 : i);
+                    pendingTagLine = -1;
+                }
+            } else if (c == '\n') {
+                if (pendingTagLine >= 0) {
+                    tagLines = addPair(tagLines, tagLineCount++, pendingTagLine, -1);
+                    pendingTagLine = -1;
+                }
+                lineStart = i + 1;
+            }
+
+            if (state == OUTSIDE) {
+                if (c == '{') {
+                    open = i;
+                    state = HEADER;
+                }
+            } else if (state == HEADER) {
+                if (c == ':') {
+                    if (i == open + 1) {
+                        // "{:" : pas de numéro de bloc, on reprend la lecture
+                        state = OUTSIDE;
+                    } else {
+                        block4 = i == open + 2 && raw.charAt(open + 1) == '4';
+                        colon = i;
+                        depth = 1;
+                        pendingCount = 0;
+                        state = BODY;
+                    }
+                }
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (--depth == 0) {
+                    if (blockCount * 3 == blocks.length) {
+                        blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                    }
+                    blocks[blockCount * 3] = open + 1;
+                    blocks[blockCount * 3 + 1] = colon;
+                    blocks[blockCount * 3 + 2] = i;
+                    blockCount++;
+                    if (block4) {
+                        int[] swap = tags;
+                        tags = pending;
+                        tagCount = pendingCount;
+                        pending = swap;
+                        block4End = i;
+                    }
+                    state = OUTSIDE;
+                }
+            } else if (c == ':' && block4 && MT103Text.isTagAt(raw, i)) {
+                if (pendingCount == pending.length) {
+                    pending = Arrays.copyOf(pending, pendingCount * 2);
+                }
+                pending[pendingCount++] = i;
+            }
+        }
+        if (pendingTagLine >= 0) {
+            tagLines = addPair(tagLines, tagLineCount++, pendingTagLine, -1);
+        }
+
+        Fields fields = new Fields(raw);
+        int trimStart = MT103Text.skipLeading(raw, 0, n);
+        int trimEnd = MT103Text.skipTrailing(raw, trimStart, n);
+        if (trimEnd == trimStart || raw.charAt(trimStart) != '{' || raw.charAt(trimEnd - 1) != '}') {
+            fields.diagnostic(MT103Diagnostic.Kind.NOT_BRACE_DELIMITED, trimStart,
+                    "Le message MT103 doit commencer par '{' et se terminer par '}'");
+        }
+        boolean complete = true;
+        for (char b : MANDATORY_BLOCKS) {
+            int found = lastBlock(raw, blocks, blockCount, b);
+            if (found < 0 || MT103Text.isBlank(raw, blocks[found + 1] + 1, blocks[found + 2])) {
+                fields.diagnostic(MT103Diagnostic.Kind.MISSING_BLOCK, found < 0 ? -1 : blocks[found],
+                        "Le bloc obligatoire {" + b + ":...} est manquant dans le message MT103");
+                complete = false;
+            }
+        }
+        if (state != OUTSIDE) {
+            fields.diagnostic(MT103Diagnostic.Kind.UNCLOSED_BLOCK, open, "Bloc ouvert à la position " + open + " jamais fermé");
+        }
+
+        if (!complete) {
+            logger.warn("Structure en blocs incomplète, lecture ligne par ligne");
+            tokenizeLines(raw, tagLines, tagLineCount, fields);
+            return fields.build(ParsedMT103.Layout.LINES, blocks, blockCount);
+        }
+
+        int block4Start = blocks[lastBlock(raw, blocks, blockCount, '4') + 1] + 1;
+        tokenizeBlock4(raw, block4Start, block4End, tags, tagCount, fields);
+        return fields.build(ParsedMT103.Layout.BLOCKS, blocks, blockCount);
+    }
+
+    private static int[] addPair(int[] pairs, int count, int first, int second) {
+        if (count * 2 == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[count * 2] = first;
+        pairs[count * 2 + 1] = second;
+        return pairs;
+    }
+
+    /**
+     * Dernière occurrence du bloc {id:...} (c'est elle que retenait l'ancienne map des blocs)
+     */
+    private static int lastBlock(String raw, int[] blocks, int blockCount, char id) {
+        for (int b = (blockCount - 1) * 3; b >= 0; b -= 3) {
+            if (blocks[b + 1] - blocks[b] == 1 && raw.charAt(blocks[b]) == id) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Champs du bloc 4 : chaque ":NN:" / ":NNA:" ouvre un champ qui court jusqu'au tag suivant
+     */
+    private static void tokenizeBlock4(String raw, int start, int end, int[] tags, int tagCount, Fields fields) {
+        int s = MT103Text.skipLeading(raw, start, end);
+        int e = MT103Text.skipTrailing(raw, s, end);
+
+        // le bloc 4 se termine par " -" avant l'accolade fermante
+        if (e - s >= 2 && raw.charAt(e - 1) == '-' && MT103Text.isSpace(raw.charAt(e - 2))) {
+            e -= 2;
+            while (e > s && MT103Text.isSpace(raw.charAt(e - 1))) {
+                e--;
+            }
+        }
+
+        int partStart = s;
+        for (int t = 0; t <= tagCount; t++) {
+            int partEnd = t < tagCount ? tags[t] : e;
+            if (partEnd > partStart) {
+                addBlock4Field(raw, partStart, partEnd, fields);
+            }
+            partStart = partEnd;
+        }
+    }
+
+    private static void addBlock4Field(String raw, int start, int end, Fields fields) {
+        int ps = MT103Text.skipLeading(raw, start, end);
+        int pe = MT103Text.skipTrailing(raw, ps, end);
+        if (ps == pe || raw.charAt(ps) != ':') {
+            return;
+        }
+        int secondColon = raw.indexOf(':', ps + 1);
+        if (secondColon < 0 || secondColon >= pe || secondColon == ps + 1) {
+            return;
+        }
+        String tag = MT103Text.collapse(raw, ps + 1, secondColon);
+        fields.put(tag, MT103Text.skipLeading(raw, secondColon + 1, pe), pe);
+    }
+
+    /**
+     * Lecture ligne par ligne quand la structure en blocs est incomplète :
+     * une ligne ":TAG:" ouvre un champ qui court jusqu'à la ligne de tag suivante
+     */
+    private static void tokenizeLines(String raw, int[] tagLines, int tagLineCount, Fields fields) {
+        String currentTag = null;
+        int valueStart = 0;
+
+        for (int t = 0; t < tagLineCount; t++) {
+            int lineStart = tagLines[t * 2];
+            int secondColon = tagLines[t * 2 + 1];
+            if (secondColon < 0) {
+                // ignorée à la lecture de la valeur
+                int lineEnd = raw.indexOf('\n', lineStart);
+                String line = raw.substring(lineStart, lineEnd < 0 ? raw.length() : lineEnd);
+                logger.warn("Invalid tag format in line: {}", line);
+                fields.diagnostic(MT103Diagnostic.Kind.INVALID_TAG_LINE, lineStart, "Ligne de tag invalide : " + line);
+                continue;
+            }
+            if (currentTag != null) {
+                fields.put(currentTag, valueStart, lineStart - 1);
+            }
+            currentTag = raw.substring(lineStart + 1, secondColon);
+            valueStart = secondColon + 1;
+        }
+
+        if (currentTag != null) {
+            fields.put(currentTag, valueStart, raw.length());
+        }
+    }
+
+    /**
+     * Accumulateur des champs : un tag répété remplace la valeur précédente
+     */
+    private static final class Fields {
+        private final String raw;
+        private String[] tags = new String[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+        private List<MT103Diagnostic> diagnostics;
+
+        Fields(String raw) {
+            this.raw = raw;
+        }
+
+        void diagnostic(MT103Diagnostic.Kind kind, int offset, String message) {
+            if (diagnostics == null) {
+                diagnostics = new ArrayList<>(4);
+            }
+            diagnostics.add(new MT103Diagnostic(kind, offset, message));
+        }
+
+        void put(String tag, int start, int end) {
+            int f = 0;
+            while (f < count && !tags[f].equals(tag)) {
+                f++;
+            }
+            if (f == count) {
+                if (count == tags.length) {
+                    tags = Arrays.copyOf(tags, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                tags[count++] = tag;
+            } else {
+                diagnostic(MT103Diagnostic.Kind.DUPLICATE_TAG, start, "Tag :" + tag + ": répété, dernière valeur conservée");
+            }
+            starts[f] = start;
+            ends[f] = end;
+            logger.trace("Champ repéré - Tag: {}, positions: {}-{}", tag, start, end);
+        }
+
+        ParsedMT103 build(ParsedMT103.Layout layout, int[] blocks, int blockCount) {
+            return new ParsedMT103(raw, layout, blocks, blockCount, tags, starts, ends, count,
+                    diagnostics == null ? List.of() : diagnostics);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.CompressedText;
+import org.bson.types.Binary;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+
+/**
+ * Conversions Mongo propres à l'application : contenus de l'historique compressés (CompressedText) en binaire.
+ * Les entrées écrites avant la compression (chaînes) restent lisibles telles quelles.
+ */
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                new CompressedTextWriter(), new BinaryReader(), new BytesReader(), new LegacyStringReader()));
+    }
+
+    @WritingConverter
+    static class CompressedTextWriter implements Converter<CompressedText, Binary> {
+        @Override
+        public Binary convert(CompressedText source) {
+            return new Binary(source.bytes());
+        }
+    }
+
+    @ReadingConverter
+    static class BinaryReader implements Converter<Binary, CompressedText> {
+        @Override
+        public CompressedText convert(Binary source) {
+            return CompressedText.fromBytes(source.getData());
+        }
+    }
+
+    @ReadingConverter
+    static class BytesReader implements Converter<byte[], CompressedText> {
+        @Override
+        public CompressedText convert(byte[] source) {
+            return CompressedText.fromBytes(source);
+        }
+    }
+
+    @ReadingConverter
+    static class LegacyStringReader implements Converter<String, CompressedText> {
+        @Override
+        public CompressedText convert(String source) {
+            return CompressedText.of(source);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.attijari.MT103converter.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Affichage du XML pacs.008 généré dans les logs, pour le débogage,
+ * limité à un message sur N (pacs008.debug.sample-every, 0 = désactivé)
+ */
+@Component
+public class Pacs008DebugSink {
+    private static final Logger logger = LogManager.getLogger(Pacs008DebugSink.class);
+
+    @Value("${pacs008.debug.sample-every:0}")
+    private int sampleEvery;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Le prochain document doit-il être affiché ? (à appeler une fois par document)
+     */
+    public boolean sample() {
+        return sampleEvery > 0 && counter.getAndIncrement() % sampleEvery == 0;
+    }
+
+    public void accept(CharSequence xml) {
+        logger.info("---- XML GENERATED ----\n{}\n-----------------------", xml);
+    }
+}
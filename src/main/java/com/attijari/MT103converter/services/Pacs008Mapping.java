@@ -0,0 +1,244 @@
+package com.attijari.MT103converter.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ Pacs008Mapping.java : correspondance MT103 <-> pacs.008 décrite une seule fois, pour les deux sens de conversion
+ - Field : tag MT, chemin ISO 20022 depuis CdtTrfTxInf et longueurs maximales de chaque côté
+ - CodeList : listes de codes (23B <-> SvcLvl/Cd, 71A <-> ChrgBr) avec leurs valeurs par défaut
+ - montant, devise et date du champ 32A
+ Les tables sont compilées au chargement de la classe (index par chemin, tables de codes dans les deux sens) :
+ rien n'est réinterprété message par message.
+ L'ordre des éléments du pacs.008 reste celui du Transformer, imposé par les séquences du schéma XSD.
+ **/
+public final class Pacs008Mapping {
+
+    /**
+     * Champ de transaction mis en correspondance.
+     * Longueurs : ligne MT103 (conversion inverse) et pacs.008 (conversion directe), 0 = pas de troncature
+     * (valeur construite : code, montant, date)
+     */
+    public enum Field {
+        INSTR_ID("20", "PmtId/InstrId", 16, 0),
+        END_TO_END_ID("20", "PmtId/EndToEndId", 16, 0),
+        SERVICE_LEVEL("23B", "PmtTpInf/SvcLvl/Cd", 0, 0),
+        AMOUNT("32A", "IntrBkSttlmAmt", 0, 0),
+        CURRENCY("32A", "IntrBkSttlmAmt", "Ccy", 0, 0),
+        SETTLEMENT_DATE("32A", "IntrBkSttlmDt", 0, 0),
+        CHARGE_BEARER("71A", "ChrgBr", 0, 0),
+        DEBTOR_NAME("50K", "Dbtr/Nm", 35, 0),
+        DEBTOR_ADDRESS("50K", "Dbtr/PstlAdr/AdrLine", 35, 35, true),
+        DEBTOR_ACCOUNT("50K", "DbtrAcct/Id/Othr/Id", 34, 0),
+        CREDITOR_NAME("59", "Cdtr/Nm", 35, 0),
+        CREDITOR_ADDRESS("59", "Cdtr/PstlAdr/AdrLine", 35, 35, true),
+        CREDITOR_ACCOUNT("59", "CdtrAcct/Id/Othr/Id", 34, 0),
+        REMITTANCE("70", "RmtInf/Ustrd", 140, 0);
+
+        private final String tag;
+        private final String path;
+        private final String attribute;
+        private final int mtLength;
+        private final int isoLength;
+        private final boolean repeated;
+        private final String element;
+
+        Field(String tag, String path, int mtLength, int isoLength) {
+            this(tag, path, null, mtLength, isoLength, false);
+        }
+
+        Field(String tag, String path, String attribute, int mtLength, int isoLength) {
+            this(tag, path, attribute, mtLength, isoLength, false);
+        }
+
+        Field(String tag, String path, int mtLength, int isoLength, boolean repeated) {
+            this(tag, path, null, mtLength, isoLength, repeated);
+        }
+
+        Field(String tag, String path, String attribute, int mtLength, int isoLength, boolean repeated) {
+            this.tag = tag;
+            this.path = path;
+            this.attribute = attribute;
+            this.mtLength = mtLength;
+            this.isoLength = isoLength;
+            this.repeated = repeated;
+            this.element = path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        /** tag MT103 d'origine */
+        public String getTag() { return tag; }
+        /** chemin depuis CdtTrfTxInf */
+        public String getPath() { return path; }
+        /** attribut porteur de la valeur (null : texte de l'élément) */
+        public String getAttribute() { return attribute; }
+        /** nom de l'élément feuille (dernier segment du chemin) */
+        public String getElement() { return element; }
+        /** plusieurs occurrences (lignes d'adresse) */
+        public boolean isRepeated() { return repeated; }
+
+        /**
+         * Valeur tronquée à la longueur d'une ligne MT103 (sans retour chariot ni espaces de bord)
+         */
+        public String toMt(String value) {
+            if (value == null) return "";
+            String cleaned = value.replace("\r", "").trim();
+            return mtLength == 0 ? cleaned : truncate(cleaned, mtLength);
+        }
+
+        /**
+         * Valeur tronquée à la longueur maximale retenue côté pacs.008 (0 : pas de limite)
+         */
+        public String toIso(String value) {
+            return isoLength == 0 ? value : truncate(value, isoLength);
+        }
+
+        public boolean exceedsIso(String value) {
+            return isoLength > 0 && value != null && value.length() > isoLength;
+        }
+    }
+
+    /**
+     * Liste de codes MT103 <-> ISO 20022, avec valeur par défaut dans chaque sens
+     */
+    public static final class CodeList {
+        private final Map<String, String> toIso = new HashMap<>();
+        private final Map<String, String> toMt = new HashMap<>();
+        private final String defaultIso;
+        private final String defaultMt;
+
+        private CodeList(String defaultMt, String defaultIso, String... mtIsoPairs) {
+            this.defaultMt = defaultMt;
+            this.defaultIso = defaultIso;
+            for (int i = 0; i < mtIsoPairs.length; i += 2) {
+                toIso.put(mtIsoPairs[i], mtIsoPairs[i + 1]);
+                toMt.put(mtIsoPairs[i + 1], mtIsoPairs[i]);
+            }
+        }
+
+        public String toIso(String mtCode) {
+            if (mtCode == null || mtCode.isEmpty()) return defaultIso;
+            return toIso.getOrDefault(mtCode.toUpperCase(Locale.ROOT), defaultIso);
+        }
+
+        public String toMt(String isoCode) {
+            if (isoCode == null) return defaultMt;
+            return toMt.getOrDefault(isoCode.toUpperCase(Locale.ROOT), defaultMt);
+        }
+    }
+
+    /** 23B <-> PmtTpInf/SvcLvl/Cd */
+    public static final CodeList SERVICE_LEVEL = new CodeList("CRED", "NORM",
+            "CRED", "NORM",
+            "CRTS", "NURG");
+
+    /** 71A <-> ChrgBr */
+    public static final CodeList CHARGE_BEARER = new CodeList("SHA", "SHAR",
+            "OUR", "DEBT",
+            "BEN", "CRED",
+            "SHA", "SHAR");
+
+    private static final Map<String, Field> BY_PATH = new HashMap<>();
+    private static final Map<String, Field> BY_ATTRIBUTE_PATH = new HashMap<>();
+
+    static {
+        for (Field field : Field.values()) {
+            if (field.attribute != null) {
+                BY_ATTRIBUTE_PATH.put(field.path, field);
+            } else {
+                // même chemin pour deux champs : le premier déclaré l'emporte
+                BY_PATH.putIfAbsent(field.path, field);
+            }
+        }
+    }
+
+    private static final DateTimeFormatter MT_DATE = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private Pacs008Mapping() {
+    }
+
+    /**
+     * Champ lu dans le texte de l'élément au chemin donné (depuis CdtTrfTxInf), null si non mis en correspondance
+     */
+    public static Field field(String path) {
+        return BY_PATH.get(path);
+    }
+
+    /**
+     * Champ lu dans un attribut de l'élément au chemin donné, null si aucun
+     */
+    public static Field attributeField(String path) {
+        return BY_ATTRIBUTE_PATH.get(path);
+    }
+
+    // ================= 32A : date (YYMMDD), devise, montant =================
+
+    /**
+     * Montant du 32A au format ISO (point décimal, deux décimales), 0.00 si illisible
+     */
+    public static String amountToIso(String field32A) {
+        if (field32A == null || field32A.isEmpty()) return "0.00";
+        String raw = field32A.length() > 9 ? field32A.substring(9) : "0.00";
+        raw = raw.replace(",", ".");
+        try {
+            BigDecimal amount = new BigDecimal(raw);
+            return amount.setScale(2, RoundingMode.HALF_UP).toPlainString(); //forcer un décimal valide
+        } catch (NumberFormatException e) {
+            return "0.00";
+        }
+    }
+
+    public static String currencyToIso(String field32A) {
+        if (field32A == null || field32A.isEmpty()) return "EUR";
+        // Format 32A: YYMMDDCURRENCYAMOUNT
+        return field32A.length() > 9 ? field32A.substring(6, 9) : "EUR";
+    }
+
+    /**
+     * Montant ISO au format MT (virgule décimale), 0,00 si absent
+     */
+    public static String amountToMt(String amount) {
+        if (amount == null || amount.isBlank()) return "0,00";
+        return amount.replace('.', ',');
+    }
+
+    public static String currencyToMt(String currency) {
+        return currency == null || currency.isBlank() ? "EUR" : currency.trim();
+    }
+
+    /**
+     * Date ISO (yyyy-MM-dd ou yyyy-MM-ddTHH:mm:ss...) au format YYMMDD, 000000 si illisible
+     */
+    public static String dateToMt(String isoDate) {
+        try {
+            if (isoDate != null && !isoDate.isBlank()) {
+                String datePart = isoDate.contains("T") ? isoDate.substring(0, isoDate.indexOf('T')) : isoDate;
+                return LocalDate.parse(datePart).format(MT_DATE);
+            }
+        } catch (Exception ignored) {
+        }
+        return "000000";
+    }
+
+    /**
+     * Champ 32A reconstitué : date, devise, montant
+     */
+    public static String to32A(String isoDate, String currency, String amount) {
+        return dateToMt(isoDate) + currencyToMt(currency) + amountToMt(amount);
+    }
+
+    /**
+     * Champ 33B reconstitué : devise, montant
+     */
+    public static String to33B(String currency, String amount) {
+        return currencyToMt(currency) + amountToMt(amount);
+    }
+
+    private static String truncate(String value, int max) {
+        return value.length() > max ? value.substring(0, max) : value;
+    }
+}
@@ -0,0 +1,235 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.Pacs008Transaction;
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ Pacs008Reader.java : lecture StAX d'un document pacs.008, en une seule passe et sans arbre DOM.
+ Les champs utiles à la conversion inverse sont relevés au fil des éléments, d'après leur chemin
+ depuis CdtTrfTxInf (ex. Dbtr/PstlAdr/AdrLine) recherché dans la table de Pacs008Mapping : seules les lignes d'adresse de la partie concernée
+ sont retenues, et un élément n'est jamais cherché ailleurs dans le document.
+ Pour un même chemin, la première valeur rencontrée est conservée.
+ Chaque transaction est remise dès la fin de son CdtTrfTxInf : un document de lot est lu avec
+ une seule transaction en mémoire, quel que soit le nombre de transactions.
+ Les événements lus peuvent aussi être transmis en SAX à un ContentHandler (ValidatorHandler du schéma) :
+ validation XSD et extraction des champs se font alors sur la même lecture.
+ **/
+public final class Pacs008Reader {
+
+    static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08";
+
+    private static final String GROUP_CREATION_DATE = "FIToFICstmrCdtTrf/GrpHdr/CreDtTm";
+
+    // fabrique configurée une fois puis partagée : ni DTD ni entité externe
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private Pacs008Reader() {
+    }
+
+    /**
+     * Transactions du document, dans l'ordre
+     * @param xml document pacs.008
+     * @return une entrée par CdtTrfTxInf (liste vide s'il n'y en a aucune)
+     */
+    public static List<Pacs008Transaction> read(String xml) throws XMLStreamException {
+        return read(new StringReader(xml));
+    }
+
+    public static List<Pacs008Transaction> read(Reader source) throws XMLStreamException {
+        List<Pacs008Transaction> transactions = new ArrayList<>(1);
+        read(source, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Lecture au fil de l'eau : chaque transaction est passée au consumer dès qu'elle est complète
+     * (les transactions déjà remises le restent si le document s'avère mal formé plus loin)
+     * @return nombre de transactions lues
+     */
+    public static int read(Reader source, Consumer<Pacs008Transaction> consumer) throws XMLStreamException {
+        return read(source, consumer, null);
+    }
+
+    /**
+     * Lecture au fil de l'eau dont chaque événement est aussi envoyé au ContentHandler (null : pas d'envoi)
+     */
+    static int read(Reader source, Consumer<Pacs008Transaction> consumer, ContentHandler events) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(source);
+        try {
+            return read(reader, consumer, events == null ? null : new SaxBridge(reader, events));
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int read(XMLStreamReader reader, Consumer<Pacs008Transaction> consumer, SaxBridge events)
+            throws XMLStreamException {
+        int count = 0;
+        if (events != null) {
+            events.startDocument();
+        }
+        // chemin de l'élément courant depuis la racine (exclue), ex. FIToFICstmrCdtTrf/CdtTrfTxInf/PmtId
+        StringBuilder path = new StringBuilder(128);
+        int[] pathLengths = new int[32];
+        int depth = 0;
+        StringBuilder text = new StringBuilder(64);
+
+        String creationDateTime = null;
+        Pacs008Transaction current = null;
+        // longueur du chemin jusqu'à CdtTrfTxInf inclus, -1 hors transaction
+        int transactionPath = -1;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (events != null) {
+                events.forward(event);
+            }
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    if (depth == pathLengths.length) {
+                        pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+                    }
+                    pathLengths[depth++] = path.length();
+                    if (depth > 1) {
+                        if (path.length() > 0) {
+                            path.append('/');
+                        }
+                        path.append(reader.getLocalName());
+                    }
+                    text.setLength(0);
+
+                    if (transactionPath < 0 && "CdtTrfTxInf".equals(reader.getLocalName())
+                            && NAMESPACE.equals(reader.getNamespaceURI())) {
+                        current = new Pacs008Transaction();
+                        current.setCreationDateTime(creationDateTime);
+                        transactionPath = path.length();
+                    } else if (transactionPath >= 0 && reader.getAttributeCount() > 0) {
+                        Field field = Pacs008Mapping.attributeField(path.substring(transactionPath + 1));
+                        if (field != null) {
+                            current.add(field, reader.getAttributeValue(null, field.getAttribute()));
+                        }
+                    }
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.END_ELEMENT: {
+                    if (transactionPath >= 0 && path.length() > transactionPath) {
+                        Field field = Pacs008Mapping.field(path.substring(transactionPath + 1));
+                        if (field != null) {
+                            current.add(field, text.toString());
+                        }
+                    } else if (transactionPath >= 0 && path.length() == transactionPath) {
+                        count++;
+                        consumer.accept(current);
+                        transactionPath = -1;
+                        current = null;
+                    } else if (creationDateTime == null && GROUP_CREATION_DATE.contentEquals(path)) {
+                        // GrpHdr précède les transactions dans le schéma
+                        creationDateTime = text.toString();
+                    }
+                    path.setLength(pathLengths[--depth]);
+                    text.setLength(0);
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Traduction des événements StAX en appels SAX (espaces de noms, attributs, texte)
+     */
+    private static final class SaxBridge {
+        private final XMLStreamReader reader;
+        private final ContentHandler handler;
+        private final AttributesImpl attributes = new AttributesImpl();
+
+        SaxBridge(XMLStreamReader reader, ContentHandler handler) {
+            this.reader = reader;
+            this.handler = handler;
+        }
+
+        void startDocument() throws XMLStreamException {
+            try {
+                handler.startDocument();
+            } catch (SAXException e) {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        void forward(int event) throws XMLStreamException {
+            try {
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                            handler.startPrefixMapping(nonNull(reader.getNamespacePrefix(i)), nonNull(reader.getNamespaceURI(i)));
+                        }
+                        attributes.clear();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String local = reader.getAttributeLocalName(i);
+                            attributes.addAttribute(nonNull(reader.getAttributeNamespace(i)), local,
+                                    qName(reader.getAttributePrefix(i), local), "CDATA", reader.getAttributeValue(i));
+                        }
+                        handler.startElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                                qName(reader.getPrefix(), reader.getLocalName()), attributes);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        handler.endElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                                qName(reader.getPrefix(), reader.getLocalName()));
+                        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                            handler.endPrefixMapping(nonNull(reader.getNamespacePrefix(i)));
+                        }
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        handler.endDocument();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (SAXException e) {
+                throw new XMLStreamException(e);
+            }
+        }
+
+        private static String nonNull(String s) {
+            return s == null ? "" : s;
+        }
+
+        private static String qName(String prefix, String local) {
+            return prefix == null || prefix.isEmpty() ? local : prefix + ":" + local;
+        }
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
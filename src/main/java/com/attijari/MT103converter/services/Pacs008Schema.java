@@ -0,0 +1,92 @@
+package com.attijari.MT103converter.services;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+
+/**
+ Pacs008Schema.java : schéma XSD pacs.008 compilé une seule fois (lu dans le classpath, fonctionne aussi depuis le jar)
+ Le Schema compilé est partagé entre threads ; un javax.xml.validation.Validator et un ValidatorHandler
+ (non thread-safe) sont gardés par thread.
+ **/
+final class Pacs008Schema {
+
+    static final String RESOURCE = "/schemas/pacs.008.001.08.xsd";
+
+    private static final ThreadLocal<javax.xml.validation.Validator> VALIDATORS =
+            ThreadLocal.withInitial(Pacs008Schema::newValidator);
+    private static final ThreadLocal<ValidatorHandler> HANDLERS =
+            ThreadLocal.withInitial(() -> schema().newValidatorHandler());
+
+    private Pacs008Schema() {
+    }
+
+    /**
+     * Chargé au premier appel (classe holder), une seule fois pour toute l'application
+     */
+    private static final class Holder {
+        private static final Schema SCHEMA = load();
+    }
+
+    static Schema schema() {
+        return Holder.SCHEMA;
+    }
+
+    /**
+     * Validator du thread courant. Pas de reset() : chaque validate() repart d'un état neuf,
+     * et reset() efface les propriétés d'accès externe (NullPointerException au validate suivant sur le JDK)
+     */
+    static javax.xml.validation.Validator validator() {
+        return VALIDATORS.get();
+    }
+
+    /**
+     * ValidatorHandler du thread courant, alimenté en événements SAX (validation pendant l'écriture).
+     * Chaque startDocument repart d'un état neuf ; pas de DTD ni de schéma externe puisque rien n'est lu.
+     */
+    static ValidatorHandler validatorHandler() {
+        return HANDLERS.get();
+    }
+
+    /**
+     * Abandonne le ValidatorHandler du thread (document interrompu en cours de validation)
+     */
+    static void discardValidatorHandler() {
+        HANDLERS.remove();
+    }
+
+    private static javax.xml.validation.Validator newValidator() {
+        javax.xml.validation.Validator validator = schema().newValidator();
+        try {
+            // pas de DTD ni de schéma externe chargés depuis le document validé
+            validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            validator.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        } catch (SAXException e) {
+            throw new IllegalStateException("Propriétés du validateur XSD non supportées", e);
+        }
+        return validator;
+    }
+
+    private static Schema load() {
+        URL url = Pacs008Schema.class.getResource(RESOURCE);
+        if (url == null) {
+            throw new IllegalStateException("Schéma XSD introuvable dans le classpath : " + RESOURCE);
+        }
+        try (InputStream in = url.openStream()) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            return factory.newSchema(new StreamSource(in, url.toExternalForm()));
+        } catch (SAXException e) {
+            throw new IllegalStateException("Schéma XSD invalide : " + RESOURCE, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.attijari.MT103converter.services;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXParseException;
+
+/**
+ Pacs008SchemaErrors.java : ErrorHandler d'un ValidatorHandler alimenté au fil d'une écriture ou d'une lecture.
+ Garde la première erreur XSD et laisse le traitement aller jusqu'au bout
+ (même résultat que Validator.validatePacs008, qui s'arrête à la première erreur).
+ **/
+final class Pacs008SchemaErrors implements ErrorHandler {
+    private SAXParseException first;
+
+    @Override
+    public void warning(SAXParseException exception) {
+    }
+
+    @Override
+    public void error(SAXParseException exception) {
+        if (first == null) {
+            first = exception;
+        }
+    }
+
+    @Override
+    public void fatalError(SAXParseException exception) {
+        error(exception);
+    }
+
+    /**
+     * Message technique de la première erreur, null si le document est valide
+     */
+    String getMessage() {
+        return first == null ? null : first.getMessage();
+    }
+}
@@ -0,0 +1,317 @@
+package com.attijari.MT103converter.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ Pacs008Writer.java : écriture au fil de l'eau d'un document pacs.008 indenté
+ - vers un tampon réutilisé par thread (XML rendu en String en une seule copie)
+ - ou directement vers un Writer / OutputStream (UTF-8), par exemple la réponse HTTP
+ Tous les textes et attributs sont échappés en une seule lecture.
+ Les mêmes éléments peuvent être envoyés en événements SAX à un ContentHandler (ValidatorHandler du schéma) :
+ le document est alors validé pendant son écriture, sans être relu depuis le texte.
+ **/
+public final class Pacs008Writer {
+
+    private static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08";
+
+    // au-delà, le tampon n'est pas gardé pour le thread (document anormalement gros)
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+
+    private static final AttributesImpl NO_ATTRIBUTES = new AttributesImpl();
+
+    private final StringBuilder buffer;
+    private final Writer writer;
+    private int depth;
+
+    // validation au fil de l'écriture (null si désactivée)
+    private ContentHandler events;
+    private AttributesImpl attributes;
+    private char[] chars;
+    // temps passé dans le ContentHandler (validation inline), distinct du temps d'écriture
+    private long eventNanos;
+
+    public Pacs008Writer(StringBuilder buffer) {
+        this.buffer = buffer;
+        this.writer = null;
+    }
+
+    public Pacs008Writer(Writer writer) {
+        this.buffer = null;
+        this.writer = writer;
+    }
+
+    /**
+     * Écriture UTF-8 vers un flux d'octets (flush en fin de document, le flux n'est pas fermé)
+     */
+    public Pacs008Writer(OutputStream out) {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192));
+    }
+
+    /**
+     * Tampon du thread courant, vidé ; à rendre par releaseBuffer une fois le XML copié
+     */
+    public static StringBuilder borrowBuffer() {
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    public static void releaseBuffer(StringBuilder buffer) {
+        if (buffer.capacity() > MAX_POOLED_CAPACITY) {
+            BUFFERS.remove();
+        } else {
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Envoie aussi chaque élément écrit au ContentHandler (à appeler avant startDocument)
+     */
+    public void setEventHandler(ContentHandler events) {
+        this.events = events;
+        this.attributes = new AttributesImpl();
+        this.chars = new char[64];
+    }
+
+    public void startDocument() {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document xmlns=\"");
+        write(NAMESPACE);
+        write("\">\n");
+        depth = 1;
+        if (events != null) {
+            long start = System.nanoTime();
+            try {
+                events.startDocument();
+                events.startPrefixMapping("", NAMESPACE);
+                events.startElement(NAMESPACE, "Document", "Document", NO_ATTRIBUTES);
+            } catch (SAXException e) {
+                throw new IllegalStateException(e);
+            }
+            eventNanos += System.nanoTime() - start;
+        }
+    }
+
+    public void endDocument() {
+        depth = 0;
+        write("</Document>");
+        flush();
+        if (events != null) {
+            long start = System.nanoTime();
+            try {
+                events.endElement(NAMESPACE, "Document", "Document");
+                events.endPrefixMapping("");
+                events.endDocument();
+            } catch (SAXException e) {
+                throw new IllegalStateException(e);
+            }
+            eventNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Ouvre un élément qui contient d'autres éléments
+     */
+    public void start(String name) {
+        indent();
+        write("<");
+        write(name);
+        write(">\n");
+        depth++;
+        if (events != null) {
+            long start = System.nanoTime();
+            startEvent(name, NO_ATTRIBUTES);
+            eventNanos += System.nanoTime() - start;
+        }
+    }
+
+    public void end(String name) {
+        if (events != null) {
+            long start = System.nanoTime();
+            endEvent(name);
+            eventNanos += System.nanoTime() - start;
+        }
+        depth--;
+        indent();
+        write("</");
+        write(name);
+        write(">\n");
+    }
+
+    /**
+     * Élément texte sur une ligne : <name>texte</name>
+     */
+    public void element(String name, String text) {
+        indent();
+        write("<");
+        write(name);
+        write(">");
+        escape(text);
+        write("</");
+        write(name);
+        write(">\n");
+        if (events != null) {
+            long start = System.nanoTime();
+            startEvent(name, NO_ATTRIBUTES);
+            textEvent(text);
+            endEvent(name);
+            eventNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Élément texte avec un attribut : <name attribute="valeur">texte</name>
+     */
+    public void element(String name, String attribute, String attributeValue, String text) {
+        indent();
+        write("<");
+        write(name);
+        write(" ");
+        write(attribute);
+        write("=\"");
+        escape(attributeValue);
+        write("\">");
+        escape(text);
+        write("</");
+        write(name);
+        write(">\n");
+        if (events != null) {
+            long start = System.nanoTime();
+            attributes.clear();
+            attributes.addAttribute("", attribute, attribute, "CDATA", attributeValue);
+            startEvent(name, attributes);
+            textEvent(text);
+            endEvent(name);
+            eventNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Temps cumulé dans le ContentHandler depuis la création du writer (0 sans setEventHandler)
+     */
+    public long getEventNanos() {
+        return eventNanos;
+    }
+
+    /**
+     * Recopie tel quel un document déjà rendu
+     */
+    public void copy(CharSequence xml) {
+        if (buffer != null) {
+            buffer.append(xml);
+        } else {
+            try {
+                writer.append(xml);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        flush();
+    }
+
+    public void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void startEvent(String name, AttributesImpl elementAttributes) {
+        if (events != null) {
+            try {
+                events.startElement(NAMESPACE, name, name, elementAttributes);
+            } catch (SAXException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void endEvent(String name) {
+        if (events != null) {
+            try {
+                events.endElement(NAMESPACE, name, name);
+            } catch (SAXException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void textEvent(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        if (chars.length < text.length()) {
+            chars = new char[Math.max(text.length(), chars.length * 2)];
+        }
+        text.getChars(0, text.length(), chars, 0);
+        try {
+            events.characters(chars, 0, text.length());
+        } catch (SAXException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void indent() {
+        for (int i = 0; i < depth; i++) {
+            write("  ");
+        }
+    }
+
+    /**
+     * Recopie le texte par tronçons, seuls les caractères & < > " ' sont remplacés
+     */
+    private void escape(String text) {
+        if (text == null) {
+            return;
+        }
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (text.charAt(i)) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = "&quot;"; break;
+                case '\'': entity = "&apos;"; break;
+                default: continue;
+            }
+            write(text, start, i);
+            write(entity);
+            start = i + 1;
+        }
+        write(text, start, length);
+    }
+
+    private void write(String s) {
+        write(s, 0, s.length());
+    }
+
+    private void write(String s, int start, int end) {
+        if (start == end) {
+            return;
+        }
+        if (buffer != null) {
+            buffer.append(s, start, end);
+            return;
+        }
+        try {
+            writer.write(s, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
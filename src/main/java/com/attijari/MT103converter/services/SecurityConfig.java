@@ -21,17 +21,19 @@ public class SecurityConfig {
                         "/login","/login.html","/css/**","/js/**","/images/**","/static/**","/*.png","/*.css","/*.js","/error"
                     ).permitAll()
                     .requestMatchers("/public/**").permitAll()
+                    // sondes et collecte Prometheus (réseau interne), sans session Keycloak
+                    .requestMatchers("/actuator/health","/actuator/prometheus").permitAll()
                     .requestMatchers("/admin/**").hasRole("ADMIN")
                     .requestMatchers("/user/**").hasRole("USER")
                     .requestMatchers(
                         "/","/index.html","/dashboard","/historique","/conversion","/conversion-inverse",
-                        "/api/**","/convert","/convert-reverse","/download/**"
+                        "/api/**","/convert","/convert-reverse","/convert/batch","/convert-reverse/batch","/jobs/**","/download/**"
                     ).authenticated()
                     .anyRequest().authenticated()
                 )
                 .csrf(csrf -> csrf
                     .ignoringRequestMatchers(
-                        "/api/**","/convert","/convert-reverse","/download/**"
+                        "/api/**","/convert","/convert-reverse","/convert/batch","/convert-reverse/batch","/jobs/**","/download/**"
                     )
                 )
                 .oauth2Login(oauth2 -> oauth2
@@ -2,17 +2,24 @@ package com.attijari.MT103converter.services;
 
 import com.attijari.MT103converter.models.MT103Msg;
 import com.attijari.MT103converter.models.Pacs008Msg;
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.xml.validation.ValidatorHandler;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.apache.tomcat.util.http.FastHttpDateFormat.getCurrentDate;
@@ -24,6 +31,20 @@ import static org.apache.tomcat.util.http.FastHttpDateFormat.getCurrentDate;
 public class Transformer {
     private static final Logger logger = LogManager.getLogger(Transformer.class);
 
+    @Autowired
+    private Pacs008DebugSink debugSink;
+
+    // nombre maximal de transactions par document pacs.008 en traitement par lot
+    @Value("${pacs008.batch.max-transactions:1000}")
+    private int maxBatchSize = 1000;
+
+    // inline : document validé contre le XSD pendant son écriture ; after : validé ensuite par Validator.validatePacs008
+    @Value("${pacs008.validation.mode:inline}")
+    private String validationMode = VALIDATION_INLINE;
+
+    public static final String VALIDATION_INLINE = "inline";
+    public static final String VALIDATION_AFTER = "after";
+
     /**
      * Transforme MT103Msg en Pacs008Msg.
      *
@@ -36,180 +57,291 @@ public class Transformer {
             logger.error("MT103Msg is null, cannot transform");
             return null;
         }
-        String xml = generatePacs008Xml(mt103);
-        logger.info("Transformation complete. XML length: {}", xml.length());
-        return new Pacs008Msg(xml);
+        // un message seul est un lot d'une transaction
+        return render(List.of(mt103));
+    }
+
+    /**
+     * Transforme MT103Msg et écrit le pacs.008 directement dans le flux (UTF-8), sans String intermédiaire.
+     * Le flux n'est pas fermé.
+     */
+    public void transform(MT103Msg mt103, OutputStream out) {
+        transform(mt103, new Pacs008Writer(out));
+    }
+
+    public void transform(MT103Msg mt103, Writer out) {
+        transform(mt103, new Pacs008Writer(out));
+    }
+
+    private void transform(MT103Msg mt103, Pacs008Writer writer) {
+        if (mt103 == null) {
+            logger.error("MT103Msg is null, cannot transform");
+            return;
+        }
+        write(List.of(mt103), writer);
+    }
+
+    /**
+     * Transforme un lot de MT103 en documents pacs.008 regroupant chacun jusqu'à
+     * pacs008.batch.max-transactions transactions (un GrpHdr commun avec NbOfTxs et CtrlSum)
+     *
+     * @param messages messages MT103 déjà validés
+     * @return un document par groupe, dans l'ordre des messages
+     */
+    public List<Pacs008Msg> transformBatch(List<MT103Msg> messages) {
+        checkBatch(messages);
+        List<Pacs008Msg> documents = new ArrayList<>(messages.size() / maxBatchSize + 1);
+        for (int from = 0; from < messages.size(); from += maxBatchSize) {
+            documents.add(render(messages.subList(from, Math.min(messages.size(), from + maxBatchSize))));
+        }
+        logger.info("Batch transformation complete. {} messages, {} documents", messages.size(), documents.size());
+        return documents;
+    }
+
+    /**
+     * Écrit un groupe de MT103 sous forme d'un seul document pacs.008 directement dans le flux (UTF-8).
+     * Le groupe ne doit pas dépasser pacs008.batch.max-transactions. Le flux n'est pas fermé.
+     */
+    public void transformBatch(List<MT103Msg> group, OutputStream out) {
+        checkBatch(group);
+        if (group.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Groupe de " + group.size() + " transactions, maximum " + maxBatchSize);
+        }
+        write(group, new Pacs008Writer(out));
     }
 
-    private String generatePacs008Xml(MT103Msg mt103) {
-        logger.trace("Generating PACS.008 XML from MT103Msg");
-        StringBuilder xml = new StringBuilder();
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public String getValidationMode() {
+        return validationMode;
+    }
 
-        // En-tête XML
-        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        xml.append("<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08\">\n");
-        xml.append("  <FIToFICstmrCdtTrf>\n");
+    private void checkBatch(List<MT103Msg> messages) {
+        if (messages == null || messages.isEmpty()) {
+            throw new IllegalArgumentException("Le lot de messages MT103 est vide");
+        }
+        for (MT103Msg message : messages) {
+            if (message == null) {
+                throw new IllegalArgumentException("Le lot contient un message MT103 null");
+            }
+        }
+    }
+
+    /**
+     * Rendu dans le tampon du thread, une seule copie vers la String finale.
+     * En mode inline, un document d'une transaction est validé contre le XSD pendant l'écriture
+     * (le XSD HVPS+ n'accepte qu'une transaction : les documents de lot sont laissés à la validation ultérieure).
+     */
+    private Pacs008Msg render(List<MT103Msg> group) {
+        boolean inline = VALIDATION_INLINE.equals(validationMode) && group.size() == 1;
+        StringBuilder buffer = Pacs008Writer.borrowBuffer();
+        try {
+            Pacs008Writer writer = new Pacs008Writer(buffer);
+            Pacs008SchemaErrors schemaErrors = null;
+            if (inline) {
+                ValidatorHandler handler = Pacs008Schema.validatorHandler();
+                schemaErrors = new Pacs008SchemaErrors();
+                handler.setErrorHandler(schemaErrors);
+                writer.setEventHandler(handler);
+            }
+            try {
+                writePacs008(group, writer);
+            } catch (IllegalStateException e) {
+                if (inline) {
+                    // validateur laissé au milieu d'un document : il n'est pas réutilisé
+                    Pacs008Schema.discardValidatorHandler();
+                }
+                throw e;
+            }
+            if (debugSink != null && debugSink.sample()) {
+                debugSink.accept(buffer);
+            }
+            String xml = buffer.toString();
+            logger.info("Transformation complete. Transactions: {}, XML length: {}", group.size(), xml.length());
+            Pacs008Msg pacs = new Pacs008Msg(xml);
+            if (inline) {
+                pacs.setSchemaValidated(true);
+                pacs.setSchemaError(schemaErrors.getMessage());
+                pacs.setSchemaValidationNanos(writer.getEventNanos());
+            }
+            return pacs;
+        } finally {
+            Pacs008Writer.releaseBuffer(buffer);
+        }
+    }
+
+    private void write(List<MT103Msg> group, Pacs008Writer writer) {
+        if (debugSink != null && debugSink.sample()) {
+            // document échantillonné : rendu en mémoire pour l'afficher, puis recopié dans le flux
+            StringBuilder buffer = Pacs008Writer.borrowBuffer();
+            try {
+                writePacs008(group, new Pacs008Writer(buffer));
+                debugSink.accept(buffer);
+                writer.copy(buffer);
+            } finally {
+                Pacs008Writer.releaseBuffer(buffer);
+            }
+            return;
+        }
+        writePacs008(group, writer);
+    }
+
+    private void writePacs008(List<MT103Msg> group, Pacs008Writer xml) {
+        logger.trace("Generating PACS.008 XML for {} transactions", group.size());
+
+        // montants lus une fois : somme de contrôle du GrpHdr puis IntrBkSttlmAmt de chaque transaction
+        String[] amounts = new String[group.size()];
+        BigDecimal ctrlSum = BigDecimal.ZERO;
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Pacs008Mapping.amountToIso(group.get(i).getField("32A"));
+            ctrlSum = ctrlSum.add(new BigDecimal(amounts[i]));
+        }
+
+        xml.startDocument();
+        xml.start("FIToFICstmrCdtTrf");
 
         // GroupHeader (obligatoire)
-        xml.append("    <GrpHdr>\n");
-        xml.append("      <MsgId>").append(generateMessageId()).append("</MsgId>\n");
-        xml.append("      <CreDtTm>").append(getCurrentDateTime()).append("</CreDtTm>\n");
-        xml.append("      <NbOfTxs>1</NbOfTxs>\n");
+        xml.start("GrpHdr");
+        xml.element("MsgId", generateMessageId());
+        xml.element("CreDtTm", getCurrentDateTime());
+        xml.element("NbOfTxs", Integer.toString(group.size()));
+        // CtrlSum seulement pour un lot : le guide HVPS+ (schéma XSD) n'admet pas CtrlSum pour une transaction seule
+        if (group.size() > 1) {
+            xml.element("CtrlSum", ctrlSum.toPlainString());
+        }
 
         //settlement information obligatoire
-        xml.append("    <SttlmInf>\n");
-        xml.append("      <SttlmMtd>CLRG</SttlmMtd>\n");
-        xml.append("      <ClrSys>\n");
-        xml.append("        <Cd>RG</Cd>\n");
-        xml.append("      </ClrSys>\n");
-        xml.append("    </SttlmInf>\n");
-        xml.append("    </GrpHdr>\n");
-
-        /*
-        xml.append("      <CtrlSum>").append(extractAmount(mt103.getField("32A"))).append("</CtrlSum>\n");
-         */
+        xml.start("SttlmInf");
+        xml.element("SttlmMtd", "CLRG");
+        xml.start("ClrSys");
+        xml.element("Cd", "RG");
+        xml.end("ClrSys");
+        xml.end("SttlmInf");
+        xml.end("GrpHdr");
+
+        for (int i = 0; i < amounts.length; i++) {
+            writeTransaction(group.get(i), amounts[i], xml);
+        }
+
+        xml.end("FIToFICstmrCdtTrf");
+        xml.endDocument();
+    }
+
+    private void writeTransaction(MT103Msg mt103, String amount, Pacs008Writer xml) {
+        // chaque champ est lu une seule fois (valeur tirée du découpage à la demande)
+        String field20 = mt103.getField("20");
+        String field23B = mt103.getField("23B");
+        String field32A = mt103.getField("32A");
+        String field50A = mt103.getField("50A");
+        String field71A = mt103.getField("71A");
 
         // CreditTransferTransactionInformation
-        xml.append("    <CdtTrfTxInf>\n");
+        xml.start("CdtTrfTxInf");
 
         //payment ID
-        xml.append("      <PmtId>\n");
-        String paymentId = mt103.getField("20");
-        xml.append("        <InstrId>").append(paymentId).append("</InstrId>\n");
-        xml.append("        <EndToEndId>").append(paymentId).append("</EndToEndId>\n");
-        xml.append("        <UETR>").append(UUID.randomUUID().toString()).append("</UETR>\n");
-        xml.append("      </PmtId>\n");
+        xml.start("PmtId");
+        String paymentId = field20;
+        xml.element(Field.INSTR_ID.getElement(), paymentId);
+        xml.element(Field.END_TO_END_ID.getElement(), paymentId);
+        xml.element("UETR", UUID.randomUUID().toString());
+        xml.end("PmtId");
 
         // Payment Type Information
-        xml.append("      <PmtTpInf>\n");
-        xml.append("        <SvcLvl>\n");
-        xml.append("          <Cd>").append(mapServiceLevel(mt103.getField("23B"))).append("</Cd>\n");
-        xml.append("        </SvcLvl>\n");
-        xml.append("      </PmtTpInf>\n");
+        xml.start("PmtTpInf");
+        xml.start("SvcLvl");
+        xml.element(Field.SERVICE_LEVEL.getElement(), Pacs008Mapping.SERVICE_LEVEL.toIso(field23B));
+        xml.end("SvcLvl");
+        xml.end("PmtTpInf");
 
         // Amount
-        xml.append("      <IntrBkSttlmAmt Ccy=\"").append(extractCurrency(mt103.getField("32A"))).append("\">")
-                .append(extractAmount(mt103.getField("32A"))).append("</IntrBkSttlmAmt>\n");
+        xml.element(Field.AMOUNT.getElement(), Field.CURRENCY.getAttribute(), Pacs008Mapping.currencyToIso(field32A), amount);
 
         // Date règlement interbancaire obligatoire
-        xml.append("      <IntrBkSttlmDt>").append(getCurrentDate()).append("</IntrBkSttlmDt>\n");
+        xml.element(Field.SETTLEMENT_DATE.getElement(), getCurrentDate());
 
         // Charges Bearer
-        xml.append("      <ChrgBr>").append(mapChargeBearer(mt103.getField("71A"))).append("</ChrgBr>\n");
+        xml.element(Field.CHARGE_BEARER.getElement(), Pacs008Mapping.CHARGE_BEARER.toIso(field71A));
 
         // InstgAgt
-        xml.append("      <InstgAgt>\n");
-        xml.append("        <FinInstnId>\n");
-        xml.append("          <BICFI>").append(extractSenderBIC(mt103)).append("</BICFI>\n");
-        xml.append("        </FinInstnId>\n");
-        xml.append("      </InstgAgt>\n");
+        writeAgent(xml, "InstgAgt", extractSenderBIC(mt103));
 
         // InstdAgt
-        xml.append("      <InstdAgt>\n");
-        xml.append("        <FinInstnId>\n");
-        xml.append("          <BICFI>").append(extractReceiverBIC(mt103)).append("</BICFI>\n");
-        xml.append("        </FinInstnId>\n");
-        xml.append("      </InstdAgt>\n");
+        writeAgent(xml, "InstdAgt", extractReceiverBIC(mt103));
 
         // Debtor (Field 50A/50K)
-        xml.append("      <Dbtr>\n");
-        String debtor = !mt103.getField("50A").isEmpty() ? mt103.getField("50A") : mt103.getField("50K");
-        String debtorName = extractName(debtor);
-        xml.append("        <Nm>").append(debtorName.isEmpty() ? "Unknown" : debtorName).append("</Nm>\n");
-        if (hasAddress(debtor)) {
-            String address = extractAddress(debtor);
-            if (!address.isEmpty()) {
-                xml.append("        <PstlAdr>\n");
-                xml.append("          <AdrLine>").append(address).append("</AdrLine>\n");
-                xml.append("        </PstlAdr>\n");
-            }
-        }
-        xml.append("      </Dbtr>\n");
+        String debtor = !field50A.isEmpty() ? field50A : mt103.getField("50K");
+        writeParty(xml, "Dbtr", Field.DEBTOR_NAME, Field.DEBTOR_ADDRESS, debtor);
 
         // Debtor Account (si disponible dans 50A)
-        if (!mt103.getField("50A").isEmpty() && hasAccount(mt103.getField("50A"))) {
-            String account = extractAccount(mt103.getField("50A"));
-            if (!account.isEmpty()) {
-                xml.append("      <DbtrAcct>\n");
-                xml.append("        <Id>\n");
-                xml.append("          <Othr>\n");
-                xml.append("            <Id>").append(account).append("</Id>\n");
-                xml.append("          </Othr>\n");
-                xml.append("        </Id>\n");
-                xml.append("      </DbtrAcct>\n");
-            }
+        if (!field50A.isEmpty() && hasAccount(field50A)) {
+            writeAccount(xml, "DbtrAcct", extractAccount(field50A));
         }
 
         // Debtor Agent obligatoire
-        xml.append("      <DbtrAgt>\n");
-        xml.append("        <FinInstnId>\n");
-        xml.append("          <BICFI>").append(extractSenderBIC(mt103)).append("</BICFI>\n");
-        xml.append("        </FinInstnId>\n");
-        xml.append("      </DbtrAgt>\n");
+        writeAgent(xml, "DbtrAgt", extractSenderBIC(mt103));
 
         // debitor agent account
-        xml.append("      <DbtrAgtAcct>\n");
-        xml.append("        <Id>\n");
-        xml.append("          <Othr>\n");
-        xml.append("            <Id>").append("AGT123456").append("</Id>\n"); // un ID fictif
-        xml.append("          </Othr>\n");
-        xml.append("        </Id>\n");
-        xml.append("      </DbtrAgtAcct>\n");
+        writeAccount(xml, "DbtrAgtAcct", "AGT123456"); // un ID fictif
 
         // Creditor Agent
-        xml.append("      <CdtrAgt>\n");
-        xml.append("        <FinInstnId>\n");
-        xml.append("          <BICFI>").append(extractReceiverBIC(mt103)).append("</BICFI>\n");
-        xml.append("        </FinInstnId>\n");
-        xml.append("      </CdtrAgt>\n");
+        writeAgent(xml, "CdtrAgt", extractReceiverBIC(mt103));
 
         // Creditor (Field 59)
-        xml.append("      <Cdtr>\n");
         String creditor = mt103.getField("59");
-        String creditorName = extractName(creditor);
-        xml.append("        <Nm>").append(creditorName.isEmpty() ? "Unknown" : creditorName).append("</Nm>\n");
-        if (hasAddress(creditor)) {
-            String address = extractAddress(creditor);
-            if (!address.isEmpty()) {
-                xml.append("        <PstlAdr>\n");
-                xml.append("          <AdrLine>").append(address).append("</AdrLine>\n");
-                xml.append("        </PstlAdr>\n");
-            }
-        }
-        xml.append("      </Cdtr>\n");
+        writeParty(xml, "Cdtr", Field.CREDITOR_NAME, Field.CREDITOR_ADDRESS, creditor);
 
         // Creditor Account (si disponible dans 59)
         if (hasAccount(creditor)) {
-            String account = extractAccount(creditor);
-            if (!account.isEmpty()) {
-                xml.append("      <CdtrAcct>\n");
-                xml.append("        <Id>\n");
-                xml.append("          <Othr>\n");
-                xml.append("            <Id>").append(account).append("</Id>\n");
-                xml.append("          </Othr>\n");
-                xml.append("        </Id>\n");
-                xml.append("      </CdtrAcct>\n");
-            }
+            writeAccount(xml, "CdtrAcct", extractAccount(creditor));
         }
 
         // Remittance Information (Field 70 si disponible)
         String remittanceInfo = mt103.getField("70");
         if (remittanceInfo != null && !remittanceInfo.trim().isEmpty()) {
-            xml.append("      <RmtInf>\n");
-            xml.append("        <Ustrd>").append(escapeXml(remittanceInfo.trim())).append("</Ustrd>\n");
-            xml.append("      </RmtInf>\n");
+            xml.start("RmtInf");
+            xml.element(Field.REMITTANCE.getElement(), remittanceInfo.trim());
+            xml.end("RmtInf");
         }
 
-        xml.append("    </CdtTrfTxInf>\n");
-        xml.append("  </FIToFICstmrCdtTrf>\n");
-        xml.append("</Document>");
+        xml.end("CdtTrfTxInf");
+    }
 
-        // Activer temporairement l'affichage du XML pour déboguer
-        System.out.println("---- XML GENERATED ----");
-        System.out.println(xml.toString());
-        System.out.println("-----------------------");
+    private void writeAgent(Pacs008Writer xml, String name, String bic) {
+        xml.start(name);
+        xml.start("FinInstnId");
+        xml.element("BICFI", bic);
+        xml.end("FinInstnId");
+        xml.end(name);
+    }
 
-        return xml.toString();
+    private void writeParty(Pacs008Writer xml, String name, Field nameField, Field addressField, String field) {
+        xml.start(name);
+        String partyName = extractName(field);
+        xml.element(nameField.getElement(), partyName.isEmpty() ? "Unknown" : partyName);
+        if (hasAddress(field)) {
+            String address = extractAddress(field, addressField);
+            if (!address.isEmpty()) {
+                xml.start("PstlAdr");
+                xml.element(addressField.getElement(), address);
+                xml.end("PstlAdr");
+            }
+        }
+        xml.end(name);
+    }
+
+    private void writeAccount(Pacs008Writer xml, String name, String account) {
+        if (account.isEmpty()) {
+            return;
+        }
+        xml.start(name);
+        xml.start("Id");
+        xml.start("Othr");
+        xml.element("Id", account);
+        xml.end("Othr");
+        xml.end("Id");
+        xml.end(name);
     }
 
     // Méthodes utilitaires pour extraire et mapper les données
@@ -219,30 +351,11 @@ public class Transformer {
 
     private String getCurrentDateTime() {
         //return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX"); //include décalage horaire
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxx"); //include décalage horaire ("+00:00" et non "Z", exigé par le schéma)
         String formatted = OffsetDateTime.now(ZoneOffset.systemDefault()).format(formatter);
         return formatted;
     }
 
-    private String extractAmount(String field32A) {
-        if (field32A == null || field32A.isEmpty()) return "0.00";
-        String raw = field32A.length() > 9 ? field32A.substring(9) : "0.00";
-        raw = raw.replace(",", ".");
-        try {
-            BigDecimal amount = new BigDecimal(raw);
-            return amount.setScale(2, RoundingMode.HALF_UP).toPlainString(); //forcer un décimal valide
-        } catch (NumberFormatException e) {
-            return "0.00";
-        }
-    }
-
-
-    private String extractCurrency(String field32A) {
-        if (field32A == null || field32A.isEmpty()) return "EUR";
-        // Format 32A: YYMMDDCURRENCYAMOUNT
-        return field32A.length() > 9 ? field32A.substring(6, 9) : "EUR";
-    }
-
     private String extractSenderBIC(MT103Msg mt103) {
         // Dans un vrai environnement, cela viendrait du header du message
         return "BANKDEFAXXX"; // Exemple
@@ -253,32 +366,13 @@ public class Transformer {
         return "BANKFRPPXXX"; // Exemple
     }
 
-    private String mapServiceLevel(String field23B) {
-        if (field23B == null || field23B.isEmpty()) return "NORM";
-        switch (field23B.toUpperCase()) {
-            case "CRED": return "NORM";
-            case "CRTS": return "NURG";
-            default: return "NORM";
-        }
-    }
-
-    private String mapChargeBearer(String field71A) {
-        if (field71A == null || field71A.isEmpty()) return "SHAR";
-        switch (field71A.toUpperCase()) {
-            case "OUR": return "DEBT";
-            case "BEN": return "CRED";
-            case "SHA": return "SHAR";
-            default: return "SHAR";
-        }
-    }
-
     private String extractName(String field) {
         if (field == null || field.isEmpty()) return "";
         String[] lines = field.split("\n");
         return lines.length > 0 ? lines[0].trim() : "";
     }
 
-    private String extractAddress(String field) {
+    private String extractAddress(String field, Field addressField) {
         if (field == null || field.isEmpty()) return "";
         String[] lines = field.split("\n");
         StringBuilder address = new StringBuilder();
@@ -289,11 +383,12 @@ public class Transformer {
 
         String fullAddress = address.toString();
 
-        // Limiter à 35 caractères selon les spécifications PACS.008
-        if (fullAddress.length() > 35) {
-            logger.warn("Adresse tronquée de {} à 35 caractères: '{}'",
-                       fullAddress.length(), fullAddress);
-            return fullAddress.substring(0, 35);
+        // Limiter à 35 caractères selon les spécifications PACS.008 (longueur de la table de correspondance)
+        if (addressField.exceedsIso(fullAddress)) {
+            String truncated = addressField.toIso(fullAddress);
+            logger.warn("Adresse tronquée de {} à {} caractères: '{}'",
+                       fullAddress.length(), truncated.length(), fullAddress);
+            return truncated;
         }
 
         return fullAddress;
@@ -325,19 +420,4 @@ public class Transformer {
     private String getCurrentDate() {
         return java.time.LocalDate.now().toString();
     }
-
-    /**
-     * Échappe les caractères spéciaux XML pour éviter les erreurs de validation
-     */
-    private String escapeXml(String text) {
-        if (text == null || text.isEmpty()) {
-            return "";
-        }
-        return text.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&apos;");
-    }
-
 }
@@ -1,21 +1,24 @@
 package com.attijari.MT103converter.services;
 
 import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008Msg;
+import com.attijari.MT103converter.models.Pacs008Transaction;
 import com.attijari.MT103converter.models.ErrorCall;
+import com.attijari.MT103converter.models.MT103Diagnostic;
+import com.attijari.MT103converter.models.ParsedMT103;
+import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import javax.xml.XMLConstants;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
 import org.xml.sax.SAXException;
 
 /**
@@ -25,6 +28,9 @@ import org.xml.sax.SAXException;
 public class Validator {
     private static final Logger logger = LogManager.getLogger(Validator.class);
 
+    // pacs.008 reçu illisible (XML mal formé)
+    static final String MALFORMED_XML = "malformed_xml";
+
     /**
      * Valide un objet MT103Msg selon des règles métier.
      *
@@ -35,73 +41,76 @@ public class Validator {
         logger.debug("Validating MT103Msg");
         ErrorCall errors = new ErrorCall();
 
-        // Vérification de la structure globale du message MT103
+        // Structure globale du message MT103 : problèmes déjà relevés par le découpage
         String raw = msg.getRawContent();
         if (raw == null || raw.isEmpty()) {
-            errors.addError("Erreur : Le contenu brut du message MT103 est vide ou manquant");
+            errors.addError(ErrorCall.STRUCTURE, "Erreur : Le contenu brut du message MT103 est vide ou manquant");
         } else {
-            if (!raw.trim().startsWith("{") || !raw.trim().endsWith("}")) {
-                errors.addError("Erreur : Le message MT103 doit commencer par '{' et se terminer par '}'");
+            ParsedMT103 parsed = msg.getParsed() != null ? msg.getParsed() : MT103Tokenizer.tokenize(raw);
+            for (MT103Diagnostic diagnostic : parsed.getDiagnostics()) {
+                if (diagnostic.isError()) {
+                    errors.addError(ErrorCall.STRUCTURE, "Erreur : " + diagnostic.getMessage());
+                    logger.warn("Structure MT103 invalide : {}", diagnostic);
+                } else {
+                    logger.debug("Avertissement structure MT103 : {}", diagnostic);
+                }
             }
-
-            // Nouvelle validation stricte de la structure des blocs MT103
-            ErrorCall structureErrors = validateMT103BlockStructure(raw.trim());
-            errors.addAllErrors(structureErrors.getErrors());
+            logger.debug("Blocs détectés dans le message MT103: {}", parsed.getBlockIds());
         }
 
         // Vérification du champ 20 (Reference Transaction)
         String value = msg.getField("20");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Référence de transaction (:20) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Référence de transaction (:20) est manquant");
             logger.warn("Missing tag :20 (Référence de transaction)");
         }
 
         // Vérification du champ 23B (Bank Operation Code)
         value = msg.getField("23B");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Code opération bancaire (:23B) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Code opération bancaire (:23B) est manquant");
             logger.warn("Missing tag :23B (Code opération bancaire)");
         }
 
         // Vérification du champ 32A (Value Date/Currency/Amount)
         value = msg.getField("32A");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Date valeur/Devise/Montant (:32A) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Date valeur/Devise/Montant (:32A) est manquant");
             logger.warn("Missing tag :32A (Date valeur/Devise/Montant)");
         }
 
         // Vérification du champ 59 (Beneficiary)
         value = msg.getField("59");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Bénéficiaire (:59) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Bénéficiaire (:59) est manquant");
             logger.warn("Missing tag :59 (Bénéficiaire)");
         }
 
         // Vérification du champ 71A (Charges)
         value = msg.getField("71A");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Répartition des frais (:71A) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Répartition des frais (:71A) est manquant");
             logger.warn("Missing tag :71A (Répartition des frais)");
         }
 
         // Vérification du champ 33B (Currency/Amount) - OBLIGATOIRE
         value = msg.getField("33B");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Devise/Montant (:33B) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Devise/Montant (:33B) est manquant");
             logger.warn("Missing tag :33B (Devise/Montant)");
         }
 
         // Vérification du champ 70 (Remittance Information) - OBLIGATOIRE
         value = msg.getField("70");
         if (value == null || value.trim().isEmpty()) {
-            errors.addError("Erreur : Le champ Texte descriptif (:70) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Texte descriptif (:70) est manquant");
             logger.warn("Missing tag :70 (Texte descriptif)");
         }
 
         // Si ni 50A ni 50K n'est présent, erreur
         if ((msg.getField("50A") == null || msg.getField("50A").trim().isEmpty()) &&
             (msg.getField("50K") == null || msg.getField("50K").trim().isEmpty())) {
-            errors.addError("Erreur : Le champ Donneur d'ordre (:50A ou :50K) est manquant");
+            errors.addError(ErrorCall.MISSING_FIELD, "Erreur : Le champ Donneur d'ordre (:50A ou :50K) est manquant");
         }
 
         // Validation additionnelle du format des champs si présents
@@ -119,7 +128,7 @@ public class Validator {
         String field32A = msg.getField("32A");
         if (field32A != null && !field32A.trim().isEmpty()) {
             if (field32A.length() < 9) {
-                errors.addError("Erreur : Le champ :32A a un format incorrect. Format attendu: AAMMJJDDDMONTANT");
+                errors.addError(ErrorCall.FIELD_FORMAT, "Erreur : Le champ :32A a un format incorrect. Format attendu: AAMMJJDDDMONTANT");
             }
         }
 
@@ -131,7 +140,7 @@ public class Validator {
             charges = charges.replaceAll("\\s+", "").replaceAll("[^A-Z]", "");
 
             if (!charges.equals("OUR") && !charges.equals("BEN") && !charges.equals("SHA")) {
-                errors.addError("Erreur : Le champ Répartition des frais (:71A) a une valeur incorrecte. " +
+                errors.addError(ErrorCall.FIELD_FORMAT, "Erreur : Le champ Répartition des frais (:71A) a une valeur incorrecte. " +
                     "Valeurs autorisées: OUR (payé par l'expéditeur), BEN (payé par le bénéficiaire), SHA (partagé). " +
                     "Valeur actuelle: " + field71A.trim());
             }
@@ -149,21 +158,86 @@ public class Validator {
     }
 
 
+    /**
+     * Compile le schéma XSD au démarrage plutôt qu'à la première conversion
+     */
+    @PostConstruct
+    public void loadSchema() {
+        Pacs008Schema.schema();
+        logger.info("Schéma XSD pacs.008 chargé: {}", Pacs008Schema.RESOURCE);
+    }
+
+    /**
+     * Valide un pacs.008 produit par le Transformer : reprend le résultat de la validation faite
+     * pendant la génération si elle a eu lieu, sinon relit le XML
+     */
+    public ErrorCall validatePacs008(Pacs008Msg pacs) {
+        if (!pacs.isSchemaValidated()) {
+            return validatePacs008(pacs.generateXML());
+        }
+        ErrorCall errors = new ErrorCall();
+        if (pacs.getSchemaError() != null) {
+            errors.addError(schemaCategory(pacs.getSchemaError()), convertTechnicalErrorToFriendlyMessage(pacs.getSchemaError()));
+        }
+        return errors;
+    }
+
     public ErrorCall validatePacs008(String xml) {
-        String xsdPath = "src/main/resources/schemas/pacs.008.001.08.xsd";
         ErrorCall errors = new ErrorCall();
         try {
-            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = factory.newSchema(new File(xsdPath));
-            javax.xml.validation.Validator validator = schema.newValidator();
-            validator.validate(new StreamSource(new java.io.StringReader(xml)));
+            // schéma compilé une seule fois, validateur réutilisé par thread
+            Pacs008Schema.validator().validate(new StreamSource(new StringReader(xml)));
         } catch (SAXException | IOException e) {
             String friendlyMessage = convertTechnicalErrorToFriendlyMessage(e.getMessage());
-            errors.addError(friendlyMessage);
+            errors.addError(schemaCategory(e.getMessage()), friendlyMessage);
         }
         return errors;
     }
 
+    /**
+     * Valide un pacs.008 reçu et en extrait les transactions sur une seule lecture StAX :
+     * chaque événement alimente à la fois le ValidatorHandler du schéma et Pacs008Reader.
+     * Les transactions ne sont à utiliser que si aucune erreur n'est retournée.
+     *
+     * @param xml document pacs.008
+     * @param transactions reçoit chaque CdtTrfTxInf lu
+     * @return erreurs XSD (XML mal formé compris), vide si le document est valide
+     */
+    public ErrorCall validatePacs008(String xml, Consumer<Pacs008Transaction> transactions) {
+        ErrorCall errors = new ErrorCall();
+        ValidatorHandler handler = Pacs008Schema.validatorHandler();
+        Pacs008SchemaErrors schemaErrors = new Pacs008SchemaErrors();
+        handler.setErrorHandler(schemaErrors);
+        try {
+            Pacs008Reader.read(new StringReader(xml), transactions, handler);
+        } catch (XMLStreamException e) {
+            // document interrompu : le ValidatorHandler du thread n'est pas réutilisé
+            Pacs008Schema.discardValidatorHandler();
+            errors.addError(MALFORMED_XML, convertTechnicalErrorToFriendlyMessage(e.getMessage()));
+            return errors;
+        }
+        if (schemaErrors.getMessage() != null) {
+            errors.addError(schemaCategory(schemaErrors.getMessage()), convertTechnicalErrorToFriendlyMessage(schemaErrors.getMessage()));
+        }
+        return errors;
+    }
+
+    /**
+     * Catégorie d'une erreur XSD (code cvc-* du message technique), pour les métriques
+     */
+    static String schemaCategory(String technicalError) {
+        if (technicalError == null) {
+            return ErrorCall.OTHER;
+        }
+        if (technicalError.contains("cvc-maxLength-valid")) return "xsd_max_length";
+        if (technicalError.contains("cvc-minLength-valid")) return "xsd_min_length";
+        if (technicalError.contains("cvc-pattern-valid")) return "xsd_pattern";
+        if (technicalError.contains("cvc-enumeration-valid")) return "xsd_enumeration";
+        if (technicalError.contains("cvc-complex-type")) return "xsd_structure";
+        if (technicalError.contains("cvc-datatype-valid")) return "xsd_datatype";
+        return ErrorCall.OTHER;
+    }
+
     /**
      * Convertit les messages d'erreur techniques XSD en messages clairs pour l'utilisateur
      */
@@ -379,146 +453,4 @@ public class Validator {
             .replaceAll("with respect to", "par rapport à")
             .trim();
     }
-
-    /**
-     * Nouvelle validation stricte de la structure des blocs MT103
-     * Vérifie la présence des blocs obligatoires 1, 2, 4 et 5 (le bloc 3 est optionnel)
-     */
-    private ErrorCall validateMT103BlockStructure(String rawMessage) {
-        ErrorCall errors = new ErrorCall();
-
-        try {
-            // Extraire les blocs du message
-            Map<String, String> blocks = extractBlocksFromMessage(rawMessage);
-
-            // Vérifier les blocs obligatoires : 1, 2, 4, 5 (pas 3)
-            String[] mandatoryBlocks = {"1", "2", "4", "5"};
-
-            for (String blockNumber : mandatoryBlocks) {
-                if (!blocks.containsKey(blockNumber) || blocks.get(blockNumber).trim().isEmpty()) {
-                    errors.addError("Erreur : Le bloc obligatoire {" + blockNumber + ":...} est manquant dans le message MT103");
-                    logger.warn("Missing mandatory block {}", blockNumber);
-                }
-            }
-
-            // Log des blocs trouvés pour debug
-            logger.debug("Blocs détectés dans le message MT103: {}", blocks.keySet());
-
-        } catch (Exception e) {
-            errors.addError("Erreur : Impossible de parser la structure des blocs MT103 - " + e.getMessage());
-            logger.error("Erreur lors de l'analyse des blocs MT103: {}", e.getMessage());
-        }
-
-        return errors;
-    }
-
-    /**
-     * Extrait les blocs d'un message MT103
-     */
-    private Map<String, String> extractBlocksFromMessage(String rawMessage) {
-        Map<String, String> blocks = new HashMap<>();
-
-        // Nettoyer le message
-        String cleanMessage = rawMessage.replaceAll("\\s+", " ").trim();
-
-        // Trouver tous les blocs {X:...}
-        int pos = 0;
-        while (pos < cleanMessage.length()) {
-            if (cleanMessage.charAt(pos) == '{') {
-                int colonPos = cleanMessage.indexOf(':', pos);
-                if (colonPos > pos + 1) {
-                    String blockNumber = cleanMessage.substring(pos + 1, colonPos);
-
-                    // Trouver la fin du bloc en comptant les accolades
-                    int braceCount = 1;
-                    int endPos = colonPos + 1;
-                    while (endPos < cleanMessage.length() && braceCount > 0) {
-                        if (cleanMessage.charAt(endPos) == '{') {
-                            braceCount++;
-                        } else if (cleanMessage.charAt(endPos) == '}') {
-                            braceCount--;
-                        }
-                        endPos++;
-                    }
-
-                    if (braceCount == 0) {
-                        String blockContent = cleanMessage.substring(colonPos + 1, endPos - 1);
-                        blocks.put(blockNumber, blockContent);
-                    }
-
-                    pos = endPos;
-                } else {
-                    pos++;
-                }
-            } else {
-                pos++;
-            }
-        }
-
-        return blocks;
-    }
-
-    /**
-     * Récupère le contenu d'un bloc spécifique
-     */
-    private String getBlockContent(String raw, String blockStart) {
-        int start = raw.indexOf(blockStart);
-        if (start == -1) return null;
-
-        int openBrace = start;
-        int braceCount = 1;
-        int index = start + 1;
-
-        while (index < raw.length() && braceCount > 0) {
-            char c = raw.charAt(index);
-            if (c == '{') braceCount++;
-            else if (c == '}') braceCount--;
-            index++;
-        }
-
-        if (braceCount == 0) {
-            return raw.substring(start, index);
-        }
-
-        return null;
-    }
-
-    /**
-     * Valide la structure interne du bloc 4 (Text Block)
-     */
-    private void validateBlock4Structure(String block4, ErrorCall errors) {
-        // Vérifier la présence des champs obligatoires dans le bloc 4
-        String[] requiredFields = {":20:", ":23B:", ":32A:", ":33B:", ":59:", ":70:", ":71A:"};
-
-        for (String field : requiredFields) {
-            if (!block4.contains(field)) {
-                String fieldName = getFieldName(field);
-                errors.addError("Erreur dans le bloc {4: : Champ obligatoire " + field +
-                              " (" + fieldName + ") manquant");
-            }
-        }
-
-        // Vérifier qu'au moins un des champs :50A: ou :50K: est présent
-        if (!block4.contains(":50A:") && !block4.contains(":50K:")) {
-            errors.addError("Erreur dans le bloc {4: : Au moins un des champs :50A: ou :50K: (Donneur d'ordre) doit être présent");
-        }
-    }
-
-    /**
-     * Retourne le nom descriptif d'un champ MT103
-     */
-    private String getFieldName(String fieldTag) {
-        switch (fieldTag) {
-            case ":20:": return "Référence de transaction";
-            case ":23B:": return "Code opération bancaire";
-            case ":32A:": return "Date valeur/Devise/Montant";
-            case ":33B:": return "Devise/Montant de change";
-            case ":50A:": return "Donneur d'ordre (Option A)";
-            case ":50K:": return "Donneur d'ordre (Option K)";
-            case ":59:": return "Bénéficiaire";
-            case ":70:": return "Détails du paiement";
-            case ":71A:": return "Répartition des frais";
-            default: return "Champ inconnu";
-        }
-    }
 }
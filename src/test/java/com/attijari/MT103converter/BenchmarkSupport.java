@@ -0,0 +1,65 @@
+package com.attijari.MT103converter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ Outils communs aux benchmarks (classes *Benchmark lancées par leur main, hors surefire) :
+ mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt -Dmdep.includeScope=test
+ java -cp target/classes:target/test-classes:$(cat cp.txt) com.attijari.MT103converter.services.MT103ParserBenchmark
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Coupe les logs applicatifs (un log par message fausserait les mesures)
+     */
+    public static void silenceLogs() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+        }
+    }
+
+    /**
+     * Exécute l'opération en boucle pendant la durée donnée après une phase de chauffe
+     * @return nombre d'opérations par seconde
+     */
+    public static double opsPerSecond(Runnable operation, long warmupMillis, long measureMillis) {
+        loop(operation, warmupMillis);
+        long start = System.nanoTime();
+        long ops = loop(operation, measureMillis);
+        return ops / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * Octets alloués sur le tas par opération (thread courant), après une phase de chauffe
+     */
+    public static double bytesAllocatedPerOp(Runnable operation, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / (double) iterations;
+    }
+
+    private static long loop(Runnable operation, long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long ops = 0;
+        do {
+            for (int i = 0; i < 100; i++) {
+                operation.run();
+            }
+            ops += 100;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+}
@@ -0,0 +1,67 @@
+package com.attijari.MT103converter.converters;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.services.MT103Parser;
+import com.attijari.MT103converter.services.Transformer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+/**
+ Benchmark de la conversion inverse pacs.008 -> MT103 (hors validation XSD) :
+ arbre DOM + recherches par chemin (avant) contre lecture StAX en une passe (après)
+ Mesures : latence, octets alloués par conversion, et temps sur un document de lot de N transactions
+ Lancement : voir BenchmarkSupport
+ */
+public class Pacs008ReaderBenchmark {
+
+    private static final String MESSAGE = """
+            {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{4:
+            :20:REF12345
+            :23B:CRED
+            :32A:240714EUR10000,50
+            :50K:/12345678
+            ALICE SMITH
+            :59:/87654321
+            BOB SMITH
+            :70:FACTURE 2024-07
+            :71A:SHA
+            -}{5:{CHK:123456789ABC}}
+            """;
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        MT103Msg msg = new MT103Parser().parse(MESSAGE);
+        Transformer transformer = new Transformer();
+        String xml = transformer.transform(msg).getXmlContent();
+
+        LegacyPacs008ToMT103Converter dom = new LegacyPacs008ToMT103Converter();
+        Pacs008ToMT103Converter stax = new Pacs008ToMT103Converter();
+        check(dom.process(xml));
+        check(stax.process(xml));
+
+        double before = BenchmarkSupport.opsPerSecond(() -> dom.process(xml), 2000, 5000);
+        double after = BenchmarkSupport.opsPerSecond(() -> stax.process(xml), 2000, 5000);
+        System.out.printf("DOM  : %7.1f µs/conversion   %8.0f octets alloués%n",
+                1_000_000 / before, BenchmarkSupport.bytesAllocatedPerOp(() -> dom.process(xml), 20000));
+        System.out.printf("StAX : %7.1f µs/conversion   %8.0f octets alloués   x%.1f%n",
+                1_000_000 / after, BenchmarkSupport.bytesAllocatedPerOp(() -> stax.process(xml), 20000), after / before);
+
+        // document de lot : le DOM construit tout l'arbre même pour ne lire que la première transaction
+        for (int size : new int[] {10, 100, 1000}) {
+            ReflectionTestUtils.setField(transformer, "maxBatchSize", size);
+            String batch = transformer.transformBatch(Collections.nCopies(size, msg)).get(0).getXmlContent();
+            double domBatch = BenchmarkSupport.opsPerSecond(() -> dom.process(batch), 1000, 2000);
+            double staxBatch = BenchmarkSupport.opsPerSecond(() -> stax.process(batch), 1000, 2000);
+            System.out.printf("lot de %4d transactions : DOM %9.1f µs   StAX %9.1f µs%n",
+                    size, 1_000_000 / domBatch, 1_000_000 / staxBatch);
+        }
+    }
+
+    private static void check(Pacs008ToMT103Converter.ConversionResult result) {
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getErrorMessage());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.attijari.MT103converter.converters;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+import com.attijari.MT103converter.services.MT103Parser;
+import com.attijari.MT103converter.services.Transformer;
+import com.attijari.MT103converter.services.Validator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ Benchmark de /convert-reverse (validation XSD comprise) :
+ - validation par Validator puis arbre DOM (deux lectures, version d'origine)
+ - validation par Validator puis Pacs008Reader (deux lectures)
+ - une seule lecture StAX pour la validation et l'extraction
+ Lancement : voir BenchmarkSupport
+ */
+public class Pacs008ReverseSinglePassBenchmark {
+
+    private static final String MESSAGE = """
+            {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{4:
+            :20:REF12345
+            :23B:CRED
+            :32A:240714EUR10000,50
+            :50K:/12345678
+            ALICE SMITH
+            :59:/87654321
+            BOB SMITH
+            :70:FACTURE 2024-07
+            :71A:SHA
+            -}{5:{CHK:123456789ABC}}
+            """;
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        String xml = new Transformer().transform(new MT103Parser().parse(MESSAGE)).getXmlContent();
+        Validator validator = new Validator();
+
+        LegacyPacs008ToMT103Converter dom = new LegacyPacs008ToMT103Converter();
+        Pacs008ToMT103Converter stax = new Pacs008ToMT103Converter();
+        Pacs008ToMT103Converter singlePass = new Pacs008ToMT103Converter();
+        ReflectionTestUtils.setField(singlePass, "validator", validator);
+
+        Runnable validateThenDom = () -> check(!validator.validatePacs008(xml).hasErrors() && dom.process(xml).isSuccess());
+        Runnable validateThenStax = () -> check(!validator.validatePacs008(xml).hasErrors() && stax.process(xml).isSuccess());
+        Runnable single = () -> check(singlePass.process(xml).isSuccess());
+
+        report("validation + DOM       ", validateThenDom, 0);
+        double twoPasses = report("validation + StAX      ", validateThenStax, 0);
+        report("une lecture StAX       ", single, twoPasses);
+    }
+
+    private static double report(String label, Runnable conversion, double reference) {
+        double ops = BenchmarkSupport.opsPerSecond(conversion, 2000, 5000);
+        double bytes = BenchmarkSupport.bytesAllocatedPerOp(conversion, 20000);
+        System.out.printf("%s : %7.1f µs/conversion   %8.0f octets alloués%s%n", label, 1_000_000 / ops, bytes,
+                reference > 0 ? String.format("   x%.2f", ops / reference) : "");
+        return ops;
+    }
+
+    private static void check(boolean success) {
+        if (!success) {
+            throw new IllegalStateException("conversion en échec");
+        }
+    }
+}
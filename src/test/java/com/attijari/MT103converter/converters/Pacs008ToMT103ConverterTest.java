@@ -1,6 +1,18 @@
 package com.attijari.MT103converter.converters;
 
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.services.MT103BatchReader;
+import com.attijari.MT103converter.services.MT103Parser;
+import com.attijari.MT103converter.services.Transformer;
+import com.attijari.MT103converter.services.Validator;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /** Tests basiques pour la conversion inverse PACS008 -> MT103 */
@@ -51,6 +63,25 @@ public class Pacs008ToMT103ConverterTest {
         assertTrue(mt.contains("/DEBTACC1"));
         assertTrue(mt.contains("/CREDACC9"));
         assertTrue(mt.contains(":70:Facture 2025-07"));
+        // lignes d'adresse rattachées à leur partie
+        assertTrue(mt.contains(":50K:/DEBTACC1\nALPHA COMPANY\n1 RUE A\n75000 PARIS\n:59:"), mt);
+        assertTrue(mt.contains(":59:/CREDACC9\nBETA SARL\n2 AV B\n:70:"), mt);
+    }
+
+    @Test
+    void testReverseConversionRejectsDoctype() {
+        String pacs = """
+            <?xml version=\"1.0\"?>
+            <!DOCTYPE Document [<!ENTITY xxe SYSTEM \"file:///etc/hostname\">]>
+            <Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08\">
+              <FIToFICstmrCdtTrf>
+                <CdtTrfTxInf><PmtId><InstrId>&xxe;</InstrId></PmtId></CdtTrfTxInf>
+              </FIToFICstmrCdtTrf>
+            </Document>
+            """;
+        Pacs008ToMT103Converter.ConversionResult res = new Pacs008ToMT103Converter().process(pacs);
+        assertFalse(res.isSuccess());
+        assertTrue(res.getErrorMessage().startsWith("Erreur lors du parsing XML"), res.getErrorMessage());
     }
 
     @Test
@@ -68,5 +99,84 @@ public class Pacs008ToMT103ConverterTest {
         assertFalse(res.isSuccess());
         assertTrue(res.getErrorMessage().contains("CdtTrfTxInf"));
     }
-}
 
+    @Test
+    void testBatchConvertsEveryTransaction() {
+        String pacs = "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08\"><FIToFICstmrCdtTrf>"
+                + "<GrpHdr><MsgId>LOT1</MsgId><CreDtTm>2025-07-14T10:15:30+01:00</CreDtTm><NbOfTxs>3</NbOfTxs></GrpHdr>"
+                + transaction("TX-1", "<IntrBkSttlmAmt Ccy=\"EUR\">10.00</IntrBkSttlmAmt>")
+                + transaction("TX-2", "")
+                + transaction("TX-3", "<IntrBkSttlmAmt Ccy=\"USD\">3.5</IntrBkSttlmAmt>")
+                + "</FIToFICstmrCdtTrf></Document>";
+        Pacs008ToMT103Converter converter = new Pacs008ToMT103Converter();
+
+        List<Pacs008ToMT103Converter.TransactionResult> results = new ArrayList<>();
+        Pacs008ToMT103Converter.BatchResult batch = converter.processBatch(new StringReader(pacs), results::add);
+
+        assertEquals(3, batch.getTransactionCount());
+        assertEquals(1, batch.getFailureCount());
+        assertNull(batch.getErrorMessage());
+        assertEquals(List.of("TX-1", "TX-2", "TX-3"), results.stream().map(Pacs008ToMT103Converter.TransactionResult::getReference).toList());
+        assertEquals(2, batch.getFailures().get(0).getIndex());
+        assertTrue(batch.getFailures().get(0).getErrorMessage().contains("IntrBkSttlmAmt"));
+        // date de règlement absente : date de création du GrpHdr
+        assertTrue(results.get(2).getMt103Content().contains(":32A:250714USD3,5"), results.get(2).getMt103Content());
+
+        // sortie RJE relue par le lecteur de lots MT103
+        StringWriter rje = new StringWriter();
+        converter.processBatch(new StringReader(pacs), rje);
+        List<MT103Msg> messages = new ArrayList<>();
+        new MT103BatchReader(new StringReader(rje.toString())).forEachRemaining(item -> messages.add(item.getMessage()));
+        assertEquals(List.of("TX-1", "TX-3"), messages.stream().map(m -> m.getField("20")).toList());
+    }
+
+    @Test
+    void testBatchKeepsTransactionsReadBeforeMalformedXml() {
+        String pacs = "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08\"><FIToFICstmrCdtTrf>"
+                + transaction("TX-1", "<IntrBkSttlmAmt Ccy=\"EUR\">10.00</IntrBkSttlmAmt>")
+                + "<CdtTrfTxInf><PmtId></CdtTrfTxInf>";
+
+        Pacs008ToMT103Converter.BatchResult batch = new Pacs008ToMT103Converter().processBatch(new StringReader(pacs), r -> { });
+
+        assertEquals(1, batch.getSuccessCount());
+        assertFalse(batch.isSuccess());
+        assertTrue(batch.getErrorMessage().startsWith("Erreur lors du parsing XML"), batch.getErrorMessage());
+    }
+
+    @Test
+    void testSingleParseValidationMatchesValidator() {
+        Validator validator = new Validator();
+        Pacs008ToMT103Converter converter = new Pacs008ToMT103Converter();
+        ReflectionTestUtils.setField(converter, "validator", validator);
+        String valid = new Transformer().transform(new MT103Parser().parse("""
+                {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{4:
+                :20:REF12345
+                :23B:CRED
+                :32A:240714EUR10000,50
+                :50K:/12345678
+                ALICE SMITH
+                :59:/87654321
+                BOB SMITH
+                :71A:SHA
+                -}{5:{CHK:123456789ABC}}
+                """)).getXmlContent();
+
+        Pacs008ToMT103Converter.ConversionResult ok = converter.process(valid);
+        assertTrue(ok.isSuccess(), ok::getErrorMessage);
+        assertTrue(ok.getMt103Content().contains(":33B:EUR10000,50"), ok.getMt103Content());
+
+        String invalid = valid.replace("<ChrgBr>SHAR</ChrgBr>", "<ChrgBr>XXXX</ChrgBr>");
+        Pacs008ToMT103Converter.ConversionResult ko = converter.process(invalid);
+        assertFalse(ko.isSuccess());
+        assertEquals("Validation XSD échouée:\n• " + validator.validatePacs008(invalid).getErrors().get(0), ko.getErrorMessage());
+
+        assertFalse(converter.process(valid.substring(0, valid.length() / 2)).isSuccess());
+        // ValidatorHandler du thread utilisable après un document interrompu
+        assertTrue(converter.process(valid).isSuccess());
+    }
+
+    private static String transaction(String instrId, String amount) {
+        return "<CdtTrfTxInf><PmtId><InstrId>" + instrId + "</InstrId></PmtId>" + amount
+                + "<Dbtr><Nm>ALPHA</Nm></Dbtr><Cdtr><Nm>BETA</Nm></Cdtr></CdtTrfTxInf>";
+    }
+}
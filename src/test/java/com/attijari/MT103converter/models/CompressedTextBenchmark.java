@@ -0,0 +1,61 @@
+package com.attijari.MT103converter.models;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+import com.attijari.MT103converter.services.MT103Parser;
+import com.attijari.MT103converter.services.Transformer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.Deflater;
+
+/**
+ Benchmark de la compression des contenus de l'historique (CompressedText) :
+ taux de compression sans dictionnaire / avec dictionnaire, débit de compression (écriture en base)
+ et de décompression (téléchargement) sur un MT103, un pacs.008 et un pacs.008 de lot
+ Lancement : voir BenchmarkSupport
+ */
+public class CompressedTextBenchmark {
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        MT103Msg msg = new MT103Parser().parse(CompressedTextTest.MESSAGE);
+        Transformer transformer = new Transformer();
+        String xml = transformer.transform(msg).getXmlContent();
+        ReflectionTestUtils.setField(transformer, "maxBatchSize", 100);
+        String batch = transformer.transformBatch(Collections.nCopies(100, msg)).get(0).getXmlContent();
+
+        run("MT103", CompressedTextTest.MESSAGE);
+        run("pacs.008", xml);
+        run("pacs.008 lot x100", batch);
+    }
+
+    private static void run(String label, String text) {
+        int plain = text.getBytes(StandardCharsets.UTF_8).length;
+        int withoutDictionary = deflate(text);
+        byte[] compressed = CompressedText.of(text).bytes();
+
+        double encode = BenchmarkSupport.opsPerSecond(() -> CompressedText.of(text).bytes(), 1000, 3000);
+        double decode = BenchmarkSupport.opsPerSecond(() -> CompressedText.fromBytes(compressed).text(), 1000, 3000);
+        System.out.printf("%-18s %7d octets  deflate %6d (%4.1f%%)  dictionnaire %6d (%4.1f%%)%n",
+                label, plain, withoutDictionary, 100.0 * withoutDictionary / plain,
+                compressed.length, 100.0 * compressed.length / plain);
+        System.out.printf("%-18s compression %8.1f µs (%6.1f Mo/s)   décompression %8.1f µs (%6.1f Mo/s)%n",
+                "", 1_000_000 / encode, encode * plain / 1_000_000, 1_000_000 / decode, decode * plain / 1_000_000);
+    }
+
+    // deflate brut sans dictionnaire, même niveau
+    private static int deflate(String text) {
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(plain);
+        deflater.finish();
+        byte[] out = new byte[plain.length + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        deflater.end();
+        return length;
+    }
+}
@@ -0,0 +1,78 @@
+package com.attijari.MT103converter.models;
+
+import com.attijari.MT103converter.services.MongoConfig;
+import com.attijari.MT103converter.services.MT103Parser;
+import com.attijari.MT103converter.services.Transformer;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour CompressedText
+ Contenus de l'historique compressés avec le dictionnaire, relus à l'identique, anciennes entrées en chaîne lisibles
+ */
+public class CompressedTextTest {
+
+    static final String MESSAGE = """
+            {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{4:
+            :20:REF12345
+            :23B:CRED
+            :32A:240714EUR10000,50
+            :50K:/12345678
+            ALICE ÉLODIE SMITH
+            :59:/87654321
+            BOB SMITH
+            :70:FACTURE 2024-07
+            :71A:SHA
+            -}{5:{CHK:123456789ABC}}
+            """;
+
+    @Test
+    public void testRoundTripAndRatio() {
+        String xml = new Transformer().transform(new MT103Parser().parse(MESSAGE)).getXmlContent();
+        for (String text : new String[] {MESSAGE, xml, "", "x"}) {
+            byte[] bytes = CompressedText.of(text).bytes();
+            assertEquals(text, CompressedText.fromBytes(bytes).text());
+        }
+        // le dictionnaire couvre les balises : le pacs.008 tient en une petite fraction de sa taille
+        int compressed = CompressedText.of(xml).bytes().length;
+        assertTrue(compressed * 4 < xml.getBytes(StandardCharsets.UTF_8).length, compressed + " octets");
+
+        // trop court pour y gagner : stocké tel quel
+        assertEquals(CompressedText.RAW, CompressedText.of("x").bytes()[0]);
+        assertThrows(IllegalStateException.class, () -> CompressedText.fromBytes(new byte[] {9, 1}).text());
+    }
+
+    @Test
+    public void testEntityFieldsAreStoredCompressedAndReadLazily() {
+        MongoMappingContext context = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(new MongoConfig().mongoCustomConversions());
+        context.setSimpleTypeHolder(converter.getCustomConversions().getSimpleTypeHolder());
+        converter.afterPropertiesSet();
+
+        MT103Msg msg = new MT103Parser().parse(MESSAGE);
+        msg.setPacs008Xml("<Document/>");
+        Document document = new Document();
+        converter.write(msg, document);
+        assertInstanceOf(Binary.class, document.get("rawContent"));
+        assertInstanceOf(Binary.class, document.get("pacs008Xml"));
+
+        MT103Msg read = converter.read(MT103Msg.class, document);
+        assertEquals(MESSAGE, read.getRawContent());
+        assertEquals("<Document/>", read.getPacs008Xml());
+
+        // entrée écrite avant la compression
+        Document legacy = new Document("rawPacs008Xml", "<Document/>").append("mt103Result", null).append("success", false);
+        Pacs008ToMT103Conversion conversion = converter.read(Pacs008ToMT103Conversion.class, legacy);
+        assertEquals("<Document/>", conversion.getRawPacs008Xml());
+        assertNull(conversion.getMt103Result());
+    }
+}
@@ -0,0 +1,78 @@
+package com.attijari.MT103converter.models;
+
+import com.attijari.MT103converter.services.MT103Parser;
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour ConversionSummary
+ Résumé de l'historique repris des champs 20, 32A, 50K et 59 ou de la transaction pacs.008
+ */
+public class ConversionSummaryTest {
+
+    @Test
+    public void testForwardSummaryFromMt103Fields() {
+        MT103Msg msg = new MT103Parser().parse("{1:F01BANKFRPPAXXX0000000000}{4:\n"
+                + ":20:REF123\n"
+                + ":32A:250101EUR10000,50\n"
+                + ":50K:/FR7612345\nJOHN DOE\nPARIS\n"
+                + ":59:/DE8900000\nJANE ROE\n"
+                + "-}");
+        msg.setPacs008Xml("<Document/>");
+
+        ConversionSummary summary = ConversionSummary.forward(msg);
+        assertEquals("REF123", summary.getTransactionRef());
+        assertEquals("10000,50", summary.getAmount());
+        assertEquals("EUR", summary.getCurrency());
+        // la ligne de compte (/...) n'est pas le nom de la partie
+        assertEquals("JOHN DOE", summary.getSender());
+        assertEquals("JANE ROE", summary.getBeneficiary());
+        assertTrue(summary.isSuccess());
+        assertEquals(ConversionSummary.FORWARD, summary.getDirection());
+
+        msg.setPacs008Xml(null);
+        assertFalse(ConversionSummary.forward(msg).isSuccess());
+    }
+
+    @Test
+    public void testReverseSummaryFromTransaction() {
+        Pacs008Transaction tx = new Pacs008Transaction();
+        tx.add(Field.END_TO_END_ID, "E2E-1");
+        tx.add(Field.AMOUNT, " 250.75 ");
+        tx.add(Field.CURRENCY, "USD");
+        tx.add(Field.DEBTOR_NAME, "ACME SA");
+
+        ConversionSummary summary = ConversionSummary.reverse(tx, false);
+        assertEquals("E2E-1", summary.getTransactionRef());
+        assertEquals("250.75", summary.getAmount());
+        assertEquals("USD", summary.getCurrency());
+        assertEquals("ACME SA", summary.getSender());
+        assertNull(summary.getBeneficiary());
+        assertFalse(summary.isSuccess());
+        assertEquals(ConversionSummary.REVERSE, summary.getDirection());
+    }
+
+    @Test
+    public void testSearchKeysArePrefixesOfReferenceAndPartyWords() {
+        Pacs008Transaction tx = new Pacs008Transaction();
+        tx.add(Field.INSTR_ID, "INV-2024/77");
+        tx.add(Field.DEBTOR_NAME, "Société Générale");
+        tx.add(Field.CREDITOR_NAME, "John O'Neil");
+        List<String> keys = ConversionSummary.reverse(tx, true).getSearchKeys();
+
+        for (String key : List.of("i", "inv-2024/77", "inv", "2024", "77", "soc", "societe", "genera", "john", "o", "neil")) {
+            assertTrue(keys.contains(key), key);
+        }
+        assertFalse(keys.contains("ociete"));
+
+        // termes normalisés comme les clés
+        assertEquals(List.of("societe", "inv-2024/77"), ConversionSummary.searchTerms("  SOCIÉTÉ  Inv-2024/77 "));
+        assertEquals(List.of(), ConversionSummary.searchTerms(" "));
+        String longWord = "x".repeat(ConversionSummary.MAX_KEY_LENGTH + 5);
+        assertEquals(List.of(longWord.substring(0, ConversionSummary.MAX_KEY_LENGTH)), ConversionSummary.searchTerms(longWord));
+    }
+}
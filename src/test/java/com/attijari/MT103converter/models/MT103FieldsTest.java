@@ -0,0 +1,77 @@
+package com.attijari.MT103converter.models;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour MT103Fields
+ Se comporte comme une HashMap et reste transparent pour le mapping Mongo de MT103Msg.fields
+ */
+public class MT103FieldsTest {
+
+    @Test
+    public void testBehavesLikeHashMap() {
+        String[] keys = {"20", "23B", "32A", "50K", "59", "71A", "77T", "ZZ", "2", "99Z", "5a", "", null};
+        Random random = new Random(103);
+        Map<String, String> expected = new HashMap<>();
+        MT103Fields fields = new MT103Fields();
+
+        for (int i = 0; i < 5000; i++) {
+            String key = keys[random.nextInt(keys.length)];
+            String value = random.nextInt(5) == 0 ? null : "V" + i;
+            switch (random.nextInt(4)) {
+                case 0, 1 -> assertEquals(expected.put(key, value), fields.put(key, value));
+                case 2 -> assertEquals(expected.remove(key), fields.remove(key));
+                default -> {
+                    // suppression par l'itérateur
+                    Iterator<Map.Entry<String, String>> it = fields.entrySet().iterator();
+                    if (it.hasNext()) {
+                        expected.remove(it.next().getKey());
+                        it.remove();
+                    }
+                }
+            }
+            assertEquals(expected.get(key), fields.get(key));
+            assertEquals(expected.containsKey(key), fields.containsKey(key));
+            assertEquals(expected, fields);
+            assertEquals(expected.hashCode(), fields.hashCode());
+        }
+    }
+
+    @Test
+    public void testMongoMappingUnchanged() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        Map<String, String> values = new HashMap<>(Map.of("20", "REF12345", "32A", "240714EUR10,", "ZZ", "INCONNU"));
+        MT103Msg msg = new MT103Msg(":20:REF12345", values);
+
+        Document document = new Document();
+        converter.write(msg, document);
+        Document stored = document.get("fields", Document.class);
+        assertEquals(new Document(values), stored);
+        assertFalse(stored.containsKey("_class"));
+
+        MT103Msg read = converter.read(MT103Msg.class, document);
+        assertInstanceOf(MT103Fields.class, read.getFields());
+        assertEquals(values, read.getFields());
+        assertEquals("240714EUR10,", read.getField("32A"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+import com.attijari.MT103converter.converters.MT103ToPacs008Converter;
+import com.attijari.MT103converter.models.MT103Msg;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Benchmark de /convert/batch : lot de 200 MT103 convertis (validation XSD comprise)
+ - en séquence sur le thread appelant
+ - par BatchConversionExecutor avec 1, 2 et 4 threads (résultats remis dans l'ordre)
+ Le gain attendu dépend du nombre de processeurs disponibles (affiché en tête).
+ Lancement : voir BenchmarkSupport
+ */
+public class BatchConversionBenchmark {
+
+    private static final int BATCH_SIZE = 200;
+
+    private static final String MESSAGE = """
+            {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{4:
+            :20:REF%05d
+            :23B:CRED
+            :32A:240714EUR10000,50
+            :33B:EUR10000,50
+            :50K:/12345678
+            ALICE SMITH
+            :59:/87654321
+            BOB SMITH
+            :70:FACTURE 2024-07
+            :71A:SHA
+            -}{5:{CHK:123456789ABC}}
+            """;
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        System.out.printf("processeurs disponibles : %d%n", Runtime.getRuntime().availableProcessors());
+
+        MT103ToPacs008Converter converter = new MT103ToPacs008Converter();
+        ReflectionTestUtils.setField(converter, "parser", new MT103Parser());
+        ReflectionTestUtils.setField(converter, "validator", new Validator());
+        ReflectionTestUtils.setField(converter, "transformer", new Transformer());
+
+        MT103Parser parser = new MT103Parser();
+        List<MT103Msg> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(parser.parse(String.format(MESSAGE, i)));
+        }
+
+        Runnable sequential = () -> {
+            for (MT103Msg msg : batch) {
+                check(converter.process(msg).isSuccess());
+            }
+        };
+        // chauffe complète du JIT avant la mesure de référence
+        BenchmarkSupport.opsPerSecond(sequential, 5000, 1);
+        double reference = report("séquentiel    ", sequential, 0);
+
+        for (int threads : new int[]{1, 2, 4}) {
+            BatchConversionExecutor executor = new BatchConversionExecutor();
+            ReflectionTestUtils.setField(executor, "threads", threads);
+            executor.start();
+            Runnable pooled = () -> {
+                int[] delivered = new int[1];
+                BatchConversionExecutor.OrderedBatch<MT103ToPacs008Converter.ConversionResult> ordered =
+                        executor.start(result -> {
+                            check(result.isSuccess());
+                            delivered[0]++;
+                        });
+                for (MT103Msg msg : batch) {
+                    ordered.submit(() -> converter.process(msg));
+                }
+                ordered.finish();
+                check(delivered[0] == BATCH_SIZE);
+            };
+            report(String.format("pool %d thread%s", threads, threads > 1 ? "s" : " "), pooled, reference);
+            executor.stop();
+        }
+    }
+
+    private static double report(String label, Runnable batch, double reference) {
+        double ops = BenchmarkSupport.opsPerSecond(batch, 3000, 5000);
+        System.out.printf("%s : %7.1f ms/lot   %7.0f messages/s%s%n", label, 1000 / ops, ops * BATCH_SIZE,
+                reference > 0 ? String.format("   x%.2f", ops / reference) : "");
+        return ops;
+    }
+
+    private static void check(boolean success) {
+        if (!success) {
+            throw new IllegalStateException("conversion en échec");
+        }
+    }
+}
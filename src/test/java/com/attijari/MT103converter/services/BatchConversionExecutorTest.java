@@ -0,0 +1,74 @@
+package com.attijari.MT103converter.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchConversionExecutorTest {
+
+    private BatchConversionExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new BatchConversionExecutor();
+        ReflectionTestUtils.setField(executor, "threads", 4);
+        ReflectionTestUtils.setField(executor, "window", 3);
+        executor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.stop();
+    }
+
+    @Test
+    public void testResultsDeliveredInSubmissionOrder() {
+        List<Integer> delivered = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        BatchConversionExecutor.OrderedBatch<Integer> batch = executor.start(delivered::add);
+
+        for (int i = 0; i < 50; i++) {
+            int value = i;
+            batch.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    // les premières tâches finissent après les suivantes
+                    Thread.sleep(value % 4 == 0 ? 5 : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return value;
+            });
+        }
+        batch.finish();
+
+        assertEquals(50, delivered.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, delivered.get(i));
+        }
+        assertTrue(maxRunning.get() <= 3, "fenêtre dépassée: " + maxRunning.get());
+    }
+
+    @Test
+    public void testTaskFailureStopsBatch() {
+        List<Integer> delivered = new ArrayList<>();
+        BatchConversionExecutor.OrderedBatch<Integer> batch = executor.start(delivered::add);
+        batch.submit(() -> 1);
+        batch.submit(() -> {
+            throw new IllegalArgumentException("boom");
+        });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, batch::finish);
+        assertEquals("boom", e.getCause().getMessage());
+        assertEquals(List.of(1), delivered);
+    }
+}
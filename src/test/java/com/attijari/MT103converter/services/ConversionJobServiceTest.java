@@ -0,0 +1,153 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.converters.MT103ToPacs008Converter;
+import com.attijari.MT103converter.converters.Pacs008ToMT103Converter;
+import com.attijari.MT103converter.models.ConversionJob;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversionJobServiceTest {
+
+    private static final String MESSAGE = """
+            {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{4:
+            :20:REF12345
+            :23B:CRED
+            :32A:240714EUR10000,50
+            :33B:EUR10000,50
+            :50K:/12345678
+            ALICE SMITH
+            :59:/87654321
+            BOB SMITH
+            :70:FACTURE 2024-07
+            :71A:SHA
+            -}{5:{CHK:123456789ABC}}""";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ConversionJobService service;
+    private HistoryWriter historyWriter;
+
+    @BeforeEach
+    void setUp() {
+        // conversion bloquée jusqu'à release : garde le seul thread du pool occupé
+        MT103ToPacs008Converter converter = new MT103ToPacs008Converter() {
+            @Override
+            public ConversionResult process(MT103Msg mt103) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.process(mt103);
+            }
+        };
+        ReflectionTestUtils.setField(converter, "validator", new Validator());
+        ReflectionTestUtils.setField(converter, "transformer", new Transformer());
+        historyWriter = Mockito.mock(HistoryWriter.class);
+
+        service = new ConversionJobService();
+        ReflectionTestUtils.setField(service, "converter", converter);
+        Pacs008ToMT103Converter reverseConverter = new Pacs008ToMT103Converter();
+        ReflectionTestUtils.setField(reverseConverter, "validator", new Validator());
+        ReflectionTestUtils.setField(service, "reverseConverter", reverseConverter);
+        ReflectionTestUtils.setField(service, "historyWriter", historyWriter);
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.stop();
+    }
+
+    @Test
+    public void testQueueFullIsRejected() {
+        service.submitMt103(MESSAGE, "alice");
+        waitUntil(() -> service.getQueuedCount() == 0);
+        service.submitMt103(MESSAGE, "alice");
+
+        ConversionJobService.JobQueueFullException e = assertThrows(ConversionJobService.JobQueueFullException.class,
+                () -> service.submitMt103(MESSAGE, "alice"));
+        assertEquals(5, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testJobCompletesWithResults() {
+        ConversionJob job = service.submitMt103(MESSAGE + "$" + MESSAGE, "alice");
+        assertFalse(job.isFinished());
+        assertNull(service.getJob(job.getId(), "bob"), "job visible par un autre utilisateur");
+
+        release.countDown();
+        waitUntil(job::isFinished);
+
+        assertEquals(ConversionJob.Status.DONE, job.getStatus());
+        assertEquals(2, job.getResults().size());
+        assertTrue(job.getResults().get(0).success(), job.getResults().get(0).errorMessage());
+        assertEquals("REF12345", job.getResults().get(1).reference());
+        assertTrue(job.getResults().get(1).content().contains("<EndToEndId>REF12345</EndToEndId>"));
+        Mockito.verify(historyWriter, Mockito.times(2)).write(Mockito.any(MT103Msg.class));
+    }
+
+    @Test
+    public void testOldestFinishedJobsAreEvictedBeyondLimit() {
+        ReflectionTestUtils.setField(service, "maxRetained", 1);
+        ConversionJob first = service.submitMt103(MESSAGE, "alice");
+        ConversionJob second = service.submitMt103(MESSAGE, "alice");
+        release.countDown();
+        waitUntil(() -> first.isFinished() && second.isFinished());
+
+        service.evictExpired();
+
+        assertNull(service.getJob(first.getId(), "alice"));
+        assertSame(second, service.getJob(second.getId(), "alice"));
+        assertTrue(second.getResultChars() > 0);
+    }
+
+    @Test
+    public void testSingleTransactionDocumentIsSchemaValidated() {
+        // lisible transaction par transaction, mais hors schéma (GrpHdr incomplet, pas de SttlmInf)
+        String xml = """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                  <FIToFICstmrCdtTrf>
+                    <GrpHdr><MsgId>MSG1</MsgId></GrpHdr>
+                    <CdtTrfTxInf>
+                      <PmtId><InstrId>INSTR-1</InstrId><EndToEndId>E2E-1</EndToEndId></PmtId>
+                      <IntrBkSttlmAmt Ccy="EUR">100.00</IntrBkSttlmAmt>
+                      <IntrBkSttlmDt>2025-07-14</IntrBkSttlmDt>
+                      <Dbtr><Nm>ALPHA</Nm></Dbtr>
+                      <Cdtr><Nm>BETA</Nm></Cdtr>
+                    </CdtTrfTxInf>
+                  </FIToFICstmrCdtTrf>
+                </Document>""";
+        assertFalse(ConversionJobService.hasSeveralTransactions(xml));
+
+        ConversionJob job = service.submitPacs008(xml, "alice");
+        waitUntil(job::isFinished);
+
+        assertEquals(ConversionJob.Status.FAILED, job.getStatus());
+        assertTrue(job.getErrorMessage().startsWith("Validation XSD échouée"), job.getErrorMessage());
+        assertEquals(1, job.getFailureCount());
+        assertFalse(job.getResults().get(0).success());
+        Mockito.verify(historyWriter).write(Mockito.any(Pacs008ToMT103Conversion.class));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "délai dépassé");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.converters.MT103ToPacs008Converter;
+import com.attijari.MT103converter.converters.Pacs008ToMT103Converter;
+import com.attijari.MT103converter.models.ErrorCall;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour ConversionMetrics
+ Durée de chaque étape, issue des conversions et erreurs de validation par catégorie
+ */
+public class ConversionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConversionMetrics metrics = new ConversionMetrics(registry);
+
+    @Test
+    public void testForwardStagesAndOutcomes() {
+        MT103ToPacs008Converter converter = new MT103ToPacs008Converter();
+        ReflectionTestUtils.setField(converter, "parser", new MT103Parser());
+        ReflectionTestUtils.setField(converter, "validator", new Validator());
+        ReflectionTestUtils.setField(converter, "transformer", new Transformer());
+        ReflectionTestUtils.setField(converter, "metrics", metrics);
+
+        assertTrue(converter.process(MT103TokenizerTest.FULL_MESSAGE).isSuccess());
+        assertFalse(converter.process(MT103TokenizerTest.FULL_MESSAGE.replace(":20:REF12345\n", "")).isSuccess());
+
+        for (String stage : new String[] {"parse", "validate_mt103"}) {
+            assertEquals(2, timerCount("mt103_to_pacs008", stage), stage);
+        }
+        for (String stage : new String[] {"transform", "validate_pacs008"}) {
+            assertEquals(1, timerCount("mt103_to_pacs008", stage), stage);
+        }
+        assertEquals(1, result("mt103_to_pacs008", "success"));
+        assertEquals(1, result("mt103_to_pacs008", "validation_error"));
+        assertEquals(1, registry.get("conversion.validation.errors")
+                .tags("direction", "mt103_to_pacs008", "category", ErrorCall.MISSING_FIELD).counter().count());
+    }
+
+    @Test
+    public void testReverseMalformedDocumentIsCategorized() {
+        Pacs008ToMT103Converter converter = new Pacs008ToMT103Converter();
+        ReflectionTestUtils.setField(converter, "validator", new Validator());
+        ReflectionTestUtils.setField(converter, "metrics", metrics);
+
+        assertFalse(converter.process("<Document><pas-fermé></Document>").isSuccess());
+
+        assertEquals(1, timerCount("pacs008_to_mt103", "validate_pacs008"));
+        assertEquals(0, timerCount("pacs008_to_mt103", "transform"));
+        assertEquals(1, result("pacs008_to_mt103", "validation_error"));
+        assertEquals(1, registry.get("conversion.validation.errors")
+                .tags("category", Validator.MALFORMED_XML).counter().count());
+        assertEquals("xsd_max_length", Validator.schemaCategory("cvc-maxLength-valid: Value 'x' with length = '141'"));
+    }
+
+    private long timerCount(String direction, String stage) {
+        return registry.get("conversion.stage").tags("direction", direction, "stage", stage).timer().count();
+    }
+
+    private double result(String direction, String outcome) {
+        return registry.get("conversion.result").tags("direction", direction, "outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,103 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.DailyConversionStats;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class ConversionStatsServiceTest {
+
+    @Test
+    public void testInsertedConversionsIncrementDayAndAllCounters() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyConversionStats.class)).thenReturn(bulk);
+        ConversionStatsService service = new ConversionStatsService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        MT103Msg converted = new MT103Msg();
+        converted.setUsername("alice");
+        converted.setPacs008Xml("<Document/>");
+        MT103Msg failed = new MT103Msg();
+        failed.setUsername("alice");
+        Pacs008ToMT103Conversion reverse = new Pacs008ToMT103Conversion();
+        reverse.setUsername("alice");
+        reverse.setSuccess(true);
+        service.recordInserted(List.of(converted, failed, reverse));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(bulk, Mockito.times(2)).upsert(queries.capture(), updates.capture());
+        Mockito.verify(bulk).execute();
+
+        // un compteur du jour et un compteur depuis le début, incrémentés à l'identique
+        Map<Object, Document> incByDay = new HashMap<>();
+        for (int i = 0; i < 2; i++) {
+            incByDay.put(queries.getAllValues().get(i).getQueryObject().get("_id"),
+                    (Document) updates.getAllValues().get(i).getUpdateObject().get("$inc"));
+        }
+        String today = DailyConversionStats.id("alice", LocalDate.now().toString());
+        String all = DailyConversionStats.id("alice", DailyConversionStats.ALL_DAYS);
+        assertEquals(Set.of(today, all), incByDay.keySet());
+        Document inc = incByDay.get(today);
+        assertEquals(2L, inc.get("mt103Total"));
+        assertEquals(1L, inc.get("mt103Success"));
+        assertEquals(1L, inc.get("reverseTotal"));
+        assertEquals(1L, inc.get("reverseSuccess"));
+        assertEquals(inc, incByDay.get(all));
+    }
+
+    @Test
+    public void testRebuildReplacesByIdWithoutEmptyingCollection() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyConversionStats.class)).thenReturn(bulk);
+        ConversionStatsService service = new ConversionStatsService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        DailyConversionStats all = new DailyConversionStats("alice", DailyConversionStats.ALL_DAYS);
+        all.setMt103Total(3);
+        String stale = DailyConversionStats.id("bob", "2025-01-01");
+        int removed = service.replace(Map.of(all.getId(), all), new HashSet<>(Set.of(all.getId(), stale)));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<FindAndReplaceOptions> options = ArgumentCaptor.forClass(FindAndReplaceOptions.class);
+        Mockito.verify(bulk).replaceOne(query.capture(), eq(all), options.capture());
+        assertEquals(all.getId(), query.getValue().getQueryObject().get("_id"));
+        assertTrue(options.getValue().isUpsert());
+        // seul le compteur sans historique est supprimé, par _id
+        assertEquals(1, removed);
+        Mockito.verify(mongoTemplate).remove(query.capture(), eq(DailyConversionStats.class));
+        assertEquals(new Document("$in", List.of(stale)), query.getValue().getQueryObject().get("_id"));
+    }
+
+    @Test
+    public void testStatsFailureDoesNotPropagate() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(DailyConversionStats.class)))
+                .thenThrow(new IllegalStateException("Mongo indisponible"));
+        ConversionStatsService service = new ConversionStatsService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        assertDoesNotThrow(() -> service.recordInserted(List.of(new MT103Msg())));
+    }
+}
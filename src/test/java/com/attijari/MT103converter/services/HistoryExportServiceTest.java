@@ -0,0 +1,140 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.ConversionSummary;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class HistoryExportServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    public void testCsvMergesBothDirectionsByDate() throws Exception {
+        MT103Msg first = mt103("m1", DAY, "REF1", "ACME, INC");
+        MT103Msg third = mt103("m2", DAY.plusHours(2), "REF3", "JOHN \"JJ\" DOE");
+        Pacs008ToMT103Conversion second = reverse("r1", DAY.plusHours(1), "E2E-2");
+        HistoryExportService service = service(List.of(first, third), List.of(second));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.export("alice", DAY.minusDays(1), DAY.plusDays(1), HistoryExportService.Format.CSV, out);
+
+        assertEquals(3, count);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(HistoryExportService.CSV_HEADER, lines[0]);
+        assertTrue(lines[1].startsWith("m1,2025-03-01T09:00,forward,REF1,"), lines[1]);
+        assertTrue(lines[1].contains(",\"ACME, INC\","), lines[1]);
+        assertTrue(lines[2].startsWith("r1,"), lines[2]);
+        assertTrue(lines[3].contains(",\"JOHN \"\"JJ\"\" DOE\","), lines[3]);
+    }
+
+    @Test
+    public void testCsvNeutralisesFormulas() throws Exception {
+        MT103Msg formula = mt103("m1", DAY, "=HYPERLINK(\"http://x\",\"REF\")", "@SUM(A1)");
+        formula.getSummary().setBeneficiary("-2+3");
+        formula.getSummary().setAmount("+100");
+        HistoryExportService service = service(List.of(formula), List.of());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export("alice", null, null, HistoryExportService.Format.CSV, out);
+
+        String line = out.toString(StandardCharsets.UTF_8).split("\r\n")[1];
+        assertTrue(line.contains(",forward,\"'=HYPERLINK(\"\"http://x\"\",\"\"REF\"\")\",'+100,"), line);
+        assertTrue(line.contains(",'@SUM(A1),'-2+3,"), line);
+    }
+
+    @Test
+    public void testQueriesAreUserAndDateBoundedAndSortedByDate() throws Exception {
+        HistoryExportService service = service(List.of(), List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export("alice", DAY, DAY.plusDays(30), HistoryExportService.Format.NDJSON, out);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).stream(query.capture(), eq(MT103Msg.class));
+        Document filter = query.getValue().getQueryObject();
+        assertEquals("alice", filter.get("username"));
+        assertEquals(new Document("$gte", DAY).append("$lt", DAY.plusDays(30)), filter.get("createdAt"));
+        assertEquals(new Document("createdAt", 1).append("_id", 1), query.getValue().getSortObject());
+        // résumés seulement : pas de contenu des messages
+        assertFalse(query.getValue().getFieldsObject().containsKey("rawContent"));
+        assertEquals("", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testZipHoldsInputAndOutputOfEachConversion() throws Exception {
+        MT103Msg msg = mt103("m1", DAY, "REF1", "ACME");
+        msg.setRawContent("{4:\n:20:REF1\n-}");
+        msg.setPacs008Xml("<Document/>");
+        Pacs008ToMT103Conversion failed = reverse("r1", DAY.plusHours(1), "E2E-2");
+        failed.setRawPacs008Xml("<Document>KO</Document>");
+        HistoryExportService service = service(List.of(msg), List.of(failed));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export("alice", null, null, HistoryExportService.Format.ZIP, out);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        // conversion en échec : pas de message produit
+        assertEquals(List.of("2025-03-01_mt103-pacs008_m1/MT103.txt", "2025-03-01_mt103-pacs008_m1/PACS008.xml",
+                "2025-03-01_pacs008-mt103_r1/PACS008.xml"), names);
+    }
+
+    private HistoryExportService service(List<MT103Msg> mt103, List<Pacs008ToMT103Conversion> reverse) {
+        mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(MT103Msg.class))).thenAnswer(call -> mt103.stream());
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(Pacs008ToMT103Conversion.class))).thenAnswer(call -> reverse.stream());
+        HistoryExportService service = new HistoryExportService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "summaryService", new ConversionSummaryService());
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        return service;
+    }
+
+    private static MT103Msg mt103(String id, LocalDateTime createdAt, String reference, String sender) {
+        MT103Msg msg = new MT103Msg();
+        msg.setId(id);
+        ReflectionTestUtils.setField(msg, "createdAt", createdAt);
+        ConversionSummary summary = new ConversionSummary();
+        summary.setTransactionRef(reference);
+        summary.setSender(sender);
+        summary.setDirection(ConversionSummary.FORWARD);
+        summary.setSuccess(true);
+        msg.setSummary(summary);
+        return msg;
+    }
+
+    private static Pacs008ToMT103Conversion reverse(String id, LocalDateTime createdAt, String reference) {
+        Pacs008ToMT103Conversion conversion = new Pacs008ToMT103Conversion();
+        conversion.setId(id);
+        ReflectionTestUtils.setField(conversion, "createdAt", createdAt);
+        ConversionSummary summary = ConversionSummary.reverseFailure();
+        summary.setTransactionRef(reference);
+        conversion.setSummary(summary);
+        return conversion;
+    }
+}
@@ -0,0 +1,47 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class HistoryIndexServiceTest {
+
+    @Test
+    public void testCompoundIndexesAreEnsuredOnBothCollections() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        // contexte de mapping de l'application (types simples des conversions de MongoConfig)
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoConfig().mongoCustomConversions().getSimpleTypeHolder());
+        Mockito.when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        IndexOperations mt103Indexes = Mockito.mock(IndexOperations.class);
+        IndexOperations reverseIndexes = Mockito.mock(IndexOperations.class);
+        Mockito.when(mongoTemplate.indexOps(MT103Msg.class)).thenReturn(mt103Indexes);
+        Mockito.when(mongoTemplate.indexOps(Pacs008ToMT103Conversion.class)).thenReturn(reverseIndexes);
+        HistoryIndexService service = new HistoryIndexService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        assertEquals(4, service.ensureIndexes());
+
+        ArgumentCaptor<IndexDefinition> indexes = ArgumentCaptor.forClass(IndexDefinition.class);
+        Mockito.verify(reverseIndexes, Mockito.times(2)).createIndex(indexes.capture());
+        List<Object> keys = indexes.getAllValues().stream().map(index -> (Object) index.getIndexKeys()).toList();
+        assertTrue(keys.contains(new Document("username", 1).append("createdAt", -1).append("_id", -1)), keys.toString());
+        Mockito.verify(mt103Indexes, Mockito.times(2)).createIndex(any(IndexDefinition.class));
+    }
+}
@@ -0,0 +1,163 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class HistoryPageServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    @Test
+    public void testCollectionsAreMergedNewestFirst() {
+        // même date : départagés par l'identifiant, plus grand en premier
+        String sameTimeLow = new ObjectId("000000000000000000000001").toHexString();
+        String sameTimeHigh = new ObjectId("000000000000000000000002").toHexString();
+        MT103Msg m1 = mt103(NOW, sameTimeHigh);
+        MT103Msg m2 = mt103(NOW.minusMinutes(5), new ObjectId().toHexString());
+        MT103Msg m3 = mt103(NOW.minusMinutes(20), new ObjectId().toHexString());
+        Pacs008ToMT103Conversion r1 = reverse(NOW, sameTimeLow);
+        Pacs008ToMT103Conversion r2 = reverse(NOW.minusMinutes(10), new ObjectId().toHexString());
+
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(MT103Msg.class))).thenReturn(Stream.of(m1, m2, m3));
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(Pacs008ToMT103Conversion.class))).thenReturn(Stream.of(r1, r2));
+        HistoryPageService service = new HistoryPageService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        HistoryPageService.Page page = service.page("alice", null, 3, List.of());
+        assertEquals(List.of(m1, r1, m2), page.entries());
+        assertNotNull(page.nextCursor());
+
+        // le jeton reprend la dernière ligne de la page
+        HistoryPageService.Row last = HistoryPageService.decode(page.nextCursor());
+        assertEquals(m2.getCreatedAt(), last.createdAt());
+        assertEquals(m2.getId(), last.id());
+
+        // une ligne de plus que la page est demandée à chaque collection, sans projection des messages
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).stream(query.capture(), eq(MT103Msg.class));
+        assertEquals(4, query.getValue().getLimit());
+        assertEquals(new Document("createdAt", -1).append("_id", -1), query.getValue().getSortObject());
+        assertFalse(query.getValue().getFieldsObject().containsKey("rawContent"));
+        assertFalse(query.getValue().getFieldsObject().containsKey("pacs008Xml"));
+    }
+
+    @Test
+    public void testLastPageHasNoCursorAndQueriesStartAfterCursor() {
+        MT103Msg m1 = mt103(NOW.minusMinutes(30), new ObjectId().toHexString());
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(MT103Msg.class))).thenReturn(Stream.of(m1));
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(Pacs008ToMT103Conversion.class))).thenReturn(Stream.empty());
+        HistoryPageService service = new HistoryPageService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        String cursor = HistoryPageService.encode(new HistoryPageService.Row(NOW, new ObjectId().toHexString(), null));
+        HistoryPageService.Page page = service.page("alice", cursor, 10, List.of());
+        assertEquals(List.of(m1), page.entries());
+        assertNull(page.nextCursor());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).stream(query.capture(), eq(Pacs008ToMT103Conversion.class));
+        assertTrue(query.getValue().getQueryObject().containsKey("$or"));
+    }
+
+    @Test
+    public void testEntriesWithoutDateComeLast() {
+        // ancien document sans createdAt, relu par le convertisseur Mongo comme en production
+        MappingMongoConverter converter = converter();
+        MT103Msg legacy = converter.read(MT103Msg.class,
+                new Document("_id", new ObjectId("000000000000000000000009")).append("username", "alice"));
+        assertNull(legacy.getCreatedAt());
+        Pacs008ToMT103Conversion dated = reverse(NOW, new ObjectId("000000000000000000000001").toHexString());
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(MT103Msg.class))).thenAnswer(call -> Stream.of(legacy));
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(Pacs008ToMT103Conversion.class))).thenAnswer(call -> Stream.of(dated));
+        HistoryPageService service = new HistoryPageService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        HistoryPageService.Page page = service.page("alice", null, 1, List.of());
+        assertEquals(List.of(dated), page.entries());
+        HistoryPageService.Page both = service.page("alice", null, 2, List.of());
+        assertEquals(List.of(dated, legacy), both.entries());
+
+        // jeton d'une entrée sans date : suite limitée aux entrées sans date
+        String cursor = HistoryPageService.encode(new HistoryPageService.Row(null, legacy.getId(), null));
+        assertNull(HistoryPageService.decode(cursor).createdAt());
+        service.page("alice", cursor, 10, List.of());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate, Mockito.times(3)).stream(query.capture(), eq(MT103Msg.class));
+        Document filter = query.getValue().getQueryObject();
+        assertTrue(filter.containsKey("createdAt") && filter.get("createdAt") == null, filter.toJson());
+    }
+
+    @Test
+    public void testSearchIsAnIndexedEqualityOnSearchKeys() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(MT103Msg.class))).thenAnswer(call -> Stream.empty());
+        Mockito.when(mongoTemplate.stream(any(Query.class), eq(Pacs008ToMT103Conversion.class))).thenAnswer(call -> Stream.empty());
+        HistoryPageService service = new HistoryPageService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        service.page("alice", null, 10, List.of("jo"));
+        service.page("alice", null, 10, List.of("jo", "ref1"));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).stream(queries.capture(), eq(MT103Msg.class));
+        assertEquals("jo", queries.getAllValues().get(0).getQueryObject().get("summary.searchKeys"));
+        assertEquals(new Document("$all", List.of("jo", "ref1")),
+                queries.getAllValues().get(1).getQueryObject().get("summary.searchKeys"));
+        // les clés de recherche ne sont pas relues avec les lignes
+        assertFalse(queries.getAllValues().get(0).getFieldsObject().containsKey("summary"));
+        assertFalse(queries.getAllValues().get(0).getFieldsObject().containsKey("summary.searchKeys"));
+    }
+
+    @Test
+    public void testInvalidCursorIsRejected() {
+        HistoryPageService service = new HistoryPageService();
+        assertThrows(IllegalArgumentException.class, () -> service.page("alice", "pas-un-jeton", 10, List.of()));
+        assertThrows(IllegalArgumentException.class, () -> service.page("alice", "%%%", 10, List.of()));
+    }
+
+    private static MT103Msg mt103(LocalDateTime createdAt, String id) {
+        MT103Msg msg = new MT103Msg();
+        msg.setId(id);
+        msg.setCreatedAt(createdAt);
+        return msg;
+    }
+
+    private static Pacs008ToMT103Conversion reverse(LocalDateTime createdAt, String id) {
+        Pacs008ToMT103Conversion conversion = new Pacs008ToMT103Conversion();
+        conversion.setId(id);
+        conversion.setCreatedAt(createdAt);
+        return conversion;
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
@@ -0,0 +1,101 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.HistoryPurgeJob;
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class HistoryPurgeServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHistoryIsDeletedInChunksAndCountersDecremented() {
+        MongoCollection<Document> mt103 = collection("MT103", 3,
+                List.of(List.of(entry("a"), entry("b")), List.of(entry("c"))));
+        MongoCollection<Document> reverse = collection("PACS008_CONVERSIONS", 0, List.of());
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.getCollectionName(MT103Msg.class)).thenReturn("MT103");
+        Mockito.when(mongoTemplate.getCollectionName(Pacs008ToMT103Conversion.class)).thenReturn("PACS008_CONVERSIONS");
+        Mockito.when(mongoTemplate.getCollection("MT103")).thenReturn(mt103);
+        Mockito.when(mongoTemplate.getCollection("PACS008_CONVERSIONS")).thenReturn(reverse);
+        ConversionStatsService stats = Mockito.mock(ConversionStatsService.class);
+
+        HistoryPurgeService service = new HistoryPurgeService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "stats", stats);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "pauseMs", 0L);
+
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        HistoryPurgeJob job = new HistoryPurgeJob("job-1", "alice", from, from.plusDays(31));
+        service.run(job);
+
+        assertEquals(HistoryPurgeJob.Status.DONE, job.getStatus());
+        assertEquals(3, job.getTotalCount());
+        assertEquals(3, job.getDeletedCount());
+
+        // suppression par identifiants, un deleteMany par paquet ; le paquet incomplet termine la collection
+        ArgumentCaptor<Bson> deletes = ArgumentCaptor.forClass(Bson.class);
+        Mockito.verify(mt103, Mockito.times(2)).deleteMany(deletes.capture());
+        assertEquals(new Document("_id", new Document("$in", List.of("a", "b"))), deletes.getAllValues().get(0));
+        Mockito.verify(mt103, Mockito.times(2)).find(any(Bson.class));
+        Mockito.verify(reverse, Mockito.never()).deleteMany(any(Bson.class));
+        Mockito.verify(stats, Mockito.times(2)).recordDeleted(eq("MT103"), anyList());
+
+        // filtre sur l'utilisateur et la période (fin exclue)
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        Mockito.verify(mt103).countDocuments(filter.capture());
+        Document query = (Document) filter.getValue();
+        assertEquals("alice", query.get("username"));
+        assertTrue(((Document) query.get("createdAt")).containsKey("$gte"));
+        assertTrue(((Document) query.get("createdAt")).containsKey("$lt"));
+    }
+
+    // chunks : documents rendus par chaque lecture successive
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<Document> collection(String name, long count, List<List<Document>> chunks) {
+        MongoCollection<Document> collection = Mockito.mock(MongoCollection.class);
+        Mockito.when(collection.getNamespace()).thenReturn(new MongoNamespace("test", name));
+        Mockito.when(collection.countDocuments(any(Bson.class))).thenReturn(count);
+        FindIterable<Document> find = Mockito.mock(FindIterable.class);
+        Mockito.when(collection.find(any(Bson.class))).thenReturn(find);
+        Mockito.when(find.projection(any(Bson.class))).thenReturn(find);
+        Mockito.when(find.limit(anyInt())).thenReturn(find);
+        List<List<Document>> remaining = new ArrayList<>(chunks);
+        Mockito.when(find.into(any(Collection.class))).thenAnswer(call -> {
+            Collection<Document> target = call.getArgument(0);
+            if (!remaining.isEmpty()) {
+                target.addAll(remaining.remove(0));
+            }
+            return target;
+        });
+        Mockito.when(collection.deleteMany(any(Bson.class))).thenAnswer(call -> {
+            Document filter = call.getArgument(0);
+            int size = ((List<?>) ((Document) filter.get("_id")).get("$in")).size();
+            return DeleteResult.acknowledged(size);
+        });
+        return collection;
+    }
+
+    private static Document entry(String id) {
+        return new Document("_id", id).append("username", "alice").append("success", true);
+    }
+}
@@ -0,0 +1,156 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class HistorySpoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSpooledDocumentsAreReplayedWithTheirIds() throws Exception {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        Mockito.when(mongoTemplate.getConverter()).thenReturn(converter);
+        Mockito.when(mongoTemplate.getCollectionName(MT103Msg.class)).thenReturn("MT103");
+        Mockito.when(mongoTemplate.getCollectionName(Pacs008ToMT103Conversion.class)).thenReturn("PACS008_CONVERSIONS");
+        MongoCollection<Document> mt103 = Mockito.mock(MongoCollection.class);
+        MongoCollection<Document> reverse = Mockito.mock(MongoCollection.class);
+        Mockito.when(mongoTemplate.getCollection("MT103")).thenReturn(mt103);
+        Mockito.when(mongoTemplate.getCollection("PACS008_CONVERSIONS")).thenReturn(reverse);
+
+        HistorySpool spool = new HistorySpool();
+        ReflectionTestUtils.setField(spool, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(spool, "stats", Mockito.mock(ConversionStatsService.class));
+        ReflectionTestUtils.setField(spool, "directory", dir.toString());
+        spool.start();
+
+        MT103Msg msg = new MT103Msg();
+        msg.setId(new ObjectId().toHexString());
+        msg.setUsername("alice");
+        msg.setCreatedAt(LocalDateTime.now()); // posé par HistoryWriter
+        Pacs008ToMT103Conversion conversion = new Pacs008ToMT103Conversion();
+        conversion.setId(new ObjectId().toHexString());
+        conversion.setMt103Result("{4:\n:20:REF\n-}");
+        spool.append(List.of(msg, conversion));
+        assertTrue(spool.hasPending());
+
+        // fichier encore ouvert : pas rejoué
+        assertTrue(spool.replay());
+        Mockito.verifyNoInteractions(mt103);
+
+        spool.rotate();
+        // ligne tronquée par un arrêt brutal : ignorée
+        try (var files = Files.list(dir)) {
+            Files.writeString(files.findFirst().orElseThrow(), "{\"c\": \"MT1", StandardOpenOption.APPEND);
+        }
+        assertTrue(spool.replay());
+
+        ArgumentCaptor<List<Document>> inserted = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(mt103).insertMany(inserted.capture(), any(InsertManyOptions.class));
+        Document replayed = inserted.getValue().get(0);
+        assertEquals(new ObjectId(msg.getId()), replayed.get("_id"));
+        assertEquals("alice", replayed.getString("username"));
+        assertInstanceOf(Date.class, replayed.get("createdAt"));
+        Mockito.verify(reverse).insertMany(anyList(), any(InsertManyOptions.class));
+
+        assertFalse(spool.hasPending());
+        assertEquals(1L, spool.getMetrics().get("skippedLines"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRejectedDocumentDoesNotBlockLaterFiles() throws Exception {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        Mockito.when(mongoTemplate.getConverter()).thenReturn(converter);
+        Mockito.when(mongoTemplate.getCollectionName(MT103Msg.class)).thenReturn("MT103");
+        MongoCollection<Document> mt103 = Mockito.mock(MongoCollection.class);
+        Mockito.when(mongoTemplate.getCollection("MT103")).thenReturn(mt103);
+
+        HistorySpool spool = new HistorySpool();
+        ReflectionTestUtils.setField(spool, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(spool, "stats", Mockito.mock(ConversionStatsService.class));
+        ReflectionTestUtils.setField(spool, "directory", dir.toString());
+        spool.start();
+
+        // premier fichier : un document que Mongo refuse à chaque fois (validation), puis un fichier valide
+        MT103Msg rejected = new MT103Msg();
+        rejected.setId(new ObjectId().toHexString());
+        spool.append(List.of(rejected));
+        spool.rotate();
+        MT103Msg valid = new MT103Msg();
+        valid.setId(new ObjectId().toHexString());
+        spool.append(List.of(valid));
+        spool.rotate();
+
+        Mockito.when(mt103.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenThrow(new MongoBulkWriteException(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()),
+                        List.of(new BulkWriteError(121, "Document failed validation", new BsonDocument(), 0)),
+                        null, new ServerAddress(), Set.of()))
+                .thenReturn(null);
+
+        assertTrue(spool.replay());
+
+        ArgumentCaptor<List<Document>> inserted = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(mt103, Mockito.times(2)).insertMany(inserted.capture(), any(InsertManyOptions.class));
+        assertEquals(new ObjectId(valid.getId()), inserted.getAllValues().get(1).get(0).get("_id"));
+        assertFalse(spool.hasPending());
+        assertEquals(1L, spool.getMetrics().get("deadLettered"));
+        String deadLetter = Files.readString(dir.resolve("history-deadletter.ndjson"));
+        assertTrue(deadLetter.contains(rejected.getId()) && deadLetter.contains("Document failed validation"), deadLetter);
+
+        // Mongo indisponible : rejeu interrompu, fichier conservé
+        MT103Msg pending = new MT103Msg();
+        pending.setId(new ObjectId().toHexString());
+        spool.append(List.of(pending));
+        spool.rotate();
+        Mockito.when(mt103.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenThrow(new MongoSocketOpenException("Connexion refusée", new ServerAddress()));
+        assertFalse(spool.replay());
+        assertTrue(spool.hasPending());
+    }
+}
@@ -0,0 +1,98 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008ToMT103Conversion;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+public class HistoryWriterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDocumentsAreBulkInsertedAndFlushedOnStop() {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulk);
+        Mockito.when(bulk.insert(anyList())).thenReturn(bulk);
+
+        HistoryWriter writer = newWriter(mongoTemplate, Mockito.mock(HistorySpool.class));
+        writer.start();
+
+        List<MT103Msg> messages = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            MT103Msg msg = new MT103Msg();
+            writer.write(msg);
+            messages.add(msg);
+            // identifiant et date connus dès la mise en file
+            assertNotNull(msg.getId());
+            assertNotNull(msg.getCreatedAt());
+        }
+        Pacs008ToMT103Conversion conversion = new Pacs008ToMT103Conversion();
+        writer.write(conversion);
+        assertNotNull(conversion.getId());
+        assertNotNull(conversion.getCreatedAt());
+        writer.stop();
+
+        ArgumentCaptor<List<Object>> inserted = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(bulk, Mockito.atLeast(3)).insert(inserted.capture());
+        List<Object> all = new ArrayList<>();
+        inserted.getAllValues().forEach(batch -> {
+            assertTrue(batch.size() <= 3, "paquet trop grand: " + batch.size());
+            all.addAll(batch);
+        });
+        assertEquals(8, all.size());
+        assertTrue(all.containsAll(messages));
+        assertTrue(all.contains(conversion));
+        assertEquals(8L, writer.getMetrics().get("written"));
+        assertEquals(0, writer.getMetrics().get("queueDepth"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedWritesGoToSpool() throws Exception {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        BulkOperations bulk = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulk);
+        Mockito.when(bulk.insert(anyList())).thenReturn(bulk);
+        Mockito.when(bulk.execute()).thenThrow(new DataAccessResourceFailureException("Mongo indisponible"));
+        HistorySpool spool = Mockito.mock(HistorySpool.class);
+        // le paquet est réutilisé après append : on compte les documents au moment de l'appel
+        AtomicInteger spooled = new AtomicInteger();
+        Mockito.doAnswer(call -> spooled.addAndGet(call.<List<?>>getArgument(0).size())).when(spool).append(anyList());
+
+        HistoryWriter writer = newWriter(mongoTemplate, spool);
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.write(new MT103Msg());
+        }
+        writer.stop();
+
+        assertEquals(5, spooled.get());
+        assertEquals(true, writer.getMetrics().get("degraded"));
+        assertEquals(5L, writer.getMetrics().get("spooled"));
+        assertEquals(0L, writer.getMetrics().get("lost"));
+    }
+
+    private static HistoryWriter newWriter(MongoTemplate mongoTemplate, HistorySpool spool) {
+        HistoryWriter writer = new HistoryWriter();
+        ReflectionTestUtils.setField(writer, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(writer, "spool", spool);
+        ReflectionTestUtils.setField(writer, "stats", Mockito.mock(ConversionStatsService.class));
+        ReflectionTestUtils.setField(writer, "batchSize", 3);
+        // pas de rejeu pendant le test
+        ReflectionTestUtils.setField(writer, "replayIntervalMs", 60_000L);
+        return writer;
+    }
+}
@@ -0,0 +1,173 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ Copie de l'ancienne implémentation regex de MT103Parser (sans logs),
+ conservée comme référence pour les tests d'équivalence et le benchmark
+ **/
+class LegacyMT103Parser {
+
+    public MT103Msg parse(String rawMessage) {
+        Map<String, String> fields = new HashMap<>();
+
+        try {
+            // Vérifier et extraire d'abord les blocs MT103
+            Map<String, String> blocks = extractBlocks(rawMessage);
+
+            // Valider la présence des blocs obligatoires (1, 2, 4, 5 - pas 3)
+            validateMandatoryBlocks(blocks);
+
+            // Parser le contenu du bloc 4 qui contient les champs de transaction
+            String block4 = blocks.get("4");
+            if (block4 != null && !block4.isEmpty()) {
+                fields = parseBlock4Fields(block4);
+            }
+            return new MT103Msg(rawMessage, fields);
+
+        } catch (Exception e) {
+            // En cas d'erreur, utiliser l'ancienne méthode comme fallback
+            return parseWithFallbackMethod(rawMessage);
+        }
+    }
+
+    /**
+     * Extrait les différents blocs d'un message MT103
+     */
+    private Map<String, String> extractBlocks(String rawMessage) {
+        Map<String, String> blocks = new HashMap<>();
+
+        // Nettoyer le message et supprimer les espaces/retours à la ligne inutiles
+        String cleanMessage = rawMessage.replaceAll("\\s+", " ").trim();
+
+        // Pattern pour identifier les blocs {X:...}
+        int pos = 0;
+        while (pos < cleanMessage.length()) {
+            if (cleanMessage.charAt(pos) == '{') {
+                int colonPos = cleanMessage.indexOf(':', pos);
+                if (colonPos > pos + 1) {
+                    String blockNumber = cleanMessage.substring(pos + 1, colonPos);
+
+                    // Trouver la fin du bloc en comptant les accolades
+                    int braceCount = 1;
+                    int endPos = colonPos + 1;
+                    while (endPos < cleanMessage.length() && braceCount > 0) {
+                        if (cleanMessage.charAt(endPos) == '{') {
+                            braceCount++;
+                        } else if (cleanMessage.charAt(endPos) == '}') {
+                            braceCount--;
+                        }
+                        endPos++;
+                    }
+
+                    if (braceCount == 0) {
+                        // Bloc trouvé - extraire le contenu (sans les accolades)
+                        String blockContent = cleanMessage.substring(colonPos + 1, endPos - 1);
+                        blocks.put(blockNumber, blockContent);
+                    }
+
+                    pos = endPos;
+                } else {
+                    pos++;
+                }
+            } else {
+                pos++;
+            }
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Valide la présence des blocs obligatoires (1, 2, 4, 5)
+     */
+    private void validateMandatoryBlocks(Map<String, String> blocks) {
+        String[] mandatoryBlocks = {"1", "2", "4", "5"};
+
+        for (String blockNumber : mandatoryBlocks) {
+            if (!blocks.containsKey(blockNumber) || blocks.get(blockNumber).trim().isEmpty()) {
+                throw new IllegalArgumentException("Bloc obligatoire {" + blockNumber + ":...} manquant dans le message MT103");
+            }
+        }
+    }
+
+    /**
+     * Parse les champs du bloc 4 (contenu de la transaction)
+     */
+    private Map<String, String> parseBlock4Fields(String block4Content) {
+        Map<String, String> fields = new HashMap<>();
+
+        // Le bloc 4 commence généralement par un space et se termine par " -"
+        String content = block4Content.trim();
+        if (content.startsWith(" ")) {
+            content = content.substring(1);
+        }
+        if (content.endsWith(" -")) {
+            content = content.substring(0, content.length() - 2);
+        }
+
+        // Split par les tags qui commencent par ":",
+        // en s'assurant de ne pas couper les valeurs contenant des sauts de ligne
+        String[] parts = content.split("(?=:[0-9]{2}[A-Z]?:)");
+
+        for (String part : parts) {
+            part = part.trim();
+            if (part.startsWith(":")) {
+                int secondColon = part.indexOf(":", 1);
+                if (secondColon > 1) {
+                    String tag = part.substring(1, secondColon);
+                    String value = part.substring(secondColon + 1).trim();
+
+                    // Nettoyer la valeur - supprimer les caractères de fin de bloc
+                    value = value.replaceAll("\\s*-\\}.*$", "").trim();
+
+                    fields.put(tag, value);
+                }
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * Méthode de fallback en cas d'erreur avec la nouvelle méthode
+     */
+    private MT103Msg parseWithFallbackMethod(String rawMessage) {
+        Map<String, String> fields = new HashMap<>();
+
+        String[] lines = rawMessage.split("\\r?\\n");
+        String currentTag = null;
+        StringBuilder currentValue = new StringBuilder();
+
+        for (String line : lines) {
+            if (line.startsWith(":")) {
+                if (currentTag != null) {
+                    String cleanValue = currentValue.toString().trim();
+                    cleanValue = cleanValue.replaceAll("\\s*-\\}.*$", "").trim();
+                    fields.put(currentTag, cleanValue);
+                }
+                int secondColon = line.indexOf(":", 1);
+                if (secondColon > 1) {
+                    currentTag = line.substring(1, secondColon);
+                    String value = line.substring(secondColon + 1).trim();
+                    currentValue = new StringBuilder(value);
+                } else {
+                }
+            } else if (currentTag != null && !line.trim().startsWith("-}") && !line.trim().startsWith("{5:")) {
+                // preserve original line breaks instead of spaces
+                currentValue.append("\n").append(line.trim());
+            }
+        }
+
+        if (currentTag != null) {
+            String cleanValue = currentValue.toString().trim();
+            cleanValue = cleanValue.replaceAll("\\s*-\\}.*$", "").trim();
+            fields.put(currentTag, cleanValue);
+        }
+
+        return new MT103Msg(rawMessage, fields);
+    }
+}
@@ -0,0 +1,92 @@
+package com.attijari.MT103converter.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour MT103BatchReader
+ Vérifie le découpage RJE / FIN, les positions en octets et la reprise après un message mal formé
+ */
+public class MT103BatchReaderTest {
+
+    private static final String MESSAGE = MT103TokenizerTest.FULL_MESSAGE.trim();
+
+    @Test
+    public void testRjeAndFinMessagesWithMalformedEntry() throws IOException {
+        String broken = "{1:F01X}{2:I103X}{4:\n:20:CASSÉ\n-}{5:{CHK:1}";
+        String batch = MESSAGE + "\n$\n" + MESSAGE.replace("REF12345", "RÉF2") + "$" + broken + "$$  \n$"
+                + MESSAGE.replace("REF12345", "REF3") + MESSAGE.replace("REF12345", "REF4") + "\n";
+        byte[] bytes = batch.getBytes(StandardCharsets.UTF_8);
+
+        List<MT103BatchReader.Item> items;
+        try (MT103BatchReader reader = new MT103BatchReader(new StringReader(batch))) {
+            items = reader.stream().collect(Collectors.toList());
+        }
+
+        assertEquals(5, items.size());
+        assertEquals("REF12345", items.get(0).getMessage().getField("20"));
+        assertEquals("RÉF2", items.get(1).getMessage().getField("20"));
+        assertTrue(items.get(2).isMalformed());
+        assertNull(items.get(2).getMessage());
+        assertEquals("REF3", items.get(3).getMessage().getField("20"));
+        assertEquals("REF4", items.get(4).getMessage().getField("20"));
+
+        // la position en octets pointe sur le début de chaque message, après les caractères accentués
+        String[] starts = {"{1:", "{1:", "{1:F01X}", "{1:", "{1:"};
+        for (MT103BatchReader.Item item : items) {
+            int offset = (int) item.getByteOffset();
+            assertEquals(item.getIndex(), items.indexOf(item) + 1);
+            assertTrue(new String(bytes, offset, bytes.length - offset, StandardCharsets.UTF_8)
+                    .startsWith(starts[item.getIndex() - 1]), "message " + item.getIndex());
+        }
+        assertEquals(batch.substring(0, batch.indexOf(broken)).getBytes(StandardCharsets.UTF_8).length,
+                items.get(2).getByteOffset());
+    }
+
+    @Test
+    public void testOversizedMessageIsSkipped() {
+        String batch = MESSAGE.replace(":70:", ":70:" + "X".repeat(500)) + MESSAGE;
+        MT103BatchReader reader = new MT103BatchReader(new StringReader(batch), 400);
+
+        MT103BatchReader.Item first = reader.next();
+        assertTrue(first.isMalformed());
+        assertEquals(0, first.getByteOffset());
+        assertEquals("REF12345", reader.next().getMessage().getField("20"));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testSourcesGiveSameResult(@TempDir Path dir) throws IOException {
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            batch.append(MESSAGE.replace("REF12345", "RÉF" + i)).append(i % 2 == 0 ? "\r\n$" : "\n");
+        }
+        Path file = dir.resolve("lot.rje");
+        Files.writeString(file, batch);
+
+        List<Long> expected = offsets(new MT103BatchReader(new StringReader(batch.toString())));
+        assertEquals(300, expected.size());
+        assertEquals(expected, offsets(MT103BatchReader.open(new ByteArrayInputStream(Files.readAllBytes(file)))));
+        assertEquals(expected, offsets(MT103BatchReader.open(file)));
+    }
+
+    private static List<Long> offsets(MT103BatchReader reader) {
+        try (Stream<MT103BatchReader.Item> items = reader.stream()) {
+            return items.peek(item -> assertFalse(item.isMalformed()))
+                    .map(MT103BatchReader.Item::getByteOffset)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ Benchmark mémoire et lecture : champs en HashMap (avant) contre MT103Fields (après)
+ Mémoire : tas retenu par message pour N messages gardés en mémoire (contenu brut partagé, valeurs comprises)
+ Lancement : voir BenchmarkSupport
+ */
+public class MT103FieldsBenchmark {
+
+    private static final int MESSAGES = 200_000;
+    private static final String[] TAGS = {"20", "23B", "32A", "33B", "50A", "50K", "59", "70", "71A"};
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        MT103Parser parser = new MT103Parser();
+        String message = MT103TokenizerTest.FULL_MESSAGE;
+
+        // avant : HashMap dont les tags sont des String propres à chaque message, comme avec l'ancien parser
+        Function<String, Map<String, String>> before = raw -> {
+            Map<String, String> map = new HashMap<>();
+            parser.parse(raw).getFields().forEach((tag, value) -> map.put(new String(tag), value));
+            return map;
+        };
+        Function<String, Map<String, String>> after = raw -> parser.parse(raw).getFields();
+
+        System.out.printf("HashMap      : %6.0f octets/message%n", bytesPerMessage(before, message));
+        System.out.printf("MT103Fields  : %6.0f octets/message%n", bytesPerMessage(after, message));
+
+        Map<String, String> hashMap = before.apply(message);
+        Map<String, String> fields = after.apply(message);
+        System.out.printf("lecture HashMap     : %,14.0f getField/s%n", readsPerSecond(hashMap));
+        System.out.printf("lecture MT103Fields : %,14.0f getField/s%n", readsPerSecond(fields));
+    }
+
+    private static double bytesPerMessage(Function<String, Map<String, String>> factory, String message) {
+        Object[] retained = new Object[MESSAGES];
+        long baseline = usedHeap();
+        for (int i = 0; i < MESSAGES; i++) {
+            retained[i] = factory.apply(message);
+        }
+        long used = usedHeap() - baseline;
+        if (retained[MESSAGES - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return used / (double) MESSAGES;
+    }
+
+    private static double readsPerSecond(Map<String, String> fields) {
+        int[] sink = new int[1];
+        double ops = BenchmarkSupport.opsPerSecond(() -> {
+            for (String tag : TAGS) {
+                String value = fields.get(tag);
+                sink[0] += value == null ? 0 : value.length();
+            }
+        }, 2000, 3000);
+        return ops * TAGS.length;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,28 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+
+/**
+ Benchmark de débit : ancien parser regex (LegacyMT103Parser) contre MT103Parser (MT103Tokenizer)
+ */
+public class MT103ParserBenchmark {
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        String message = MT103TokenizerTest.FULL_MESSAGE;
+        String lineMessage = message.substring(message.indexOf("{4:") + 3, message.indexOf("{5:"));
+
+        LegacyMT103Parser legacy = new LegacyMT103Parser();
+        MT103Parser parser = new MT103Parser();
+
+        report("message complet (blocs 1-5)", message, legacy, parser);
+        report("message sans blocs (ligne par ligne)", lineMessage, legacy, parser);
+    }
+
+    private static void report(String label, String message, LegacyMT103Parser legacy, MT103Parser parser) {
+        double before = BenchmarkSupport.opsPerSecond(() -> legacy.parse(message), 3000, 5000);
+        double after = BenchmarkSupport.opsPerSecond(() -> parser.parse(message), 3000, 5000);
+        System.out.printf("%-40s regex: %,12.0f msg/s   tokenizer: %,12.0f msg/s   x%.1f%n",
+                label, before, after, after / before);
+    }
+}
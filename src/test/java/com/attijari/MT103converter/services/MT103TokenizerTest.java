@@ -0,0 +1,129 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Diagnostic;
+import com.attijari.MT103converter.models.ParsedMT103;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour MT103Tokenizer
+ Vérifie que la map de champs est identique à celle de l'ancien parser regex
+ */
+public class MT103TokenizerTest {
+
+    static final String FULL_MESSAGE = """
+            {1:F01BANKDEFAXXX0000000000}{2:I103BANKFRPPXXXXN}{3:{108:MUR12345}{121:e2c7a1f0-1b2c-4d3e-8f90-123456789abc}}{4:
+            :20:REF12345
+            :23B:CRED
+            :32A:240714EUR10000,50
+            :33B:EUR10000,50
+            :50K:/12345678
+            ALICE SMITH
+            12 RUE DE LA PAIX
+            :59:/87654321
+            BOB SMITH
+            :70:FACTURE 2024-07 REUNION 10:30:00
+            :71A:SHA
+            -}{5:{CHK:123456789ABC}}
+            """;
+
+    private final MT103Parser parser = new MT103Parser();
+    private final LegacyMT103Parser legacy = new LegacyMT103Parser();
+
+    @Test
+    public void testBlockMessageMatchesLegacy() {
+        Map<String, String> fields = parser.parse(FULL_MESSAGE).getFields();
+
+        assertEquals(legacy.parse(FULL_MESSAGE).getFields(), fields);
+        assertEquals("REF12345", fields.get("20"));
+        // dans le bloc 4 les retours à la ligne sont ramenés à un espace
+        assertEquals("/12345678 ALICE SMITH 12 RUE DE LA PAIX", fields.get("50K"));
+        assertEquals("SHA", fields.get("71A"));
+    }
+
+    @Test
+    public void testParsedStructureSharedWithValidator() {
+        ParsedMT103 parsed = MT103Tokenizer.tokenize(FULL_MESSAGE);
+
+        assertTrue(parsed.isBraceDelimited());
+        assertEquals(List.of("1", "2", "3", "4", "5"), parsed.getBlockIds());
+        assertFalse(parsed.isBlockBlank("4"));
+        assertEquals("CRED", parsed.getField("23B"));
+        assertNull(parsed.getField("50A"));
+
+        // bloc 1 vide : lecture ligne par ligne, le validateur signale le bloc manquant
+        ParsedMT103 lines = MT103Tokenizer.tokenize(FULL_MESSAGE.replace("{1:F01BANKDEFAXXX0000000000}", "{1: }"));
+        assertEquals(ParsedMT103.Layout.LINES, lines.getLayout());
+        assertTrue(lines.isBlockBlank("1"));
+        assertTrue(new Validator().validateMT103(new MT103Parser().parse(lines.getRaw())).getErrors()
+                .contains("Erreur : Le bloc obligatoire {1:...} est manquant dans le message MT103"));
+    }
+
+    @Test
+    public void testDiagnosticsFromSinglePass() {
+        assertTrue(MT103Tokenizer.tokenize(FULL_MESSAGE).getDiagnostics().isEmpty());
+
+        // bloc 5 absent et bloc 4 non fermé : champs lus ligne par ligne malgré tout
+        String broken = FULL_MESSAGE.substring(0, FULL_MESSAGE.indexOf("-}")) + "::X\n:71A:OUR\n:20:AUTRE\n";
+        ParsedMT103 parsed = MT103Tokenizer.tokenize(broken);
+        List<MT103Diagnostic.Kind> kinds = parsed.getDiagnostics().stream().map(MT103Diagnostic::getKind).toList();
+
+        assertEquals(List.of(MT103Diagnostic.Kind.NOT_BRACE_DELIMITED, MT103Diagnostic.Kind.MISSING_BLOCK,
+                MT103Diagnostic.Kind.MISSING_BLOCK, MT103Diagnostic.Kind.UNCLOSED_BLOCK,
+                MT103Diagnostic.Kind.INVALID_TAG_LINE, MT103Diagnostic.Kind.DUPLICATE_TAG,
+                MT103Diagnostic.Kind.DUPLICATE_TAG), kinds);
+        assertEquals(ParsedMT103.Layout.LINES, parsed.getLayout());
+        assertEquals(legacy.parse(broken).getFields(), parser.parse(broken).getFields());
+        assertEquals("AUTRE", parsed.getField("20"));
+        assertEquals(broken.indexOf("::X"), parsed.getDiagnostics().get(4).getOffset());
+    }
+
+    @Test
+    public void testSampleMessagesMatchLegacy() {
+        List<String> samples = List.of(
+            FULL_MESSAGE,
+            FULL_MESSAGE.replace("\n", "\r\n"),
+            FULL_MESSAGE.replace("{5:{CHK:123456789ABC}}", ""),
+            FULL_MESSAGE.replace(":71A:SHA\n-}", ":71A:SHA -}"),
+            FULL_MESSAGE.replace(":70:", ":70:TEXTE -} SUITE\n:72:"),
+            FULL_MESSAGE.replace(":23B:CRED", ":23B:CRED\n:20:DOUBLON\n:ZZ:INCONNU"),
+            FULL_MESSAGE.replace("{4:", "{4:\t \n"),
+            FULL_MESSAGE.replace("-}{5:", "}{5:"),
+            FULL_MESSAGE.replace("{1:F01BANKDEFAXXX0000000000}", "{1: }"),
+            "{1:F01X}{2:I103X}{4:\n:20:A\n:32A:240714EUR1,\n-}{4:\n:20:B\n-}{5:}",
+            "{1:F01X}{2:I103X}{4:\n:20:A\n-}{5:X}{4:\n:20:NONFERME",
+            "{1:F01X}{2:I103X}{4:\n:20::32A:X\n:20:10:30:\n-}{5:X}",
+            ":20:REF\n:50K:/1\nNOM\n-}\n{5:{CHK:1}}\n:59:/2\n  BENEF  \n:X\nSUITE\n",
+            ":20:REF -}\n:70:LIGNE1\nLIGNE2 -} FIN\n:71A:OUR\n\n",
+            "",
+            "{:}{::}{1{2:}",
+            ":20:REF12345\n:32A:240714EUR10000,\n:50K:/12345678\nALICE SMITH\n:59:/87654321\nBOB SMITH\n"
+        );
+
+        for (String sample : samples) {
+            assertEquals(legacy.parse(sample).getFields(), parser.parse(sample).getFields(), sample);
+        }
+    }
+
+    @Test
+    public void testRandomMessagesMatchLegacy() {
+        // messages aléatoires construits à partir des caractères structurants du format
+        String[] pieces = {"{", "}", ":", "{1:", "{2:", "{4:", "{5:", "-}", " -", ":20:", ":32A:", ":5", "0K:",
+                "\n", "\r\n", " ", "\t", "A", "1", "x", "-", "\u2028", "\u0001", "{3:{108:X}}"};
+        Random random = new Random(103);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String sample = sb.toString();
+            assertEquals(legacy.parse(sample).getFields(), parser.parse(sample).getFields(), sample);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+import com.attijari.MT103converter.models.MT103Msg;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ Benchmark de débit génération + validation XSD d'un pacs.008 (pacs008.validation.mode) :
+ after = XML généré puis relu par le validateur, inline = validé pendant l'écriture
+ Lancement : voir BenchmarkSupport
+ */
+public class Pacs008InlineValidationBenchmark {
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        MT103Msg msg = new MT103Parser().parse(MT103TokenizerTest.FULL_MESSAGE);
+        Validator validator = new Validator();
+        Transformer after = new Transformer();
+        ReflectionTestUtils.setField(after, "validationMode", Transformer.VALIDATION_AFTER);
+        Transformer inline = new Transformer();
+
+        double reparse = BenchmarkSupport.opsPerSecond(() -> check(validator, after, msg), 2000, 5000);
+        double streamed = BenchmarkSupport.opsPerSecond(() -> check(validator, inline, msg), 2000, 5000);
+        System.out.printf("générer puis valider (after) : %10.0f messages/s   %6.1f µs/message%n", reparse, 1_000_000 / reparse);
+        System.out.printf("valider en écrivant (inline) : %10.0f messages/s   %6.1f µs/message   x%.2f%n",
+                streamed, 1_000_000 / streamed, streamed / reparse);
+    }
+
+    private static void check(Validator validator, Transformer transformer, MT103Msg msg) {
+        if (validator.validatePacs008(transformer.transform(msg)).hasErrors()) {
+            throw new IllegalStateException("pacs.008 invalide");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.Pacs008Transaction;
+import com.attijari.MT103converter.services.Pacs008Mapping.Field;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour Pacs008Mapping
+ Vérifie que la même table sert aux deux sens : codes réciproques, chemins écrits par le Transformer relus par Pacs008Reader
+ */
+public class Pacs008MappingTest {
+
+    @Test
+    public void testCodeListsAreReciprocal() {
+        for (String code : List.of("CRED", "CRTS")) {
+            assertEquals(code, Pacs008Mapping.SERVICE_LEVEL.toMt(Pacs008Mapping.SERVICE_LEVEL.toIso(code)));
+        }
+        for (String code : List.of("OUR", "BEN", "SHA")) {
+            assertEquals(code, Pacs008Mapping.CHARGE_BEARER.toMt(Pacs008Mapping.CHARGE_BEARER.toIso(code)));
+        }
+        assertEquals("NORM", Pacs008Mapping.SERVICE_LEVEL.toIso("xyz"));
+        assertEquals("SHA", Pacs008Mapping.CHARGE_BEARER.toMt(null));
+        assertEquals("240714EUR10000,50", Pacs008Mapping.to32A("2024-07-14",
+                Pacs008Mapping.currencyToIso("240714EUR10000,5"), Pacs008Mapping.amountToIso("240714EUR10000,5")));
+    }
+
+    @Test
+    public void testWrittenPathsAreReadBack() throws Exception {
+        String xml = new Transformer().transform(new MT103Parser().parse(MT103TokenizerTest.FULL_MESSAGE
+                .replace(":23B:CRED", ":23B:CRTS").replace(":71A:SHA", ":71A:OUR"))).getXmlContent();
+
+        Pacs008Transaction tx = Pacs008Reader.read(xml).get(0);
+
+        assertEquals("REF12345", tx.get(Field.INSTR_ID));
+        assertEquals("REF12345", tx.get(Field.END_TO_END_ID));
+        assertEquals("CRTS", Pacs008Mapping.SERVICE_LEVEL.toMt(tx.get(Field.SERVICE_LEVEL)));
+        assertEquals("OUR", Pacs008Mapping.CHARGE_BEARER.toMt(tx.get(Field.CHARGE_BEARER)));
+        assertEquals("EUR10000,50", Pacs008Mapping.to33B(tx.get(Field.CURRENCY), tx.get(Field.AMOUNT)));
+        assertNotNull(tx.get(Field.SETTLEMENT_DATE));
+        assertNotNull(tx.get(Field.DEBTOR_NAME));
+        assertEquals("87654321", tx.get(Field.CREDITOR_ACCOUNT));
+        assertNotNull(tx.get(Field.CREDITOR_NAME));
+        assertTrue(tx.get(Field.REMITTANCE).startsWith("FACTURE"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.BenchmarkSupport;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import java.io.File;
+import java.io.StringReader;
+
+/**
+ Benchmark de latence de la validation XSD d'un pacs.008 :
+ schéma compilé à chaque appel (ancienne version de validatePacs008) contre Pacs008Schema
+ Lancement : voir BenchmarkSupport
+ */
+public class Pacs008ValidationBenchmark {
+
+    public static void main(String[] args) {
+        BenchmarkSupport.silenceLogs();
+        String xml = new Transformer().transform(new MT103Parser().parse(MT103TokenizerTest.FULL_MESSAGE)).getXmlContent();
+        Validator validator = new Validator();
+
+        double before = BenchmarkSupport.opsPerSecond(() -> compileAndValidate(xml), 3000, 5000);
+        double after = BenchmarkSupport.opsPerSecond(() -> validator.validatePacs008(xml), 3000, 5000);
+        System.out.printf("schéma compilé à chaque appel : %10.1f µs/validation%n", 1_000_000 / before);
+        System.out.printf("schéma en cache + validateur   : %10.1f µs/validation   x%.0f%n", 1_000_000 / after, after / before);
+    }
+
+    private static void compileAndValidate(String xml) {
+        try {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            factory.newSchema(new File("src/main/resources/schemas/pacs.008.001.08.xsd"))
+                    .newValidator()
+                    .validate(new StreamSource(new StringReader(xml)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
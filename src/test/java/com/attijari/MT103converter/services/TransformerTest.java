@@ -0,0 +1,112 @@
+package com.attijari.MT103converter.services;
+
+import com.attijari.MT103converter.models.MT103Msg;
+import com.attijari.MT103converter.models.Pacs008Msg;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ test pour Transformer
+ Vérifie le pacs.008 écrit par Pacs008Writer : échappement, validité XSD, même document en String ou en flux, lots,
+ validation pendant l'écriture identique à la relecture du XML
+ */
+public class TransformerTest {
+
+    private final MT103Parser parser = new MT103Parser();
+    private final Transformer transformer = new Transformer();
+
+    @Test
+    public void testEveryTextNodeIsEscaped() {
+        MT103Msg msg = parser.parse(MT103TokenizerTest.FULL_MESSAGE
+                .replace("BOB SMITH", "BOB & <ANNA> O'NEIL")
+                .replace("FACTURE", "FACTURE \"A&B\""));
+
+        String xml = transformer.transform(msg).getXmlContent();
+
+        assertTrue(xml.contains("<Nm>/87654321 BOB &amp; &lt;ANNA&gt; O&apos;NEIL</Nm>"), xml);
+        assertTrue(xml.contains("<Ustrd>FACTURE &quot;A&amp;B&quot; 2024-07 REUNION 10</Ustrd>"), xml);
+        // le schéma n'accepte que le jeu de caractères restreint : validité vérifiée sur le message d'exemple
+        String valid = transformer.transform(parser.parse(MT103TokenizerTest.FULL_MESSAGE)).getXmlContent();
+        assertEquals(List.of(), new Validator().validatePacs008(valid).getErrors());
+    }
+
+    @Test
+    public void testStreamedDocumentMatchesString() {
+        MT103Msg msg = parser.parse(MT103TokenizerTest.FULL_MESSAGE.replace("ALICE", "ALICE ÉLODIE"));
+
+        String xml = transformer.transform(msg).getXmlContent();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(msg, out);
+
+        assertEquals(normalize(xml), normalize(out.toString(StandardCharsets.UTF_8)));
+        assertTrue(xml.contains("<IntrBkSttlmAmt Ccy=\"EUR\">10000.50</IntrBkSttlmAmt>"), xml);
+    }
+
+    @Test
+    public void testBatchSharesGroupHeader() {
+        ReflectionTestUtils.setField(transformer, "maxBatchSize", 2);
+        List<MT103Msg> batch = List.of(
+                parser.parse(MT103TokenizerTest.FULL_MESSAGE),
+                parser.parse(MT103TokenizerTest.FULL_MESSAGE.replace("EUR10000,50", "EUR0,75")),
+                parser.parse(MT103TokenizerTest.FULL_MESSAGE.replace("REF12345", "REF3")));
+
+        List<Pacs008Msg> documents = transformer.transformBatch(batch);
+
+        assertEquals(2, documents.size());
+        String first = documents.get(0).getXmlContent();
+        assertTrue(first.contains("<NbOfTxs>2</NbOfTxs>\n      <CtrlSum>10001.25</CtrlSum>"), first);
+        assertEquals(2, first.split("<CdtTrfTxInf>", -1).length - 1);
+        assertTrue(first.contains("<IntrBkSttlmAmt Ccy=\"EUR\">0.75</IntrBkSttlmAmt>"), first);
+
+        // dernier groupe d'une transaction : document conforme au schéma HVPS+
+        String last = documents.get(1).getXmlContent();
+        assertTrue(last.contains("<InstrId>REF3</InstrId>"), last);
+        assertFalse(last.contains("CtrlSum"), last);
+        assertEquals(List.of(), new Validator().validatePacs008(last).getErrors());
+
+        assertThrows(IllegalArgumentException.class, () -> transformer.transformBatch(batch, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testCachedSchemaValidatorReusedAfterError() {
+        Validator validator = new Validator();
+        String xml = transformer.transform(parser.parse(MT103TokenizerTest.FULL_MESSAGE)).getXmlContent();
+
+        assertTrue(validator.validatePacs008(xml.replace("<ChrgBr>SHAR</ChrgBr>", "<ChrgBr>XXXX</ChrgBr>")).hasErrors());
+        assertTrue(validator.validatePacs008("<!DOCTYPE d SYSTEM \"http://exemple.invalid/d.dtd\"><d/>").hasErrors());
+        assertEquals(List.of(), validator.validatePacs008(xml).getErrors());
+    }
+
+    @Test
+    public void testInlineValidationMatchesReparse() {
+        Validator validator = new Validator();
+        for (String raw : List.of(MT103TokenizerTest.FULL_MESSAGE, MT103TokenizerTest.FULL_MESSAGE.replace("240714EUR", "240714Eur"))) {
+            MT103Msg msg = parser.parse(raw);
+
+            Pacs008Msg inline = transformer.transform(msg);
+            ReflectionTestUtils.setField(transformer, "validationMode", Transformer.VALIDATION_AFTER);
+            Pacs008Msg after = transformer.transform(msg);
+            ReflectionTestUtils.setField(transformer, "validationMode", Transformer.VALIDATION_INLINE);
+
+            assertTrue(inline.isSchemaValidated());
+            assertFalse(after.isSchemaValidated());
+            // durée de la validation inline relevée à part de la génération
+            assertTrue(inline.getSchemaValidationNanos() > 0);
+            assertEquals(0, after.getSchemaValidationNanos());
+            assertEquals(validator.validatePacs008(after).getErrors(), validator.validatePacs008(inline).getErrors());
+        }
+        assertTrue(validator.validatePacs008(transformer.transform(parser.parse(
+                MT103TokenizerTest.FULL_MESSAGE.replace("240714EUR", "240714Eur")))).hasErrors());
+    }
+
+    // identifiants et horodatage propres à chaque génération
+    private static String normalize(String xml) {
+        return xml.replaceAll("<(MsgId|CreDtTm|UETR)>[^<]*<", "<$1><");
+    }
+}